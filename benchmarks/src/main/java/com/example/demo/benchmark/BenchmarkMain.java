@@ -0,0 +1,26 @@
+package com.example.demo.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    var commandLine = new CommandLineOptions(args);
+    var options =
+        new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            // lets SpanShader pick the Vector API kernel in the forked JVMs
+            .jvmArgsAppend("--add-modules", "jdk.incubator.vector")
+            .forks(commandLine.getForkCount().orElse(1))
+            .warmupIterations(commandLine.getWarmupIterations().orElse(3))
+            .measurementIterations(commandLine.getMeasurementIterations().orElse(5))
+            .build();
+    new Runner(options).run();
+  }
+}
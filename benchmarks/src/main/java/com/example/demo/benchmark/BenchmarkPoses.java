@@ -0,0 +1,25 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.ImageInfo;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+public class BenchmarkPoses {
+
+  public static ImageInfo get(String name) {
+    var info = ImageInfo.createDefault();
+    switch (name) {
+      case "front" -> {}
+      case "side" -> info.setRotationY((float) (Math.PI / 2));
+      case "oblique" -> {
+        info.setRotationX(0.4f);
+        info.setRotationY(0.8f);
+        info.setCameraPosition(new Vector3D(12, Math.PI, 0.3));
+      }
+      case "close" -> info.setCameraPosition(new Vector3D(5, Math.PI, 0));
+      case "near" -> info.setCameraPosition(new Vector3D(1, Math.PI, 0.1));
+      case "far" -> info.setCameraPosition(new Vector3D(60, Math.PI, 0));
+      default -> throw new IllegalArgumentException("unknown pose " + name);
+    }
+    return info;
+  }
+}
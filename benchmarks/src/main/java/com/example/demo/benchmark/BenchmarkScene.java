@@ -0,0 +1,104 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Bgra32Bitmap;
+import com.example.demo.model.DepthBuffer;
+import com.example.demo.model.GBuffer;
+import com.example.demo.model.ImageInfo;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.TileBins;
+import com.example.demo.model.TriangleBuffer;
+import com.example.demo.service.DrawerService;
+import com.example.demo.service.MeshWelder;
+import com.example.demo.service.MeshletBuilder;
+import com.example.demo.service.ParserService;
+import com.example.demo.service.TransformCache;
+import com.example.demo.service.VertexService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class BenchmarkScene {
+
+  public static final int WIDTH = 1536;
+  public static final int HEIGHT = 800;
+  private static final String AZELOW = "/com/example/demo/azelow.obj";
+
+  @Param({"azelow", "sphere", "grid", "overdraw"})
+  public String mesh;
+
+  @Param({"front", "oblique", "close", "near", "far"})
+  public String pose;
+
+  /** Clustered meshes cull whole meshlets before any per-vertex work. */
+  @Param({"true", "false"})
+  public boolean meshlets;
+
+  public MeshBuffer meshBuffer;
+  public ImageInfo info;
+  public Vector3D viewDirection;
+  public TransformCache transforms;
+
+  public TriangleBuffer triangles;
+  public Bgra32Bitmap bitmap;
+  public DepthBuffer depthBuffer;
+  public GBuffer gBuffer;
+  public TileBins tileBins;
+
+  @Setup
+  public void setup() throws IOException {
+    var welded = MeshWelder.weld(createMesh(mesh));
+    meshBuffer = meshlets ? MeshletBuilder.build(welded) : welded;
+    info = BenchmarkPoses.get(pose);
+    viewDirection =
+        info.getCameraTarget()
+            .subtract(
+                VertexService.convertToOrthogonal(
+                    info.getCameraPosition(), info.getCameraTarget()))
+            .normalize();
+
+    triangles = new TriangleBuffer();
+    bitmap = new Bgra32Bitmap(WIDTH, HEIGHT);
+    depthBuffer = new DepthBuffer(WIDTH, HEIGHT);
+    gBuffer = new GBuffer(WIDTH, HEIGHT);
+    tileBins = new TileBins(WIDTH, HEIGHT, DrawerService.TILE_SIZE);
+
+    // the raster benchmarks consume the transformed mesh without paying for the transform
+    transforms = new TransformCache();
+    transforms.update(info, WIDTH, HEIGHT);
+    VertexService.convertVertexes(transforms, meshBuffer, triangles);
+    VertexService.transformNormals(meshBuffer, info, triangles);
+    VertexService.assembleTriangles(meshBuffer, triangles);
+  }
+
+  public static MeshBuffer createMesh(String name) throws IOException {
+    return switch (name) {
+      case "azelow" -> ParserService.parse(extractAzelow());
+      case "sphere" -> SyntheticMeshes.sphere(128, 256, 1.5f);
+      case "grid" -> SyntheticMeshes.grid(256, 3f);
+      case "overdraw" -> SyntheticMeshes.overdrawStack(16, 8f, 0.02f);
+      default -> throw new IllegalArgumentException("unknown mesh " + name);
+    };
+  }
+
+  public static Path extractAzelow() {
+    try (var in = BenchmarkScene.class.getResourceAsStream(AZELOW)) {
+      if (in == null) {
+        throw new IllegalStateException(AZELOW + " is missing from the classpath");
+      }
+      var file = Files.createTempFile("azelow", ".obj");
+      file.toFile().deleteOnExit();
+      Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+      return file;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Matrix4x4;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatrixBenchmark {
+
+  private Matrix4x4 left;
+  private Matrix4x4 right;
+  private Matrix4x4 result;
+  private float[] points;
+  private float[] transformed;
+
+  @Setup
+  public void setup() {
+    left = Matrix4x4.createRotationX(0.4).multiply(Matrix4x4.createRotationY(0.8));
+    right = Matrix4x4.createTranslation(1, 2, 3).multiply(Matrix4x4.createScale(0.4, 0.4, 0.4));
+    result = new Matrix4x4();
+    points = SyntheticMeshes.sphere(128, 256, 1.5f).positions();
+    transformed = new float[points.length / 3 * 4];
+  }
+
+  @Benchmark
+  public Matrix4x4 multiply() {
+    return left.multiply(right);
+  }
+
+  @Benchmark
+  public Matrix4x4 multiplyInto() {
+    return left.multiplyInto(right, result);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public float[] transformArray() {
+    left.transformArray(points, transformed, points.length / 3);
+    return transformed;
+  }
+}
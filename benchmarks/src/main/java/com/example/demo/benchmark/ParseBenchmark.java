@@ -0,0 +1,47 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.MeshLods;
+import com.example.demo.service.MeshCacheService;
+import com.example.demo.service.ParserService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+
+  private Path source;
+
+  @Setup
+  public void setup() throws IOException {
+    source = BenchmarkScene.extractAzelow();
+    MeshCacheService.load(source);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(MeshCacheService.cachePath(source));
+  }
+
+  @Benchmark
+  public MeshBuffer parseObj() throws IOException {
+    return ParserService.parse(source);
+  }
+
+  @Benchmark
+  public MeshLods loadCached() throws IOException {
+    return MeshCacheService.load(source);
+  }
+}
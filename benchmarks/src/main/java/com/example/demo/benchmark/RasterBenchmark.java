@@ -0,0 +1,231 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Bgra32Bitmap;
+import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.MeshBounds;
+import com.example.demo.model.MeshLods;
+import com.example.demo.model.MultisampleBuffer;
+import com.example.demo.model.ShadowMap;
+import com.example.demo.model.TriangleBuffer;
+import com.example.demo.service.DrawerService;
+import com.example.demo.service.MeshSimplifier;
+import com.example.demo.service.RenderPipeline;
+import com.example.demo.service.ShadowService;
+import com.example.demo.service.VertexService;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RasterBenchmark {
+
+  // a degree per frame, the mesh turns without leaving the view
+  private static final float ANIMATION_STEP = (float) Math.toRadians(1);
+
+  @State(Scope.Benchmark)
+  public static class Pipeline {
+
+    /** Lets renderFrame switch to a coarser level when the pose leaves triangles sub-pixel. */
+    @Param({"true", "false"})
+    public boolean lods;
+
+    RenderPipeline pipeline;
+
+    @Setup
+    public void setup(BenchmarkScene scene) {
+      var levels =
+          lods ? MeshSimplifier.buildLods(scene.meshBuffer) : new MeshLods(scene.meshBuffer);
+      pipeline = new RenderPipeline(levels, BenchmarkScene.WIDTH, BenchmarkScene.HEIGHT);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Gouraud {
+
+    TriangleBuffer triangles;
+
+    @Setup
+    public void setup(BenchmarkScene scene) {
+      triangles = new TriangleBuffer();
+      VertexService.convertVertexes(scene.transforms, scene.meshBuffer, triangles);
+      VertexService.transformNormals(scene.meshBuffer, scene.info, triangles);
+      VertexService.assembleTriangles(scene.meshBuffer, triangles);
+      VertexService.shadeVertexes(
+          scene.meshBuffer, triangles, RenderPipeline.LIGHT_DIRECTION, scene.viewDirection);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Multisample {
+
+    @Param({"4", "8"})
+    public int samples;
+
+    MultisampleBuffer buffer;
+
+    @Setup
+    public void setup() {
+      buffer =
+          new MultisampleBuffer(
+              BenchmarkScene.WIDTH, BenchmarkScene.HEIGHT, samples, DrawerService.TILE_SIZE);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class DepthOnly {
+
+    float[] depth;
+
+    @Setup
+    public void setup() {
+      depth = new float[BenchmarkScene.WIDTH * BenchmarkScene.HEIGHT];
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Shadows {
+
+    ShadowMap map;
+    Matrix4x4 model;
+
+    @Setup
+    public void setup(BenchmarkScene scene) {
+      var mesh = scene.meshBuffer;
+      var bounds = mesh.bounds() != null ? mesh.bounds() : MeshBounds.of(mesh.positions());
+      map = new ShadowMap(RenderPipeline.SHADOW_MAP_SIZE);
+      map.fit(
+          RenderPipeline.LIGHT_DIRECTION,
+          new double[] {bounds.centerX(), bounds.centerY(), bounds.centerZ(), bounds.radius()},
+          1);
+      model = Matrix4x4.createScale(1, 1, 1);
+    }
+  }
+
+  @Benchmark
+  public Bgra32Bitmap drawModel(BenchmarkScene scene) {
+    DrawerService.drawModel(
+        scene.triangles,
+        scene.bitmap,
+        scene.depthBuffer,
+        RenderPipeline.LIGHT_DIRECTION,
+        scene.viewDirection);
+    return scene.bitmap;
+  }
+
+  @Benchmark
+  public Bgra32Bitmap drawModelTiled(BenchmarkScene scene) {
+    DrawerService.drawModelTiled(
+        scene.triangles,
+        scene.bitmap,
+        scene.depthBuffer,
+        scene.tileBins,
+        RenderPipeline.LIGHT_DIRECTION,
+        scene.viewDirection);
+    return scene.bitmap;
+  }
+
+  @Benchmark
+  public Bgra32Bitmap drawModelTiledDeferred(BenchmarkScene scene) {
+    DrawerService.drawModelTiled(
+        scene.triangles,
+        scene.bitmap,
+        scene.depthBuffer,
+        scene.tileBins,
+        scene.gBuffer,
+        RenderPipeline.LIGHT_DIRECTION,
+        scene.viewDirection);
+    return scene.bitmap;
+  }
+
+  @Benchmark
+  public Bgra32Bitmap drawModelTiledGouraud(BenchmarkScene scene, Gouraud gouraud) {
+    DrawerService.drawModelTiled(
+        gouraud.triangles,
+        scene.bitmap,
+        scene.depthBuffer,
+        scene.tileBins,
+        RenderPipeline.LIGHT_DIRECTION,
+        scene.viewDirection);
+    return scene.bitmap;
+  }
+
+  /** Integer edge functions and a top-left fill rule, compare against drawModelTiled. */
+  @Benchmark
+  public Bgra32Bitmap drawModelTiledFixedPoint(BenchmarkScene scene) {
+    DrawerService.drawModelTiledFixedPoint(
+        scene.triangles,
+        scene.bitmap,
+        scene.depthBuffer,
+        scene.tileBins,
+        RenderPipeline.LIGHT_DIRECTION,
+        scene.viewDirection);
+    return scene.bitmap;
+  }
+
+  /** Tests 4 or 8 samples per pixel but shades once, compare against drawModelTiled. */
+  @Benchmark
+  public Bgra32Bitmap drawModelMultisample(BenchmarkScene scene, Multisample multisample) {
+    DrawerService.drawModelMultisample(
+        scene.triangles,
+        scene.bitmap,
+        multisample.buffer,
+        scene.tileBins,
+        RenderPipeline.LIGHT_DIRECTION,
+        scene.viewDirection);
+    return scene.bitmap;
+  }
+
+  /**
+   * The depth-only raster shadow maps are drawn with, on the same screen triangles as drawModel
+   * and also single-threaded. It draws both windings where drawModel culls back faces.
+   */
+  @Benchmark
+  public float[] rasterDepth(BenchmarkScene scene, DepthOnly depthOnly) {
+    Arrays.fill(depthOnly.depth, ShadowMap.FAR);
+    ShadowService.rasterDepth(
+        scene.triangles.getVertexes(),
+        scene.triangles.getVertexIndexes(),
+        scene.triangles.getTriangleCount(),
+        depthOnly.depth,
+        BenchmarkScene.WIDTH,
+        BenchmarkScene.HEIGHT);
+    return depthOnly.depth;
+  }
+
+  /** A whole shadow map of the mesh: light-space transform, clear and depth raster. */
+  @Benchmark
+  public ShadowMap renderShadowMap(BenchmarkScene scene, Shadows shadows) {
+    shadows.map.clear();
+    ShadowService.render(shadows.map, scene.meshBuffer, shadows.model);
+    return shadows.map;
+  }
+
+  @Benchmark
+  public Bgra32Bitmap renderFrame(BenchmarkScene scene, Pipeline pipeline) {
+    pipeline.pipeline.invalidate();
+    return pipeline.pipeline.render(scene.info);
+  }
+
+  /** A frame whose pose turned a little, the matrices and every per-instance step run again. */
+  @Benchmark
+  public Bgra32Bitmap renderAnimatedFrame(BenchmarkScene scene, Pipeline pipeline) {
+    var info = scene.info;
+    info.setRotationY((info.getRotationY() + ANIMATION_STEP) % (float) (2 * Math.PI));
+    return pipeline.pipeline.render(info);
+  }
+
+  /** A frame where nothing changed, which only hands back the previous one. */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Bgra32Bitmap renderUnchangedFrame(BenchmarkScene scene, Pipeline pipeline) {
+    return pipeline.pipeline.render(scene.info);
+  }
+}
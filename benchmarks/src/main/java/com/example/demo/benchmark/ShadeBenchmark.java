@@ -0,0 +1,91 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.service.DrawerService;
+import com.example.demo.service.RenderPipeline;
+import com.example.demo.service.SpanShader;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShadeBenchmark {
+
+  private static final int PIXELS = 1 << 16;
+
+  private final Vector3D viewDirection = new Vector3D(0, 0, -1);
+  private float[] normals;
+  private int[] colors;
+
+  @Setup
+  public void setup() {
+    // a full sphere's worth of normals so every lighting branch is exercised
+    var sphere = SyntheticMeshes.sphere(128, 256, 1).normals();
+    normals = new float[PIXELS * 3];
+    for (var i = 0; i < normals.length; i++) {
+      normals[i] = sphere[i % sphere.length];
+    }
+    colors = new int[PIXELS];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PIXELS)
+  public int[] getPointColor() {
+    for (var i = 0; i < PIXELS; i++) {
+      colors[i] =
+          DrawerService.getPointColor(
+              normals[i * 3],
+              normals[i * 3 + 1],
+              normals[i * 3 + 2],
+              RenderPipeline.LIGHT_DIRECTION,
+              viewDirection);
+    }
+    return colors;
+  }
+
+  @State(Scope.Benchmark)
+  public static class Span {
+
+    /** {@code vector} falls back to scalar too when the incubator module is not loaded. */
+    @Param({"vector", "scalar"})
+    public String kernel;
+
+    private SpanShader shader;
+    private SpanShader.Lighting lighting;
+    private float[] nx;
+    private float[] ny;
+    private float[] nz;
+    private int[] colors;
+
+    @Setup
+    public void setup(ShadeBenchmark shade) {
+      shader = kernel.equals("vector") ? SpanShader.get() : SpanShader.scalar();
+      lighting = SpanShader.Lighting.of(RenderPipeline.LIGHT_DIRECTION, shade.viewDirection);
+      nx = new float[PIXELS];
+      ny = new float[PIXELS];
+      nz = new float[PIXELS];
+      for (var i = 0; i < PIXELS; i++) {
+        nx[i] = shade.normals[i * 3];
+        ny[i] = shade.normals[i * 3 + 1];
+        nz[i] = shade.normals[i * 3 + 2];
+      }
+      colors = new int[PIXELS];
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PIXELS)
+  public int[] shadeSpan(Span span) {
+    span.shader.shade(span.lighting, span.nx, span.ny, span.nz, PIXELS, span.colors);
+    return span.colors;
+  }
+}
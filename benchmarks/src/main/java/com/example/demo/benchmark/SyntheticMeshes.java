@@ -0,0 +1,90 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.MeshBuffer;
+
+public class SyntheticMeshes {
+
+  public static MeshBuffer sphere(int stacks, int slices, float radius) {
+    var columns = slices + 1;
+    var positions = new float[(stacks + 1) * columns * 3];
+    var normals = new float[positions.length];
+    for (var i = 0; i <= stacks; i++) {
+      var theta = Math.PI * i / stacks;
+      for (var j = 0; j <= slices; j++) {
+        var phi = 2 * Math.PI * j / slices;
+        var offset = (i * columns + j) * 3;
+        normals[offset] = (float) (Math.sin(theta) * Math.cos(phi));
+        normals[offset + 1] = (float) Math.cos(theta);
+        normals[offset + 2] = (float) (Math.sin(theta) * Math.sin(phi));
+        positions[offset] = normals[offset] * radius;
+        positions[offset + 1] = normals[offset + 1] * radius;
+        positions[offset + 2] = normals[offset + 2] * radius;
+      }
+    }
+
+    var indexes = new int[stacks * slices * 6];
+    var k = 0;
+    for (var i = 0; i < stacks; i++) {
+      for (var j = 0; j < slices; j++) {
+        var a = i * columns + j;
+        var b = a + columns;
+        k = quad(indexes, k, a, a + 1, b + 1, b);
+      }
+    }
+    return new MeshBuffer(positions, normals, indexes, indexes.clone());
+  }
+
+  public static MeshBuffer grid(int cells, float size) {
+    var columns = cells + 1;
+    var positions = new float[columns * columns * 3];
+    for (var i = 0; i <= cells; i++) {
+      for (var j = 0; j <= cells; j++) {
+        var offset = (i * columns + j) * 3;
+        positions[offset] = size * ((float) j / cells - 0.5f);
+        positions[offset + 1] = size * ((float) i / cells - 0.5f);
+      }
+    }
+
+    var indexes = new int[cells * cells * 6];
+    var k = 0;
+    for (var i = 0; i < cells; i++) {
+      for (var j = 0; j < cells; j++) {
+        var a = i * columns + j;
+        var b = a + columns;
+        k = quad(indexes, k, a, a + 1, b + 1, b);
+      }
+    }
+    return new MeshBuffer(positions, new float[] {0, 0, 1}, indexes, new int[indexes.length]);
+  }
+
+  public static MeshBuffer overdrawStack(int layers, float size, float spacing) {
+    var half = size / 2;
+    var positions = new float[layers * 4 * 3];
+    var indexes = new int[layers * 6];
+    var k = 0;
+    for (var layer = 0; layer < layers; layer++) {
+      // layers are emitted back to front so every one of them passes the depth test
+      var z = (layer - (layers - 1) / 2f) * spacing;
+      var offset = layer * 12;
+      System.arraycopy(
+          new float[] {-half, -half, z, half, -half, z, half, half, z, -half, half, z},
+          0,
+          positions,
+          offset,
+          12);
+      var a = layer * 4;
+      k = quad(indexes, k, a, a + 1, a + 2, a + 3);
+    }
+    return new MeshBuffer(positions, new float[] {0, 0, 1}, indexes, new int[indexes.length]);
+  }
+
+  private static int quad(int[] indexes, int k, int a, int b, int c, int d) {
+    indexes[k++] = a;
+    indexes[k++] = b;
+    indexes[k++] = c;
+    indexes[k++] = a;
+    indexes[k++] = c;
+    indexes[k++] = d;
+    return k;
+  }
+}
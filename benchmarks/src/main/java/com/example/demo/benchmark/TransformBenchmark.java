@@ -0,0 +1,115 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.TriangleBuffer;
+import com.example.demo.service.TransformCache;
+import com.example.demo.service.VertexService;
+import com.example.demo.service.VertexTransformer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransformBenchmark {
+
+  // the matrices come from the scene's cache, as in a frame, only the vertex work is measured
+  @Benchmark
+  public TriangleBuffer convertVertexes(BenchmarkScene scene) {
+    VertexService.convertVertexes(scene.transforms, scene.meshBuffer, scene.triangles);
+    return scene.triangles;
+  }
+
+  @Benchmark
+  public TriangleBuffer transformNormals(BenchmarkScene scene) {
+    VertexService.transformNormals(scene.meshBuffer, scene.info, scene.triangles);
+    return scene.triangles;
+  }
+
+  @Benchmark
+  public TriangleBuffer cullAndClip(BenchmarkScene scene) {
+    VertexService.convertVertexes(scene.transforms, scene.meshBuffer, scene.triangles);
+    VertexService.transformNormals(scene.meshBuffer, scene.info, scene.triangles);
+    VertexService.assembleTriangles(scene.meshBuffer, scene.triangles);
+    return scene.triangles;
+  }
+
+  /** Ten million loose vertexes, far more than any scene, to measure the raw transform rate. */
+  @State(Scope.Benchmark)
+  public static class Batch {
+
+    private static final int VERTEXES = 10_000_000;
+
+    private VertexTransformer.Transform transform;
+    private MeshBuffer mesh;
+    private TriangleBuffer triangles;
+    private TransformCache transforms;
+
+    @Setup
+    public void setup() {
+      var positions = new float[VERTEXES * 3];
+      var random = new Random(7);
+      for (var i = 0; i < positions.length; i++) {
+        positions[i] = random.nextFloat() * 2 - 1;
+      }
+      mesh = new MeshBuffer(positions, new float[3], new int[0], new int[0], null, null);
+      transform =
+          VertexTransformer.Transform.of(
+              Matrix4x4.createTranslation(0, 0, -10)
+                  .multiply(Matrix4x4.createProjection(Math.PI / 8, 1.92, 0.1, 100)),
+              Matrix4x4.createViewPort(
+                  0, 0, BenchmarkScene.WIDTH, BenchmarkScene.HEIGHT, 0, 1));
+      triangles = new TriangleBuffer();
+      triangles.reset(VERTEXES, 1);
+      transforms = new TransformCache();
+      transforms.update(BenchmarkPoses.get("front"), BenchmarkScene.WIDTH, BenchmarkScene.HEIGHT);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Kernel {
+
+    /** {@code vector} falls back to scalar too when the incubator module is not loaded. */
+    @Param({"vector", "scalar"})
+    public String kernel;
+
+    private VertexTransformer transformer;
+
+    @Setup
+    public void setup() {
+      transformer = kernel.equals("vector") ? VertexTransformer.get() : VertexTransformer.scalar();
+    }
+  }
+
+  /** One thread through the kernel alone. */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public TriangleBuffer projectBatch(Batch batch, Kernel kernel) {
+    var triangles = batch.triangles;
+    kernel.transformer.project(
+        batch.transform,
+        batch.mesh.positions(),
+        0,
+        Batch.VERTEXES,
+        triangles.getClip(),
+        triangles.getOutcodes(),
+        triangles.getVertexes());
+    return triangles;
+  }
+
+  /** The whole mesh transform, split over the fork-join pool. */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public TriangleBuffer convertVertexesBatch(Batch batch) {
+    VertexService.convertVertexes(batch.transforms, batch.mesh, batch.triangles);
+    return batch.triangles;
+  }
+}
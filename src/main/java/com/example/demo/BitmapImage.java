@@ -0,0 +1,34 @@
+package com.example.demo;
+
+import com.example.demo.model.Bgra32Bitmap;
+import java.nio.IntBuffer;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+public class BitmapImage {
+
+  private final Bgra32Bitmap bitmap;
+  private final PixelBuffer<?>[] pixelBuffers = new PixelBuffer<?>[2];
+  private final WritableImage[] images = new WritableImage[2];
+
+  public BitmapImage(Bgra32Bitmap bitmap) {
+    this.bitmap = bitmap;
+    for (var i = 0; i < 2; i++) {
+      var pixelBuffer =
+          new PixelBuffer<>(
+              bitmap.getPixelWidth(),
+              bitmap.getPixelHeight(),
+              IntBuffer.wrap(bitmap.getBuffer(i)),
+              PixelFormat.getIntArgbPreInstance());
+      pixelBuffers[i] = pixelBuffer;
+      images[i] = new WritableImage(pixelBuffer);
+    }
+  }
+
+  public WritableImage present() {
+    var front = bitmap.getFrontIndex();
+    pixelBuffers[front].updateBuffer(buffer -> null);
+    return images[front];
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.demo;
+
+import com.example.demo.service.FrameProfiler.Counter;
+import com.example.demo.service.FrameProfiler.FrameStats;
+import com.example.demo.service.FrameProfiler.Stage;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+public class FrameHud {
+
+  private static final Font FONT = Font.font("Monospaced", 12);
+  private static final double LINE_HEIGHT = 15;
+  private static final double PADDING = 6;
+  private static final double WIDTH = 300;
+
+  public static void draw(GraphicsContext graphics, FrameStats stats) {
+    var lines = new String[Stage.values().length + Counter.values().length + 1];
+    var i = 0;
+    lines[i++] = "frame " + stats.frame();
+    for (var stage : Stage.values()) {
+      lines[i++] = String.format("%-26s %8.3f ms", stage, stats.nanos(stage) / 1e6);
+    }
+    for (var counter : Counter.values()) {
+      lines[i++] = String.format("%-26s %11d", counter, stats.count(counter));
+    }
+
+    graphics.save();
+    graphics.setFill(Color.rgb(0, 0, 0, 0.6));
+    graphics.fillRect(0, 0, WIDTH, lines.length * LINE_HEIGHT + PADDING * 2);
+    graphics.setFill(Color.WHITE);
+    graphics.setFont(FONT);
+    for (var line = 0; line < lines.length; line++) {
+      graphics.fillText(lines[line], PADDING, PADDING + (line + 1) * LINE_HEIGHT - 3);
+    }
+    graphics.restore();
+  }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.cli;
+
+import com.example.demo.model.ImageInfo;
+import com.example.demo.model.Scene;
+import com.example.demo.service.FrameProfiler;
+import com.example.demo.service.MeshCacheService;
+import com.example.demo.service.RenderPipeline;
+import com.example.demo.util.PngWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+public class RenderCli {
+
+  private static final String USAGE =
+      """
+      usage: RenderCli --obj <file.obj> [--size 1536x800] [--format png|bgra] [--out <dir>]
+                       [--deferred] [--gouraud] [--instances N] [--msaa 4|8] [--shadows]
+                       [--fixed-point]
+                       [--view [name=]rotX,rotY,posX,posY,posZ,radius,phi,zenith]...
+        --instances draws N copies of the model on a grid around the origin.
+        --msaa tests coverage at 4 or 8 samples per pixel and shades each pixel once.
+        --shadows renders a shadow map from the light first and shades with it.
+        --fixed-point rasterizes with 28.4 fixed-point edge functions and a top-left fill rule.
+        Missing view values fall back to the interactive viewer's start pose.
+        Raw bgra output is width*height little-endian B,G,R,A bytes.""";
+
+  private record View(String name, ImageInfo info) {}
+
+  public static void main(String[] args) throws IOException {
+    Path obj = null;
+    var width = 1536;
+    var height = 800;
+    var format = "png";
+    var out = Paths.get(".");
+    var deferred = false;
+    var gouraud = false;
+    var instances = 1;
+    var samples = 1;
+    var shadows = false;
+    var fixedPoint = false;
+    var views = new ArrayList<View>();
+
+    try {
+      for (var i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--obj" -> obj = Paths.get(args[++i]);
+          case "--size" -> {
+            var size = args[++i].split("x");
+            width = Integer.parseInt(size[0]);
+            height = Integer.parseInt(size[1]);
+          }
+          case "--format" -> format = args[++i];
+          case "--out" -> out = Paths.get(args[++i]);
+          case "--deferred" -> deferred = true;
+          case "--gouraud" -> gouraud = true;
+          case "--instances" -> instances = Integer.parseInt(args[++i]);
+          case "--msaa" -> samples = Integer.parseInt(args[++i]);
+          case "--shadows" -> shadows = true;
+          case "--fixed-point" -> fixedPoint = true;
+          case "--view" -> views.add(parseView(args[++i], views.size()));
+          default -> throw new IllegalArgumentException("unknown option " + args[i]);
+        }
+      }
+      if (obj == null) {
+        throw new IllegalArgumentException("--obj is required");
+      }
+      if (instances < 1) {
+        throw new IllegalArgumentException("--instances must be positive");
+      }
+      if (samples != 1 && samples != 4 && samples != 8) {
+        throw new IllegalArgumentException("--msaa must be 4 or 8");
+      }
+      if (!format.equals("png") && !format.equals("bgra")) {
+        throw new IllegalArgumentException("unknown format " + format);
+      }
+    } catch (RuntimeException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+      return;
+    }
+    if (views.isEmpty()) {
+      views.add(new View("view0", ImageInfo.createDefault()));
+    }
+
+    Files.createDirectories(out);
+    var lods = MeshCacheService.load(obj);
+    var scene = instances == 1 ? Scene.of(lods) : Scene.grid(lods, instances);
+    var pipeline = new RenderPipeline(scene, width, height);
+    pipeline.setDeferred(deferred);
+    pipeline.setGouraud(gouraud);
+    pipeline.setSamples(samples);
+    pipeline.setShadows(shadows);
+    pipeline.setFixedPoint(fixedPoint);
+    render(pipeline, views, out, format, width, height);
+  }
+
+  private static void render(
+      RenderPipeline pipeline, List<View> views, Path out, String format, int width, int height) {
+    var writes = new ArrayList<CompletableFuture<Void>>();
+    for (var view : views) {
+      var start = System.nanoTime();
+      FrameProfiler.beginFrame();
+      var pixels = pipeline.render(view.info()).getFrontBuffer().clone();
+      var stats = FrameProfiler.endFrame();
+      var renderMillis = (System.nanoTime() - start) / 1e6;
+      if (FrameProfiler.ENABLED) {
+        printStats(view.name(), stats);
+      }
+
+      var file = out.resolve(view.name() + "." + format);
+      writes.add(
+          CompletableFuture.runAsync(
+              () -> {
+                write(file, format, pixels, width, height);
+                System.out.printf("%s rendered in %.1f ms%n", file, renderMillis);
+              }));
+    }
+    CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+  }
+
+  private static void printStats(String name, FrameProfiler.FrameStats stats) {
+    var line = new StringBuilder(name);
+    for (var stage : FrameProfiler.Stage.values()) {
+      line.append(String.format(" %s=%.3fms", stage.name().toLowerCase(), stats.nanos(stage) / 1e6));
+    }
+    for (var counter : FrameProfiler.Counter.values()) {
+      line.append(' ').append(counter.name().toLowerCase()).append('=').append(stats.count(counter));
+    }
+    System.out.println(line);
+  }
+
+  private static void write(Path file, String format, int[] pixels, int width, int height) {
+    try {
+      if (format.equals("png")) {
+        PngWriter.write(file, pixels, width, height);
+      } else {
+        var bytes = ByteBuffer.allocate(pixels.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asIntBuffer().put(pixels);
+        Files.write(file, bytes.array());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static View parseView(String spec, int index) {
+    var name = "view" + index;
+    var separator = spec.indexOf('=');
+    if (separator >= 0) {
+      name = spec.substring(0, separator);
+      spec = spec.substring(separator + 1);
+    }
+
+    var info = ImageInfo.createDefault();
+    var values = spec.isEmpty() ? new String[0] : spec.split(",");
+    var numbers = new double[values.length];
+    for (var i = 0; i < values.length; i++) {
+      numbers[i] = Double.parseDouble(values[i]);
+    }
+
+    info.setRotationX((float) value(numbers, 0, info.getRotationX()));
+    info.setRotationY((float) value(numbers, 1, info.getRotationY()));
+    info.setPositionX((float) value(numbers, 2, info.getPositionX()));
+    info.setPositionY((float) value(numbers, 3, info.getPositionY()));
+    info.setPositionZ((float) value(numbers, 4, info.getPositionZ()));
+    var camera = info.getCameraPosition();
+    info.setCameraPosition(
+        new Vector3D(
+            value(numbers, 5, camera.getX()),
+            value(numbers, 6, camera.getY()),
+            value(numbers, 7, camera.getZ())));
+    info.setCameraTarget(
+        new Vector3D(info.getPositionX(), info.getPositionY(), info.getPositionZ()));
+    return new View(name, info);
+  }
+
+  private static double value(double[] numbers, int index, double fallback) {
+    return index < numbers.length ? numbers[index] : fallback;
+  }
+}
@@ -1,31 +1,25 @@
 package com.example.demo.model;
 
-import javafx.scene.image.PixelWriter;
-import javafx.scene.image.WritableImage;
+import java.util.Arrays;
 
 public class Bgra32Bitmap {
 
-  private final byte[] backBuffer;
-  private final int backBufferStride;
-  private final int bytesPerPixel;
+  private final int[][] buffers = new int[2][];
+  private int front;
+  private int[] backBuffer;
 
-  private final WritableImage source;
   private final int pixelWidth;
   private final int pixelHeight;
 
   public Bgra32Bitmap(int pixelWidth, int pixelHeight) {
-    this.source = new WritableImage(pixelWidth, pixelHeight);
-    this.backBuffer = new byte[pixelWidth * pixelHeight * 4];
-    this.backBufferStride = pixelWidth * 4;
-    this.bytesPerPixel = 4;
+    buffers[0] = new int[pixelWidth * pixelHeight];
+    buffers[1] = new int[pixelWidth * pixelHeight];
+    this.front = 0;
+    this.backBuffer = buffers[1];
     this.pixelWidth = pixelWidth;
     this.pixelHeight = pixelHeight;
   }
 
-  public WritableImage getSource() {
-    return source;
-  }
-
   public int getPixelWidth() {
     return pixelWidth;
   }
@@ -34,17 +28,35 @@ public class Bgra32Bitmap {
     return pixelHeight;
   }
 
-  public void setPixel(int x, int y, Color color) {
+  public int[] getBuffer(int index) {
+    return buffers[index];
+  }
+
+  public int getFrontIndex() {
+    return front;
+  }
+
+  public int[] getFrontBuffer() {
+    return buffers[front];
+  }
+
+  public void clear() {
+    Arrays.fill(backBuffer, 0);
+  }
+
+  public void swap() {
+    front ^= 1;
+    backBuffer = buffers[front ^ 1];
+  }
+
+  public void setPixel(int x, int y, int argb) {
     if (x <= 0 || x >= pixelWidth || y <= 0 || y >= pixelHeight) return;
 
-    int index = (y * backBufferStride) + (x * bytesPerPixel);
-    backBuffer[index] = color.getBlue();
-    backBuffer[index + 1] = color.getGreen();
-    backBuffer[index + 2] = color.getRed();
-    backBuffer[index + 3] = (byte) 255;
+    backBuffer[y * pixelWidth + x] = argb;
+  }
 
-    PixelWriter pixelWriter = source.getPixelWriter();
-    pixelWriter.setArgb(
+  public void setPixel(int x, int y, Color color) {
+    setPixel(
         x,
         y,
         (255 << 24)
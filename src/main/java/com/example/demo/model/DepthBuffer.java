@@ -0,0 +1,173 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+
+public class DepthBuffer {
+
+  public static final int BLOCK_SHIFT = 3;
+  public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  public static final int COARSE_SHIFT = 6;
+  /**
+   * Side of a coarse Hi-Z cell, a whole number of blocks. Tiles rasterized in parallel update the
+   * block and coarse bounds without locks, which is only safe while every tile covers whole coarse
+   * cells, so tile sizes derive from this (see {@link TileBins}).
+   */
+  public static final int COARSE_SIZE = 1 << COARSE_SHIFT;
+  public static final float FAR = Float.MAX_VALUE;
+
+  private final int width;
+  private final int height;
+  private final float[] depth;
+
+  private final int blocksX;
+  private final int[] blockEpoch;
+  private final float[] blockMin;
+  private final float[] blockMax;
+  private final boolean[] blockMaxDirty;
+
+  private final int coarseX;
+  private final float[] coarseMax;
+  private final boolean[] coarseMaxDirty;
+
+  private int epoch = 1;
+
+  public DepthBuffer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.depth = new float[width * height];
+
+    this.blocksX = (width + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    var blocksY = (height + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+    this.blockEpoch = new int[blocksX * blocksY];
+    this.blockMin = new float[blocksX * blocksY];
+    this.blockMax = new float[blocksX * blocksY];
+    this.blockMaxDirty = new boolean[blocksX * blocksY];
+
+    this.coarseX = (width + COARSE_SIZE - 1) >> COARSE_SHIFT;
+    var coarseY = (height + COARSE_SIZE - 1) >> COARSE_SHIFT;
+    this.coarseMax = new float[coarseX * coarseY];
+    this.coarseMaxDirty = new boolean[coarseX * coarseY];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public void clear() {
+    epoch++;
+    if (epoch == 0) {
+      Arrays.fill(blockEpoch, 0);
+      epoch = 1;
+    }
+    Arrays.fill(coarseMax, FAR);
+    Arrays.fill(coarseMaxDirty, false);
+  }
+
+  public void prepareBlock(int blockX, int blockY) {
+    var block = blockY * blocksX + blockX;
+    if (blockEpoch[block] == epoch) {
+      return;
+    }
+    var minX = blockX << BLOCK_SHIFT;
+    var maxX = Math.min(minX + BLOCK_SIZE, width);
+    var minY = blockY << BLOCK_SHIFT;
+    var maxY = Math.min(minY + BLOCK_SIZE, height);
+    for (var y = minY; y < maxY; y++) {
+      Arrays.fill(depth, y * width + minX, y * width + maxX, FAR);
+    }
+    blockEpoch[block] = epoch;
+    blockMin[block] = FAR;
+    blockMax[block] = FAR;
+    blockMaxDirty[block] = false;
+  }
+
+  public float get(int x, int y) {
+    var block = (y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT);
+    return blockEpoch[block] == epoch ? depth[y * width + x] : FAR;
+  }
+
+  public boolean testAndSet(int x, int y, float z) {
+    var index = y * width + x;
+    if (depth[index] <= z) {
+      return false;
+    }
+    set(x, y, index, z);
+    return true;
+  }
+
+  public void set(int x, int y, float z) {
+    set(x, y, y * width + x, z);
+  }
+
+  private void set(int x, int y, int index, float z) {
+    depth[index] = z;
+    var block = (y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT);
+    if (z < blockMin[block]) {
+      blockMin[block] = z;
+    }
+    blockMaxDirty[block] = true;
+    coarseMaxDirty[(y >> COARSE_SHIFT) * coarseX + (x >> COARSE_SHIFT)] = true;
+  }
+
+  public float getBlockMin(int blockX, int blockY) {
+    var block = blockY * blocksX + blockX;
+    return blockEpoch[block] == epoch ? blockMin[block] : FAR;
+  }
+
+  public float getBlockMax(int blockX, int blockY) {
+    var block = blockY * blocksX + blockX;
+    if (blockEpoch[block] != epoch) {
+      return FAR;
+    }
+    if (blockMaxDirty[block]) {
+      var minX = blockX << BLOCK_SHIFT;
+      var maxX = Math.min(minX + BLOCK_SIZE, width);
+      var minY = blockY << BLOCK_SHIFT;
+      var maxY = Math.min(minY + BLOCK_SIZE, height);
+      var max = 0f;
+      for (var y = minY; y < maxY; y++) {
+        for (var i = y * width + minX; i < y * width + maxX; i++) {
+          max = Math.max(max, depth[i]);
+        }
+      }
+      blockMax[block] = max;
+      blockMaxDirty[block] = false;
+    }
+    return blockMax[block];
+  }
+
+  public float getCoarseMax(int cellX, int cellY) {
+    var cell = cellY * coarseX + cellX;
+    if (coarseMaxDirty[cell]) {
+      var shift = COARSE_SHIFT - BLOCK_SHIFT;
+      var minBlockX = cellX << shift;
+      var maxBlockX = Math.min((cellX + 1) << shift, blocksX);
+      var minBlockY = cellY << shift;
+      var maxBlockY = Math.min((cellY + 1) << shift, blockEpoch.length / blocksX);
+      var max = 0f;
+      for (var by = minBlockY; by < maxBlockY; by++) {
+        for (var bx = minBlockX; bx < maxBlockX; bx++) {
+          max = Math.max(max, getBlockMax(bx, by));
+        }
+      }
+      coarseMax[cell] = max;
+      coarseMaxDirty[cell] = false;
+    }
+    return coarseMax[cell];
+  }
+
+  public boolean isOccluded(int minX, int minY, int maxX, int maxY, float nearest) {
+    for (var cy = minY >> COARSE_SHIFT; cy <= maxY >> COARSE_SHIFT; cy++) {
+      for (var cx = minX >> COARSE_SHIFT; cx <= maxX >> COARSE_SHIFT; cx++) {
+        if (getCoarseMax(cx, cy) > nearest) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.model;
+
+/**
+ * Interpolated normals and texels of the nearest surface per pixel. Coverage comes from the depth
+ * buffer, so stale values behind FAR depth are never read and the buffer needs no clearing.
+ */
+public class GBuffer {
+
+  private final int width;
+  private final int height;
+  private final float[] normals;
+  private final int[] albedo;
+  private double center;
+
+  public GBuffer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.normals = new float[width * height * 3];
+    this.albedo = new int[width * height];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /** Where in its pixel the raster took depth and normals, 0 at the corner and 0.5 at the centre. */
+  public double getCenter() {
+    return center;
+  }
+
+  public void setCenter(double center) {
+    this.center = center;
+  }
+
+  public void setNormal(int x, int y, float nx, float ny, float nz) {
+    var index = (y * width + x) * 3;
+    normals[index] = nx;
+    normals[index + 1] = ny;
+    normals[index + 2] = nz;
+  }
+
+  public float getNormalX(int x, int y) {
+    return normals[(y * width + x) * 3];
+  }
+
+  public float getNormalY(int x, int y) {
+    return normals[(y * width + x) * 3 + 1];
+  }
+
+  public float getNormalZ(int x, int y) {
+    return normals[(y * width + x) * 3 + 2];
+  }
+
+  /** Texel the lit color gets multiplied by, opaque white for untextured surfaces. */
+  public void setAlbedo(int x, int y, int argb) {
+    albedo[y * width + x] = argb;
+  }
+
+  public int getAlbedo(int x, int y) {
+    return albedo[y * width + x];
+  }
+}
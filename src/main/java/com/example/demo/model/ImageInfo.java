@@ -1,15 +1,16 @@
 package com.example.demo.model;
 
+import java.util.Objects;
 import lombok.*;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 
-import java.util.List;
-
+/**
+ * The pose of a frame. Every setter that really changes a value bumps {@link #getVersion()}, and
+ * rotations also bump {@link #getRotationVersion()}, so the renderer can tell which of its cached
+ * results are still valid by comparing two ints.
+ */
 @Getter
-@Setter
-@Builder
 @NoArgsConstructor
-@AllArgsConstructor
 public class ImageInfo {
 
     private Vector3D cameraPosition;
@@ -22,5 +23,86 @@ public class ImageInfo {
     private float RotationX;
     private float RotationY;
 
-    private List<Vector3D> Vertexes; // TODO really needed???
+    private int version;
+    private int rotationVersion;
+
+    @Builder
+    public ImageInfo(Vector3D cameraPosition, Vector3D cameraTarget, Vector3D camUp, float positionX, float positionY,
+                     float positionZ, float rotationX, float rotationY) {
+        this.cameraPosition = cameraPosition;
+        this.cameraTarget = cameraTarget;
+        this.camUp = camUp;
+        this.positionX = positionX;
+        this.positionY = positionY;
+        this.positionZ = positionZ;
+        this.RotationX = rotationX;
+        this.RotationY = rotationY;
+    }
+
+    public static ImageInfo createDefault() {
+        return ImageInfo.builder()
+                .positionZ(0)
+                .cameraTarget(new Vector3D(0, 0, 0))
+                .cameraPosition(new Vector3D(12, Math.PI, 0))
+                .camUp(new Vector3D(0, 1, 0))
+                .build();
+    }
+
+    public void setCameraPosition(Vector3D cameraPosition) {
+        if (!Objects.equals(this.cameraPosition, cameraPosition)) {
+            this.cameraPosition = cameraPosition;
+            version++;
+        }
+    }
+
+    public void setCameraTarget(Vector3D cameraTarget) {
+        if (!Objects.equals(this.cameraTarget, cameraTarget)) {
+            this.cameraTarget = cameraTarget;
+            version++;
+        }
+    }
+
+    public void setCamUp(Vector3D camUp) {
+        if (!Objects.equals(this.camUp, camUp)) {
+            this.camUp = camUp;
+            version++;
+        }
+    }
+
+    public void setPositionX(float positionX) {
+        if (this.positionX != positionX) {
+            this.positionX = positionX;
+            version++;
+        }
+    }
+
+    public void setPositionY(float positionY) {
+        if (this.positionY != positionY) {
+            this.positionY = positionY;
+            version++;
+        }
+    }
+
+    public void setPositionZ(float positionZ) {
+        if (this.positionZ != positionZ) {
+            this.positionZ = positionZ;
+            version++;
+        }
+    }
+
+    public void setRotationX(float rotationX) {
+        if (this.RotationX != rotationX) {
+            this.RotationX = rotationX;
+            rotationVersion++;
+            version++;
+        }
+    }
+
+    public void setRotationY(float rotationY) {
+        if (this.RotationY != rotationY) {
+            this.RotationY = rotationY;
+            rotationVersion++;
+            version++;
+        }
+    }
 }
@@ -0,0 +1,10 @@
+package com.example.demo.model;
+
+import java.nio.file.Path;
+
+/**
+ * A {@code newmtl} entry of an MTL library. Only the diffuse map is used, it modulates the lit
+ * color. {@code texturePath} is kept even when the image failed to load, so a cached mesh can try
+ * again.
+ */
+public record Material(String name, Path texturePath, Texture texture) {}
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.apache.commons.math3.util.MathArrays;
 
 @Getter
 @NoArgsConstructor
@@ -35,105 +36,314 @@ public class Matrix4x4 implements Cloneable {
             0, 0, 0, 1
     );
 
-    @SneakyThrows
     public static Matrix4x4 createTranslation(double x, double y, double z) {
-        var res = (Matrix4x4) BASE.clone();
-        res.m41 = x;
-        res.m42 = y;
-        res. m43 = z;
-        return res;
+        return new Matrix4x4().setTranslation(x, y, z);
     }
 
-    @SneakyThrows
     public static Matrix4x4 createRotationX(double radians) {
-        var res = (Matrix4x4) BASE.clone();
+        return new Matrix4x4().setRotationX(radians);
+    }
+
+    public static Matrix4x4 createRotationY(double radians) {
+        return new Matrix4x4().setRotationY(radians);
+    }
+
+    /*
+     * The set methods overwrite this matrix with what the create method of the same name returns,
+     * so a cache can rebuild its matrices every frame without allocating them.
+     */
+
+    public Matrix4x4 setTranslation(double x, double y, double z) {
+        setIdentity();
+        m41 = x;
+        m42 = y;
+        m43 = z;
+        return this;
+    }
+
+    public Matrix4x4 setRotationX(double radians) {
+        setIdentity();
 
         double cos = Math.cos(radians);
         double sin = Math.sin(radians);
 
-        res.m22 = cos;
-        res.m23 = sin;
-        res.m32 = -sin;
-        res.m33 = cos;
+        m22 = cos;
+        m23 = sin;
+        m32 = -sin;
+        m33 = cos;
 
-        return res;
+        return this;
     }
 
-    @SneakyThrows
-    public static Matrix4x4 createRotationY(double radians) {
-        var res = (Matrix4x4) BASE.clone();
+    public Matrix4x4 setRotationY(double radians) {
+        setIdentity();
 
         double cos = Math.cos(radians);
         double sin = Math.sin(radians);
 
-        res.m11 = cos;
-        res.m13 = -sin;
-        res.m31 = sin;
-        res.m33 = cos;
+        m11 = cos;
+        m13 = -sin;
+        m31 = sin;
+        m33 = cos;
 
-        return res;
+        return this;
     }
 
-    public Matrix4x4 multiply(Matrix4x4 m) {
-        var res = new Matrix4x4();
-
-        res.m11 = this.m11 * m.m11 + this.m12 * m.m21 + this.m13 * m.m31 + this.m14 * m.m41;
-        res.m12 = this.m11 * m.m12 + this.m12 * m.m22 + this.m13 * m.m32 + this.m14 * m.m42;
-        res.m13 = this.m11 * m.m13 + this.m12 * m.m23 + this.m13 * m.m33 + this.m14 * m.m43;
-        res.m14 = this.m11 * m.m14 + this.m12 * m.m24 + this.m13 * m.m34 + this.m14 * m.m44;
+    public Matrix4x4 setScale(double x, double y, double z) {
+        setIdentity();
+        m11 = x;
+        m22 = y;
+        m33 = z;
+        return this;
+    }
 
-        res.m21 = this.m21 * m.m11 + this.m22 * m.m21 + this.m23 * m.m31 + this.m24 * m.m41;
-        res.m22 = this.m21 * m.m12 + this.m22 * m.m22 + this.m23 * m.m32 + this.m24 * m.m42;
-        res.m23 = this.m21 * m.m13 + this.m22 * m.m23 + this.m23 * m.m33 + this.m24 * m.m43;
-        res.m24 = this.m21 * m.m14 + this.m22 * m.m24 + this.m23 * m.m34 + this.m24 * m.m44;
+    private void setIdentity() {
+        m11 = m22 = m33 = m44 = 1;
+        m12 = m13 = m14 = 0;
+        m21 = m23 = m24 = 0;
+        m31 = m32 = m34 = 0;
+        m41 = m42 = m43 = 0;
+    }
 
-        res.m31 = this.m31 * m.m11 + this.m32 * m.m21 + this.m33 * m.m31 + this.m34 * m.m41;
-        res.m32 = this.m31 * m.m12 + this.m32 * m.m22 + this.m33 * m.m32 + this.m34 * m.m42;
-        res.m33 = this.m31 * m.m13 + this.m32 * m.m23 + this.m33 * m.m33 + this.m34 * m.m43;
-        res.m34 = this.m31 * m.m14 + this.m32 * m.m24 + this.m33 * m.m34 + this.m34 * m.m44;
+    public Matrix4x4 multiply(Matrix4x4 m) {
+        return multiplyInto(m, new Matrix4x4());
+    }
 
-        res.m41 = this.m41 * m.m11 + this.m42 * m.m21 + this.m43 * m.m31 + this.m44 * m.m41;
-        res.m42 = this.m41 * m.m12 + this.m42 * m.m22 + this.m43 * m.m32 + this.m44 * m.m42;
-        res.m43 = this.m41 * m.m13 + this.m42 * m.m23 + this.m43 * m.m33 + this.m44 * m.m43;
-        res.m44 = this.m41 * m.m14 + this.m42 * m.m24 + this.m43 * m.m34 + this.m44 * m.m44;
+    public Matrix4x4 multiplyInto(Matrix4x4 m, Matrix4x4 res) {
+        var m11 = this.m11 * m.m11 + this.m12 * m.m21 + this.m13 * m.m31 + this.m14 * m.m41;
+        var m12 = this.m11 * m.m12 + this.m12 * m.m22 + this.m13 * m.m32 + this.m14 * m.m42;
+        var m13 = this.m11 * m.m13 + this.m12 * m.m23 + this.m13 * m.m33 + this.m14 * m.m43;
+        var m14 = this.m11 * m.m14 + this.m12 * m.m24 + this.m13 * m.m34 + this.m14 * m.m44;
+
+        var m21 = this.m21 * m.m11 + this.m22 * m.m21 + this.m23 * m.m31 + this.m24 * m.m41;
+        var m22 = this.m21 * m.m12 + this.m22 * m.m22 + this.m23 * m.m32 + this.m24 * m.m42;
+        var m23 = this.m21 * m.m13 + this.m22 * m.m23 + this.m23 * m.m33 + this.m24 * m.m43;
+        var m24 = this.m21 * m.m14 + this.m22 * m.m24 + this.m23 * m.m34 + this.m24 * m.m44;
+
+        var m31 = this.m31 * m.m11 + this.m32 * m.m21 + this.m33 * m.m31 + this.m34 * m.m41;
+        var m32 = this.m31 * m.m12 + this.m32 * m.m22 + this.m33 * m.m32 + this.m34 * m.m42;
+        var m33 = this.m31 * m.m13 + this.m32 * m.m23 + this.m33 * m.m33 + this.m34 * m.m43;
+        var m34 = this.m31 * m.m14 + this.m32 * m.m24 + this.m33 * m.m34 + this.m34 * m.m44;
+
+        var m41 = this.m41 * m.m11 + this.m42 * m.m21 + this.m43 * m.m31 + this.m44 * m.m41;
+        var m42 = this.m41 * m.m12 + this.m42 * m.m22 + this.m43 * m.m32 + this.m44 * m.m42;
+        var m43 = this.m41 * m.m13 + this.m42 * m.m23 + this.m43 * m.m33 + this.m44 * m.m43;
+        var m44 = this.m41 * m.m14 + this.m42 * m.m24 + this.m43 * m.m34 + this.m44 * m.m44;
+
+        res.m11 = m11;
+        res.m12 = m12;
+        res.m13 = m13;
+        res.m14 = m14;
+        res.m21 = m21;
+        res.m22 = m22;
+        res.m23 = m23;
+        res.m24 = m24;
+        res.m31 = m31;
+        res.m32 = m32;
+        res.m33 = m33;
+        res.m34 = m34;
+        res.m41 = m41;
+        res.m42 = m42;
+        res.m43 = m43;
+        res.m44 = m44;
 
         return res;
     }
 
-    @SneakyThrows
-    public static Matrix4x4 createScale(double x, double y, double z) {
-        var res = (Matrix4x4) BASE.clone();
-        res.m11 = x;
-        res.m22 = y;
-        res.m33 = z;
+    /**
+     * Inverse of an affine matrix, one whose last column is (0, 0, 0, 1): the 3x3 part is inverted by its adjugate
+     * and the translation row is moved back through it.
+     */
+    public Matrix4x4 invertAffine() {
+        return invertAffineInto(new Matrix4x4());
+    }
+
+    /** Same into res, which may be this matrix. */
+    public Matrix4x4 invertAffineInto(Matrix4x4 res) {
+        var c11 = m22 * m33 - m23 * m32;
+        var c12 = m13 * m32 - m12 * m33;
+        var c13 = m12 * m23 - m13 * m22;
+        var c21 = m23 * m31 - m21 * m33;
+        var c22 = m11 * m33 - m13 * m31;
+        var c23 = m13 * m21 - m11 * m23;
+        var c31 = m21 * m32 - m22 * m31;
+        var c32 = m12 * m31 - m11 * m32;
+        var c33 = m11 * m22 - m12 * m21;
+        var determinant = m11 * c11 + m12 * c21 + m13 * c31;
+        if (determinant == 0) {
+            throw new ArithmeticException("matrix is singular");
+        }
+        var inverse = 1 / determinant;
+
+        var r11 = c11 * inverse;
+        var r12 = c12 * inverse;
+        var r13 = c13 * inverse;
+        var r21 = c21 * inverse;
+        var r22 = c22 * inverse;
+        var r23 = c23 * inverse;
+        var r31 = c31 * inverse;
+        var r32 = c32 * inverse;
+        var r33 = c33 * inverse;
+        var r41 = -(m41 * r11 + m42 * r21 + m43 * r31);
+        var r42 = -(m41 * r12 + m42 * r22 + m43 * r32);
+        var r43 = -(m41 * r13 + m42 * r23 + m43 * r33);
+
+        res.m11 = r11;
+        res.m12 = r12;
+        res.m13 = r13;
+        res.m14 = 0;
+        res.m21 = r21;
+        res.m22 = r22;
+        res.m23 = r23;
+        res.m24 = 0;
+        res.m31 = r31;
+        res.m32 = r32;
+        res.m33 = r33;
+        res.m34 = 0;
+        res.m41 = r41;
+        res.m42 = r42;
+        res.m43 = r43;
+        res.m44 = 1;
         return res;
     }
 
-    @SneakyThrows
-    public static Matrix4x4 createView(Vector3D cameraPosition, Vector3D cameraTarget, Vector3D cameraUpVector) {
-        var zaxis = cameraPosition.subtract(cameraTarget).normalize();
-        var xaxis = cameraUpVector.crossProduct(zaxis).normalize();
-        var yaxis = zaxis.crossProduct(xaxis);
+    /**
+     * General inverse, for projective matrices that {@link #invertAffine()} does not cover. Expands by the 2x2
+     * minors of the upper and the lower two rows.
+     */
+    public Matrix4x4 invert() {
+        return invertInto(new Matrix4x4());
+    }
 
-        var res = (Matrix4x4) BASE.clone();
+    /** Same into res, which may be this matrix. */
+    public Matrix4x4 invertInto(Matrix4x4 res) {
+        var s0 = m11 * m22 - m21 * m12;
+        var s1 = m11 * m23 - m21 * m13;
+        var s2 = m11 * m24 - m21 * m14;
+        var s3 = m12 * m23 - m22 * m13;
+        var s4 = m12 * m24 - m22 * m14;
+        var s5 = m13 * m24 - m23 * m14;
+        var c5 = m33 * m44 - m43 * m34;
+        var c4 = m32 * m44 - m42 * m34;
+        var c3 = m32 * m43 - m42 * m33;
+        var c2 = m31 * m44 - m41 * m34;
+        var c1 = m31 * m43 - m41 * m33;
+        var c0 = m31 * m42 - m41 * m32;
+        var determinant = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (determinant == 0) {
+            throw new ArithmeticException("matrix is singular");
+        }
+        var inverse = 1 / determinant;
+
+        var r11 = (m22 * c5 - m23 * c4 + m24 * c3) * inverse;
+        var r12 = (-m12 * c5 + m13 * c4 - m14 * c3) * inverse;
+        var r13 = (m42 * s5 - m43 * s4 + m44 * s3) * inverse;
+        var r14 = (-m32 * s5 + m33 * s4 - m34 * s3) * inverse;
+        var r21 = (-m21 * c5 + m23 * c2 - m24 * c1) * inverse;
+        var r22 = (m11 * c5 - m13 * c2 + m14 * c1) * inverse;
+        var r23 = (-m41 * s5 + m43 * s2 - m44 * s1) * inverse;
+        var r24 = (m31 * s5 - m33 * s2 + m34 * s1) * inverse;
+        var r31 = (m21 * c4 - m22 * c2 + m24 * c0) * inverse;
+        var r32 = (-m11 * c4 + m12 * c2 - m14 * c0) * inverse;
+        var r33 = (m41 * s4 - m42 * s2 + m44 * s0) * inverse;
+        var r34 = (-m31 * s4 + m32 * s2 - m34 * s0) * inverse;
+        var r41 = (-m21 * c3 + m22 * c1 - m23 * c0) * inverse;
+        var r42 = (m11 * c3 - m12 * c1 + m13 * c0) * inverse;
+        var r43 = (-m41 * s3 + m42 * s1 - m43 * s0) * inverse;
+        var r44 = (m31 * s3 - m32 * s1 + m33 * s0) * inverse;
+
+        res.m11 = r11;
+        res.m12 = r12;
+        res.m13 = r13;
+        res.m14 = r14;
+        res.m21 = r21;
+        res.m22 = r22;
+        res.m23 = r23;
+        res.m24 = r24;
+        res.m31 = r31;
+        res.m32 = r32;
+        res.m33 = r33;
+        res.m34 = r34;
+        res.m41 = r41;
+        res.m42 = r42;
+        res.m43 = r43;
+        res.m44 = r44;
+        return res;
+    }
 
-        res.m11 = xaxis.getX();
-        res.m12 = yaxis.getX();
-        res.m13 = zaxis.getX();
+    public void transformArray(float[] src, float[] dst, int count) {
+        transformArray(src, dst, 0, count);
+    }
 
-        res.m21 = xaxis.getY();
-        res.m22 = yaxis.getY();
-        res.m23 = zaxis.getY();
+    public void transformArray(float[] src, float[] dst, int first, int count) {
+        for (int i = 0, s = first * 3, d = first * 4; i < count; i++, s += 3, d += 4) {
+            double x = src[s];
+            double y = src[s + 1];
+            double z = src[s + 2];
+            dst[d] = (float) (x * m11 + y * m21 + z * m31 + m41);
+            dst[d + 1] = (float) (x * m12 + y * m22 + z * m32 + m42);
+            dst[d + 2] = (float) (x * m13 + y * m23 + z * m33 + m43);
+            dst[d + 3] = (float) (x * m14 + y * m24 + z * m34 + m44);
+        }
+    }
 
-        res.m31 = xaxis.getZ();
-        res.m32 = yaxis.getZ();
-        res.m33 = zaxis.getZ();
+    public static Matrix4x4 createScale(double x, double y, double z) {
+        return new Matrix4x4().setScale(x, y, z);
+    }
 
-        res.m41 = -xaxis.dotProduct(cameraPosition);
-        res.m42 = -yaxis.dotProduct(cameraPosition);
-        res.m43 = -zaxis.dotProduct(cameraPosition);
+    public static Matrix4x4 createView(Vector3D cameraPosition, Vector3D cameraTarget, Vector3D cameraUpVector) {
+        return new Matrix4x4().setView(cameraPosition.getX(), cameraPosition.getY(), cameraPosition.getZ(),
+                cameraTarget, cameraUpVector);
+    }
 
-        return res;
+    /**
+     * The view matrix of a camera at the given position. Same arithmetic as the Vector3D methods, whose cross and
+     * dot products go through MathArrays.linearCombination, so both forms give the same bits.
+     */
+    public Matrix4x4 setView(double cameraX, double cameraY, double cameraZ, Vector3D cameraTarget,
+                             Vector3D cameraUpVector) {
+        var zx = cameraX - cameraTarget.getX();
+        var zy = cameraY - cameraTarget.getY();
+        var zz = cameraZ - cameraTarget.getZ();
+        var zscale = 1 / Math.sqrt(zx * zx + zy * zy + zz * zz);
+        zx *= zscale;
+        zy *= zscale;
+        zz *= zscale;
+
+        var upX = cameraUpVector.getX();
+        var upY = cameraUpVector.getY();
+        var upZ = cameraUpVector.getZ();
+        var xx = MathArrays.linearCombination(upY, zz, -upZ, zy);
+        var xy = MathArrays.linearCombination(upZ, zx, -upX, zz);
+        var xz = MathArrays.linearCombination(upX, zy, -upY, zx);
+        var xscale = 1 / Math.sqrt(xx * xx + xy * xy + xz * xz);
+        xx *= xscale;
+        xy *= xscale;
+        xz *= xscale;
+
+        var yx = MathArrays.linearCombination(zy, xz, -zz, xy);
+        var yy = MathArrays.linearCombination(zz, xx, -zx, xz);
+        var yz = MathArrays.linearCombination(zx, xy, -zy, xx);
+
+        setIdentity();
+
+        m11 = xx;
+        m12 = yx;
+        m13 = zx;
+
+        m21 = xy;
+        m22 = yy;
+        m23 = zy;
+
+        m31 = xz;
+        m32 = yz;
+        m33 = zz;
+
+        m41 = -MathArrays.linearCombination(xx, cameraX, xy, cameraY, xz, cameraZ);
+        m42 = -MathArrays.linearCombination(yx, cameraX, yy, cameraY, yz, cameraZ);
+        m43 = -MathArrays.linearCombination(zx, cameraX, zy, cameraY, zz, cameraZ);
+
+        return this;
     }
 
     public static Matrix4x4 createProjection(double fov, double aspectRatio, double nearPlaneDistance, double farPlaneDistance) {
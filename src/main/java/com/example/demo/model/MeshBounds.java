@@ -0,0 +1,41 @@
+package com.example.demo.model;
+
+public record MeshBounds(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+
+  public static MeshBounds of(float[] positions) {
+    var minX = Float.POSITIVE_INFINITY;
+    var minY = Float.POSITIVE_INFINITY;
+    var minZ = Float.POSITIVE_INFINITY;
+    var maxX = Float.NEGATIVE_INFINITY;
+    var maxY = Float.NEGATIVE_INFINITY;
+    var maxZ = Float.NEGATIVE_INFINITY;
+    for (var i = 0; i < positions.length; i += 3) {
+      minX = Math.min(minX, positions[i]);
+      minY = Math.min(minY, positions[i + 1]);
+      minZ = Math.min(minZ, positions[i + 2]);
+      maxX = Math.max(maxX, positions[i]);
+      maxY = Math.max(maxY, positions[i + 1]);
+      maxZ = Math.max(maxZ, positions[i + 2]);
+    }
+    return new MeshBounds(minX, minY, minZ, maxX, maxY, maxZ);
+  }
+
+  public float centerX() {
+    return (minX + maxX) / 2;
+  }
+
+  public float centerY() {
+    return (minY + maxY) / 2;
+  }
+
+  public float centerZ() {
+    return (minZ + maxZ) / 2;
+  }
+
+  public float radius() {
+    var dx = maxX - minX;
+    var dy = maxY - minY;
+    var dz = maxZ - minZ;
+    return (float) Math.sqrt(dx * dx + dy * dy + dz * dz) / 2;
+  }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.model;
+
+public record MeshBuffer(
+    float[] positions,
+    float[] normals,
+    int[] vertexIndexes,
+    int[] normalIndexes,
+    MeshBounds bounds,
+    Meshlets meshlets,
+    MeshSurface surface) {
+
+  public MeshBuffer(float[] positions, float[] normals, int[] vertexIndexes, int[] normalIndexes) {
+    this(positions, normals, vertexIndexes, normalIndexes, MeshBounds.of(positions), null, null);
+  }
+
+  public MeshBuffer(
+      float[] positions,
+      float[] normals,
+      int[] vertexIndexes,
+      int[] normalIndexes,
+      MeshBounds bounds) {
+    this(positions, normals, vertexIndexes, normalIndexes, bounds, null, null);
+  }
+
+  public MeshBuffer(
+      float[] positions,
+      float[] normals,
+      int[] vertexIndexes,
+      int[] normalIndexes,
+      MeshBounds bounds,
+      Meshlets meshlets) {
+    this(positions, normals, vertexIndexes, normalIndexes, bounds, meshlets, null);
+  }
+
+  public int vertexCount() {
+    return positions.length / 3;
+  }
+
+  public int normalCount() {
+    return normals.length / 3;
+  }
+
+  public int triangleCount() {
+    return vertexIndexes.length / 3;
+  }
+}
@@ -0,0 +1,17 @@
+package com.example.demo.model;
+
+/** Levels of detail of one mesh, level 0 is the source mesh and every next one is coarser. */
+public record MeshLods(MeshBuffer... levels) {
+
+  public int count() {
+    return levels.length;
+  }
+
+  public MeshBuffer level(int index) {
+    return levels[index];
+  }
+
+  public MeshBuffer base() {
+    return levels[0];
+  }
+}
@@ -0,0 +1,23 @@
+package com.example.demo.model;
+
+import java.nio.file.Path;
+
+/**
+ * Texture coordinates and materials of a mesh. {@code uvIndexes} and {@code materialIndexes}
+ * have one entry per corner like the other index arrays, -1 where a corner has none. Once a mesh
+ * is welded the uvs line up with its normals, so the uv of a corner is found through its normal
+ * index and follows the normal through meshlets, LODs and clipping. {@code libraries} are the MTL
+ * files the materials came from, so a cache of the mesh can tell when they change.
+ */
+public record MeshSurface(
+    float[] uvs, int[] uvIndexes, int[] materialIndexes, Material[] materials, Path[] libraries) {
+
+  /** The same materials over new corners, as welding, meshlets and simplification produce. */
+  public MeshSurface withCorners(float[] uvs, int[] uvIndexes, int[] materialIndexes) {
+    return new MeshSurface(uvs, uvIndexes, materialIndexes, materials, libraries);
+  }
+
+  public int uvCount() {
+    return uvs.length / 2;
+  }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.model;
+
+public record Meshlets(
+    int[] vertexOffsets,
+    int[] normalOffsets,
+    int[] triangleOffsets,
+    float[] spheres,
+    float[] cones) {
+
+  public int count() {
+    return triangleOffsets.length - 1;
+  }
+}
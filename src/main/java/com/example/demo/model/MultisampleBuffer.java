@@ -0,0 +1,163 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+
+/**
+ * Depth and color per sample for multisampled frames, 4 or 8 samples per pixel stored next to
+ * each other. Tiles are cleared lazily the first time a triangle reaches them in a frame, tiles
+ * nothing reached are skipped by the resolve and keep the cleared bitmap.
+ */
+public class MultisampleBuffer {
+
+  public static final float FAR = DepthBuffer.FAR;
+
+  // standard rotated-grid patterns in sixteenths of a pixel, relative to the pixel centre
+  private static final int[] PATTERN_4 = {-2, -6, 6, -2, -6, 2, 2, 6};
+  private static final int[] PATTERN_8 = {1, -3, -1, 3, 5, 1, -3, -5, -5, 5, -7, -1, 3, 7, 7, -7};
+
+  private final int width;
+  private final int height;
+  private final int samples;
+  private final int sampleShift;
+  private final float[] sampleX;
+  private final float[] sampleY;
+  private final float[] depth;
+  private final int[] colors;
+
+  private final int tileSize;
+  private final int tilesX;
+  private final int[] tileEpoch;
+  private int epoch = 1;
+
+  public MultisampleBuffer(int width, int height, int samples, int tileSize) {
+    var pattern =
+        switch (samples) {
+          case 4 -> PATTERN_4;
+          case 8 -> PATTERN_8;
+          default -> throw new IllegalArgumentException("unsupported sample count " + samples);
+        };
+    this.width = width;
+    this.height = height;
+    this.samples = samples;
+    this.sampleShift = Integer.numberOfTrailingZeros(samples);
+    this.sampleX = new float[samples];
+    this.sampleY = new float[samples];
+    for (var s = 0; s < samples; s++) {
+      sampleX[s] = pattern[s * 2] / 16f;
+      sampleY[s] = pattern[s * 2 + 1] / 16f;
+    }
+    this.depth = new float[width * height * samples];
+    this.colors = new int[width * height * samples];
+
+    this.tileSize = tileSize;
+    this.tilesX = (width + tileSize - 1) / tileSize;
+    this.tileEpoch = new int[tilesX * ((height + tileSize - 1) / tileSize)];
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getSamples() {
+    return samples;
+  }
+
+  /** Offset of sample {@code s} from the pixel centre, in pixels. */
+  public float getSampleX(int s) {
+    return sampleX[s];
+  }
+
+  public float getSampleY(int s) {
+    return sampleY[s];
+  }
+
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  public int getTilesX() {
+    return tilesX;
+  }
+
+  public int getTileCount() {
+    return tileEpoch.length;
+  }
+
+  public void clear() {
+    epoch++;
+    if (epoch == 0) {
+      Arrays.fill(tileEpoch, 0);
+      epoch = 1;
+    }
+  }
+
+  /** Clears the samples of {@code tile} unless that already happened this frame. */
+  public void prepareTile(int tile) {
+    if (tileEpoch[tile] == epoch) {
+      return;
+    }
+    var minX = (tile % tilesX) * tileSize;
+    var minY = (tile / tilesX) * tileSize;
+    var maxX = Math.min(minX + tileSize, width);
+    var maxY = Math.min(minY + tileSize, height);
+    for (var y = minY; y < maxY; y++) {
+      Arrays.fill(depth, index(minX, y), index(maxX, y), FAR);
+      Arrays.fill(colors, index(minX, y), index(maxX, y), 0);
+    }
+    tileEpoch[tile] = epoch;
+  }
+
+  public boolean isTileWritten(int tile) {
+    return tileEpoch[tile] == epoch;
+  }
+
+  /** Index of the first sample of a pixel, its other samples follow. */
+  public int index(int x, int y) {
+    return (y * width + x) << sampleShift;
+  }
+
+  public boolean testAndSet(int index, float z) {
+    if (depth[index] <= z) {
+      return false;
+    }
+    depth[index] = z;
+    return true;
+  }
+
+  /** Writes {@code argb} into the samples of the pixel at {@code index} whose bit is set. */
+  public void setColor(int index, int mask, int argb) {
+    for (; mask != 0; mask &= mask - 1) {
+      colors[index + Integer.numberOfTrailingZeros(mask)] = argb;
+    }
+  }
+
+  /** Box-filtered average of the samples of a pixel, colors are premultiplied so alpha is too. */
+  public int resolve(int x, int y) {
+    var index = index(x, y);
+    var first = colors[index];
+    var alpha = 0;
+    var red = 0;
+    var green = 0;
+    var blue = 0;
+    var uniform = true;
+    for (var s = 0; s < samples; s++) {
+      var argb = colors[index + s];
+      uniform &= argb == first;
+      alpha += argb >>> 24;
+      red += (argb >> 16) & 0xFF;
+      green += (argb >> 8) & 0xFF;
+      blue += argb & 0xFF;
+    }
+    if (uniform) {
+      return first;
+    }
+    return (alpha >> sampleShift) << 24
+        | (red >> sampleShift) << 16
+        | (green >> sampleShift) << 8
+        | blue >> sampleShift;
+  }
+}
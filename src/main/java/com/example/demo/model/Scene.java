@@ -0,0 +1,58 @@
+package com.example.demo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Instances drawn into one frame, sharing the depth buffer and the bitmap. */
+public class Scene {
+
+  // instances on a grid are this many bounding radii apart
+  private static final double GRID_SPACING = 2.5;
+
+  private final List<SceneInstance> instances = new ArrayList<>();
+  private int version;
+
+  public static Scene of(MeshLods lods) {
+    var scene = new Scene();
+    scene.add(lods, Matrix4x4.createTranslation(0, 0, 0));
+    return scene;
+  }
+
+  /** {@code count} copies on a square grid in the xz plane, centered on the origin. */
+  public static Scene grid(MeshLods lods, int count) {
+    var scene = new Scene();
+    var bounds = lods.base().bounds();
+    var spacing = bounds.radius() * GRID_SPACING;
+    var columns = (int) Math.ceil(Math.sqrt(count));
+    var rows = (count + columns - 1) / columns;
+    for (var i = 0; i < count; i++) {
+      var x = (i % columns - (columns - 1) / 2.0) * spacing - bounds.centerX();
+      var z = (i / columns - (rows - 1) / 2.0) * spacing - bounds.centerZ();
+      scene.add(lods, Matrix4x4.createTranslation(x, -bounds.centerY(), z));
+    }
+    return scene;
+  }
+
+  public SceneInstance add(MeshLods lods, Matrix4x4 model) {
+    var instance = new SceneInstance(lods, model);
+    instances.add(instance);
+    version++;
+    return instance;
+  }
+
+  public void remove(SceneInstance instance) {
+    if (instances.remove(instance)) {
+      version++;
+    }
+  }
+
+  public List<SceneInstance> getInstances() {
+    return Collections.unmodifiableList(instances);
+  }
+
+  /** Bumped when instances are added or removed, moving one bumps its own version instead. */
+  public int getVersion() {
+    return version;
+  }
+}
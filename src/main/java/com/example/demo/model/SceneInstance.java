@@ -0,0 +1,35 @@
+package com.example.demo.model;
+
+/**
+ * One placement of a shared mesh. Only the matrix belongs to the instance, the levels of detail
+ * are referenced, so a scene costs a few matrices per copy however large the mesh is.
+ */
+public class SceneInstance {
+
+  private final MeshLods lods;
+  private Matrix4x4 model;
+  private int version;
+
+  public SceneInstance(MeshLods lods, Matrix4x4 model) {
+    this.lods = lods;
+    this.model = model;
+  }
+
+  public MeshLods getLods() {
+    return lods;
+  }
+
+  /** Affine, applied in mesh space before the pose of the frame; normals expect no shear. */
+  public Matrix4x4 getModel() {
+    return model;
+  }
+
+  public void setModel(Matrix4x4 model) {
+    this.model = model;
+    version++;
+  }
+
+  public int getVersion() {
+    return version;
+  }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * Depth of the surfaces nearest to a directional light. The projection is orthographic and fitted
+ * to bounding spheres each time the map is rendered, so depths are world distances along the
+ * light and a texel covers the same area everywhere. Lookups take camera screen positions and
+ * filter 3x3 depth comparisons (percentage-closer filtering) into a soft edge.
+ */
+public class ShadowMap {
+
+  public static final float FAR = DepthBuffer.FAR;
+
+  // how far a receiver has to be behind the stored depth to count as shadowed, in texels
+  private static final double BIAS_TEXELS = 2;
+
+  private final int size;
+  private final float[] depth;
+  private float[] vertexes = new float[0];
+
+  private final Matrix4x4 light = new Matrix4x4();
+  private float bias;
+
+  // camera screen position to map texels, one projective matrix for the whole frame
+  private final Matrix4x4 screenToMap = new Matrix4x4();
+
+  // rebuilt in place each time the map is fitted, the view only when the light turns
+  private Vector3D viewLight;
+  private final Matrix4x4 view = new Matrix4x4();
+  private final Matrix4x4 modelToLight = new Matrix4x4();
+  private final Matrix4x4 scratch = new Matrix4x4();
+  private final Vector4D center = new Vector4D();
+
+  public ShadowMap(int size) {
+    this.size = size;
+    this.depth = new float[size * size];
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public float[] getDepth() {
+    return depth;
+  }
+
+  /** World space to texel x, y and the depth along the light, row-vector. */
+  public Matrix4x4 getLight() {
+    return light;
+  }
+
+  /** Model space of one mesh to the light, in a matrix the map keeps across frames. */
+  public Matrix4x4 toLight(Matrix4x4 model) {
+    return model.multiplyInto(light, modelToLight);
+  }
+
+  /** Scratch for the light-space vertexes of one mesh, four floats each, kept across frames. */
+  public float[] getVertexes(int count) {
+    if (vertexes.length < count * 4) {
+      vertexes = new float[count * 4];
+    }
+    return vertexes;
+  }
+
+  public void clear() {
+    Arrays.fill(depth, FAR);
+  }
+
+  /**
+   * Points the map along {@code lightDirection}, the direction towards the light, and fits it to
+   * the spheres {@code (x, y, z, radius)} packed in {@code spheres}.
+   */
+  public void fit(Vector3D lightDirection, double[] spheres, int count) {
+    if (!lightDirection.equals(viewLight)) {
+      var up =
+          Math.abs(lightDirection.normalize().getY()) > 0.99 ? Vector3D.PLUS_I : Vector3D.PLUS_J;
+      // looks from the origin the way the light travels, depth grows away from the light
+      view.setView(0, 0, 0, lightDirection.negate(), up);
+      viewLight = lightDirection;
+    }
+
+    var minX = Double.POSITIVE_INFINITY;
+    var minY = Double.POSITIVE_INFINITY;
+    var minDepth = Double.POSITIVE_INFINITY;
+    var maxX = Double.NEGATIVE_INFINITY;
+    var maxY = Double.NEGATIVE_INFINITY;
+    for (var i = 0; i < count; i++) {
+      Vector4D.transformInto(spheres[i * 4], spheres[i * 4 + 1], spheres[i * 4 + 2], view, center);
+      var radius = spheres[i * 4 + 3];
+      minX = Math.min(minX, center.getX() - radius);
+      maxX = Math.max(maxX, center.getX() + radius);
+      minY = Math.min(minY, center.getY() - radius);
+      maxY = Math.max(maxY, center.getY() + radius);
+      minDepth = Math.min(minDepth, -center.getZ() - radius);
+    }
+    if (count == 0 || !(maxX > minX) || !(maxY > minY)) {
+      minX = minY = minDepth = -1;
+      maxX = maxY = 1;
+    }
+
+    view.multiplyInto(scratch.setTranslation(-minX, -minY, 0), light)
+        .multiplyInto(scratch.setScale(size / (maxX - minX), size / (maxY - minY), -1), light)
+        .multiplyInto(scratch.setTranslation(0, 0, -minDepth), light);
+    bias = (float) (BIAS_TEXELS * Math.max(maxX - minX, maxY - minY) / size);
+  }
+
+  /**
+   * Where the camera looks from this frame, as the inverse of its view-projection-viewport.
+   * Call after {@link #fit} and whenever the camera moves.
+   */
+  public void setCamera(Matrix4x4 screenToWorld) {
+    screenToWorld.multiplyInto(light, screenToMap);
+  }
+
+  /**
+   * Share of the light reaching the camera screen position (x, y) at depth z, from 0 in full
+   * shadow to 1 fully lit. Anything outside the map is lit.
+   */
+  public float visibility(double x, double y, double z) {
+    var m = screenToMap;
+    var w = x * m.getM14() + y * m.getM24() + z * m.getM34() + m.getM44();
+    var mapX = (x * m.getM11() + y * m.getM21() + z * m.getM31() + m.getM41()) / w;
+    var mapY = (x * m.getM12() + y * m.getM22() + z * m.getM32() + m.getM42()) / w;
+    var mapDepth = (x * m.getM13() + y * m.getM23() + z * m.getM33() + m.getM43()) / w;
+    var receiver = (float) mapDepth - bias;
+
+    var centerX = (int) Math.floor(mapX);
+    var centerY = (int) Math.floor(mapY);
+    if (centerX < 0 || centerY < 0 || centerX >= size || centerY >= size) {
+      return 1;
+    }
+    // taps past the border repeat the edge texels
+    var lit = 0;
+    for (var dy = -1; dy <= 1; dy++) {
+      var row = Math.max(0, Math.min(size - 1, centerY + dy)) * size;
+      for (var dx = -1; dx <= 1; dx++) {
+        if (depth[row + Math.max(0, Math.min(size - 1, centerX + dx))] >= receiver) {
+          lit++;
+        }
+      }
+    }
+    return lit / 9f;
+  }
+}
@@ -0,0 +1,198 @@
+package com.example.demo.model;
+
+/**
+ * A power-of-two mip chain built once at load. Every level is stored in Z-order (Morton) so the
+ * four texels of a bilinear lookup, and the texels of neighbouring pixels, mostly share a cache
+ * line whatever the direction a triangle walks the texture in. Non-square levels are a row of
+ * square Morton blocks along the longer side.
+ */
+public class Texture {
+
+  public static final int MAX_SIZE = 1 << 15;
+
+  private final int levels;
+  private final int[] widths;
+  private final int[] heights;
+  private final int[] blockShifts;
+  private final int[] offsets;
+  private final int[] texels;
+
+  private Texture(int width, int height) {
+    var levels = 1;
+    while ((width >> (levels - 1)) > 1 || (height >> (levels - 1)) > 1) {
+      levels++;
+    }
+    this.levels = levels;
+    this.widths = new int[levels];
+    this.heights = new int[levels];
+    this.blockShifts = new int[levels];
+    this.offsets = new int[levels + 1];
+    for (var level = 0; level < levels; level++) {
+      widths[level] = Math.max(1, width >> level);
+      heights[level] = Math.max(1, height >> level);
+      blockShifts[level] = Integer.numberOfTrailingZeros(Math.min(widths[level], heights[level]));
+      offsets[level + 1] = offsets[level] + widths[level] * heights[level];
+    }
+    this.texels = new int[offsets[levels]];
+  }
+
+  /**
+   * Builds the chain from row-major ARGB pixels, the top row first as images are stored. Sizes
+   * that are no power of two are resampled up to the next one.
+   */
+  public static Texture of(int width, int height, int[] argb) {
+    if (width < 1 || height < 1 || width > MAX_SIZE || height > MAX_SIZE) {
+      throw new IllegalArgumentException("unsupported texture size " + width + "x" + height);
+    }
+    var texture = new Texture(ceilPowerOfTwo(width), ceilPowerOfTwo(height));
+    texture.fillBase(width, height, argb);
+    for (var level = 1; level < texture.levels; level++) {
+      texture.downsample(level);
+    }
+    return texture;
+  }
+
+  public int getLevels() {
+    return levels;
+  }
+
+  public int getWidth(int level) {
+    return widths[level];
+  }
+
+  public int getHeight(int level) {
+    return heights[level];
+  }
+
+  /**
+   * The level whose texels are about one pixel apart, from the screen-space derivatives of the
+   * texture coordinates. Uses the larger footprint axis and floors log2 through the float
+   * exponent, no log call per lookup.
+   */
+  public int selectLevel(double dudx, double dvdx, double dudy, double dvdy) {
+    var w = widths[0];
+    var h = heights[0];
+    var alongX = dudx * dudx * w * w + dvdx * dvdx * h * h;
+    var alongY = dudy * dudy * w * w + dvdy * dvdy * h * h;
+    var footprint = Math.max(alongX, alongY);
+    if (!(footprint > 1)) {
+      return 0;
+    }
+    // log2 of the squared footprint, halved
+    return Math.min(Math.getExponent(footprint) >> 1, levels - 1);
+  }
+
+  /** Bilinear lookup with wrapping, v grows upwards as in OBJ files. */
+  public int sample(int level, float u, float v) {
+    var w = widths[level];
+    var h = heights[level];
+    var x = u * w - 0.5f;
+    var y = (1 - v) * h - 0.5f;
+    var floorX = (int) Math.floor(x);
+    var floorY = (int) Math.floor(y);
+    var fx = (int) ((x - floorX) * 256);
+    var fy = (int) ((y - floorY) * 256);
+    var x0 = floorX & (w - 1);
+    var y0 = floorY & (h - 1);
+    var x1 = (x0 + 1) & (w - 1);
+    var y1 = (y0 + 1) & (h - 1);
+
+    var top = lerp(texel(level, x0, y0), texel(level, x1, y0), fx);
+    var bottom = lerp(texel(level, x0, y1), texel(level, x1, y1), fx);
+    return lerp(top, bottom, fy);
+  }
+
+  /** Multiplies a lit color by a texel, the alpha of the lit color is kept. */
+  public static int modulate(int argb, int texel) {
+    var red = ((argb >> 16) & 0xFF) * (((texel >> 16) & 0xFF) + 1) >> 8;
+    var green = ((argb >> 8) & 0xFF) * (((texel >> 8) & 0xFF) + 1) >> 8;
+    var blue = (argb & 0xFF) * ((texel & 0xFF) + 1) >> 8;
+    return (argb & 0xFF000000) | red << 16 | green << 8 | blue;
+  }
+
+  private int texel(int level, int x, int y) {
+    return texels[index(level, x, y)];
+  }
+
+  private int index(int level, int x, int y) {
+    var shift = blockShifts[level];
+    var mask = (1 << shift) - 1;
+    var block = (x >> shift) + (y >> shift);
+    return offsets[level] + (block << (shift * 2)) + (spread(x & mask) | spread(y & mask) << 1);
+  }
+
+  // inserts a zero bit above every bit of a 16-bit value
+  private static int spread(int value) {
+    value = (value | (value << 8)) & 0x00FF00FF;
+    value = (value | (value << 4)) & 0x0F0F0F0F;
+    value = (value | (value << 2)) & 0x33333333;
+    return (value | (value << 1)) & 0x55555555;
+  }
+
+  private void fillBase(int width, int height, int[] argb) {
+    var w = widths[0];
+    var h = heights[0];
+    if (w == width && h == height) {
+      for (var y = 0; y < h; y++) {
+        for (var x = 0; x < w; x++) {
+          texels[index(0, x, y)] = argb[y * width + x];
+        }
+      }
+      return;
+    }
+    // bilinear resample onto the power-of-two grid, texel centres on texel centres
+    var scaleX = (float) width / w;
+    var scaleY = (float) height / h;
+    for (var y = 0; y < h; y++) {
+      var sy = Math.max(0, (y + 0.5f) * scaleY - 0.5f);
+      var y0 = Math.min((int) sy, height - 1);
+      var y1 = Math.min(y0 + 1, height - 1);
+      var fy = (int) ((sy - (int) sy) * 256);
+      for (var x = 0; x < w; x++) {
+        var sx = Math.max(0, (x + 0.5f) * scaleX - 0.5f);
+        var x0 = Math.min((int) sx, width - 1);
+        var x1 = Math.min(x0 + 1, width - 1);
+        var fx = (int) ((sx - (int) sx) * 256);
+        var top = lerp(argb[y0 * width + x0], argb[y0 * width + x1], fx);
+        var bottom = lerp(argb[y1 * width + x0], argb[y1 * width + x1], fx);
+        texels[index(0, x, y)] = lerp(top, bottom, fy);
+      }
+    }
+  }
+
+  // 2x2 box filter of the previous level, or 2x1 once one side is down to a single texel
+  private void downsample(int level) {
+    var source = level - 1;
+    var sourceWidth = widths[source];
+    var sourceHeight = heights[source];
+    for (var y = 0; y < heights[level]; y++) {
+      var y0 = Math.min(y * 2, sourceHeight - 1);
+      var y1 = Math.min(y * 2 + 1, sourceHeight - 1);
+      for (var x = 0; x < widths[level]; x++) {
+        var x0 = Math.min(x * 2, sourceWidth - 1);
+        var x1 = Math.min(x * 2 + 1, sourceWidth - 1);
+        var top = lerp(texel(source, x0, y0), texel(source, x1, y0), 128);
+        var bottom = lerp(texel(source, x0, y1), texel(source, x1, y1), 128);
+        texels[index(level, x, y)] = lerp(top, bottom, 128);
+      }
+    }
+  }
+
+  // per channel a + (b - a) * weight / 256
+  private static int lerp(int a, int b, int weight) {
+    var alpha = lerpChannel(a >>> 24, b >>> 24, weight);
+    var red = lerpChannel((a >> 16) & 0xFF, (b >> 16) & 0xFF, weight);
+    var green = lerpChannel((a >> 8) & 0xFF, (b >> 8) & 0xFF, weight);
+    var blue = lerpChannel(a & 0xFF, b & 0xFF, weight);
+    return alpha << 24 | red << 16 | green << 8 | blue;
+  }
+
+  private static int lerpChannel(int a, int b, int weight) {
+    return a + ((b - a) * weight >> 8);
+  }
+
+  private static int ceilPowerOfTwo(int value) {
+    var power = Integer.highestOneBit(value);
+    return power == value ? value : power << 1;
+  }
+}
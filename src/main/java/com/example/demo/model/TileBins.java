@@ -0,0 +1,61 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+
+public class TileBins {
+
+  private final int tileSize;
+  private final int tilesX;
+  private final int tilesY;
+  private final int[][] bins;
+  private final int[] counts;
+
+  /** {@code tileSize} must be a multiple of {@link DepthBuffer#COARSE_SIZE}, see there. */
+  public TileBins(int pixelWidth, int pixelHeight, int tileSize) {
+    if (tileSize <= 0 || tileSize % DepthBuffer.COARSE_SIZE != 0) {
+      throw new IllegalArgumentException(
+          "tile size " + tileSize + " splits the " + DepthBuffer.COARSE_SIZE + " px Hi-Z cells");
+    }
+    this.tileSize = tileSize;
+    this.tilesX = (pixelWidth + tileSize - 1) / tileSize;
+    this.tilesY = (pixelHeight + tileSize - 1) / tileSize;
+    this.bins = new int[tilesX * tilesY][16];
+    this.counts = new int[tilesX * tilesY];
+  }
+
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  public int getTilesX() {
+    return tilesX;
+  }
+
+  public int getTilesY() {
+    return tilesY;
+  }
+
+  public int getTileCount() {
+    return bins.length;
+  }
+
+  public void clear() {
+    Arrays.fill(counts, 0);
+  }
+
+  public void add(int tile, int triangle) {
+    var bin = bins[tile];
+    if (counts[tile] == bin.length) {
+      bin = bins[tile] = Arrays.copyOf(bin, bin.length * 2);
+    }
+    bin[counts[tile]++] = triangle;
+  }
+
+  public int size(int tile) {
+    return counts[tile];
+  }
+
+  public int get(int tile, int index) {
+    return bins[tile][index];
+  }
+}
@@ -1,11 +0,0 @@
-package com.example.demo.model;
-
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-
-@Getter
-@AllArgsConstructor
-public class Triangle {
-
-    private TriangleIndexes[] indexes;
-}
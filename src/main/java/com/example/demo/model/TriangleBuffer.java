@@ -0,0 +1,202 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+
+public class TriangleBuffer {
+
+  private float[] clip = new float[0];
+  private int[] outcodes = new int[0];
+  private float[] vertexes = new float[0];
+  private float[] normals = new float[0];
+  private float[] uvs = new float[0];
+  private int[] colors = new int[0];
+  private int[] vertexIndexes = new int[48];
+  private int[] normalIndexes = new int[48];
+  private int[] triangleMaterials = new int[16];
+  private Material[] materials;
+  private int[] visibleMeshlets = new int[0];
+
+  private Matrix4x4 viewport;
+
+  private int vertexCount;
+  private int normalCount;
+  private int triangleCount;
+  private int visibleMeshletCount;
+  private boolean vertexColors;
+  private Object normalsSource;
+
+  public void reset(int meshVertexCount, int meshNormalCount) {
+    if (clip.length < meshVertexCount * 4) {
+      clip = new float[meshVertexCount * 4];
+      outcodes = new int[meshVertexCount];
+    }
+    if (vertexes.length < meshVertexCount * 4) {
+      vertexes = new float[meshVertexCount * 4];
+    }
+    if (normals.length < meshNormalCount * 3) {
+      normals = new float[meshNormalCount * 3];
+      uvs = new float[meshNormalCount * 2];
+    }
+    if (colors.length < meshNormalCount) {
+      colors = new int[meshNormalCount];
+    }
+    vertexCount = meshVertexCount;
+    normalCount = meshNormalCount;
+    triangleCount = 0;
+    visibleMeshletCount = 0;
+    vertexColors = false;
+    materials = null;
+  }
+
+  public void addVisibleMeshlet(int meshlet, int meshletCount) {
+    if (visibleMeshlets.length < meshletCount) {
+      visibleMeshlets = new int[meshletCount];
+    }
+    visibleMeshlets[visibleMeshletCount++] = meshlet;
+  }
+
+  public int addVertex(float x, float y, float z, float w) {
+    if ((vertexCount + 1) * 4 > vertexes.length) {
+      vertexes = Arrays.copyOf(vertexes, Math.max(vertexes.length * 2, 64));
+    }
+    var offset = vertexCount * 4;
+    vertexes[offset] = x;
+    vertexes[offset + 1] = y;
+    vertexes[offset + 2] = z;
+    vertexes[offset + 3] = w;
+    return vertexCount++;
+  }
+
+  public int addNormal(float x, float y, float z) {
+    if ((normalCount + 1) * 3 > normals.length) {
+      normals = Arrays.copyOf(normals, Math.max(normals.length * 2, 48));
+      uvs = Arrays.copyOf(uvs, normals.length / 3 * 2);
+    }
+    if (normalCount + 1 > colors.length) {
+      colors = Arrays.copyOf(colors, Math.max(colors.length * 2, 16));
+    }
+    var offset = normalCount * 3;
+    normals[offset] = x;
+    normals[offset + 1] = y;
+    normals[offset + 2] = z;
+    return normalCount++;
+  }
+
+  public void setUv(int normal, float u, float v) {
+    uvs[normal * 2] = u;
+    uvs[normal * 2 + 1] = v;
+  }
+
+  public void addTriangle(int v0, int v1, int v2, int n0, int n1, int n2) {
+    addTriangle(v0, v1, v2, n0, n1, n2, -1);
+  }
+
+  public void addTriangle(int v0, int v1, int v2, int n0, int n1, int n2, int material) {
+    var offset = triangleCount * 3;
+    if (offset + 3 > vertexIndexes.length) {
+      vertexIndexes = Arrays.copyOf(vertexIndexes, vertexIndexes.length * 2);
+      normalIndexes = Arrays.copyOf(normalIndexes, normalIndexes.length * 2);
+    }
+    if (triangleCount == triangleMaterials.length) {
+      triangleMaterials = Arrays.copyOf(triangleMaterials, triangleMaterials.length * 2);
+    }
+    triangleMaterials[triangleCount] = material;
+    vertexIndexes[offset] = v0;
+    vertexIndexes[offset + 1] = v1;
+    vertexIndexes[offset + 2] = v2;
+    normalIndexes[offset] = n0;
+    normalIndexes[offset + 1] = n1;
+    normalIndexes[offset + 2] = n2;
+    triangleCount++;
+  }
+
+  public Matrix4x4 getViewport() {
+    return viewport;
+  }
+
+  public void setViewport(Matrix4x4 viewport) {
+    this.viewport = viewport;
+  }
+
+  public float[] getClip() {
+    return clip;
+  }
+
+  public int[] getOutcodes() {
+    return outcodes;
+  }
+
+  public float[] getVertexes() {
+    return vertexes;
+  }
+
+  public float[] getNormals() {
+    return normals;
+  }
+
+  /** Texture coordinates per normal, welded meshes keep them side by side. */
+  public float[] getUvs() {
+    return uvs;
+  }
+
+  /** The materials the triangle material ids of this batch refer to, null when untextured. */
+  public void setMaterials(Material[] materials) {
+    this.materials = materials;
+  }
+
+  /** Diffuse map of a triangle, null when it has none or its image did not load. */
+  public Texture getTexture(int triangle) {
+    var material = triangleMaterials[triangle];
+    return materials != null && material >= 0 ? materials[material].texture() : null;
+  }
+
+  /** Lit colors per normal, only meaningful once {@link #hasVertexColors()} is set this frame. */
+  public int[] getColors() {
+    return colors;
+  }
+
+  public boolean hasVertexColors() {
+    return vertexColors;
+  }
+
+  public void setVertexColors(boolean vertexColors) {
+    this.vertexColors = vertexColors;
+  }
+
+  /** Whatever rotated the mesh normals now in the buffer, so a cache can tell they are still its own. */
+  public Object getNormalsSource() {
+    return normalsSource;
+  }
+
+  public void setNormalsSource(Object normalsSource) {
+    this.normalsSource = normalsSource;
+  }
+
+  public int[] getVertexIndexes() {
+    return vertexIndexes;
+  }
+
+  public int[] getNormalIndexes() {
+    return normalIndexes;
+  }
+
+  public int[] getVisibleMeshlets() {
+    return visibleMeshlets;
+  }
+
+  public int getVisibleMeshletCount() {
+    return visibleMeshletCount;
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  public int getNormalCount() {
+    return normalCount;
+  }
+
+  public int getTriangleCount() {
+    return triangleCount;
+  }
+}
@@ -1,12 +0,0 @@
-package com.example.demo.model;
-
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-
-@Getter
-@AllArgsConstructor
-public class TriangleIndexes {
-
-    private int vertex;
-    private int normal;
-}
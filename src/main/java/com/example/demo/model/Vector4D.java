@@ -2,9 +2,11 @@ package com.example.demo.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 
 @Getter
+@NoArgsConstructor
 @AllArgsConstructor
 public class Vector4D {
 
@@ -49,28 +51,53 @@ public class Vector4D {
         );
     }
 
-    public static Vector4D createFromValue(double value) {
-        return new Vector4D(value, value, value, value);
+    public Vector4D set(double x, double y, double z, double w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+
+    public Vector4D set(float[] source, int offset) {
+        return set(source[offset], source[offset + 1], source[offset + 2], source[offset + 3]);
+    }
+
+    public static Vector4D lerpInto(Vector4D from, Vector4D to, double amount, Vector4D dst) {
+        return dst.set(
+                (to.x - from.x) * amount + from.x,
+                (to.y - from.y) * amount + from.y,
+                (to.z - from.z) * amount + from.z,
+                (to.w - from.w) * amount + from.w
+        );
     }
 
     public static Vector4D transform(Vector3D position, Matrix4x4 matrix4x4) {
-        var x = (position.getX() * matrix4x4.getM11())
-                + (position.getY() * matrix4x4.getM21())
-                + (position.getZ() * matrix4x4.getM31())
+        return transform(position.getX(), position.getY(), position.getZ(), matrix4x4);
+    }
+
+    public static Vector4D transform(double px, double py, double pz, Matrix4x4 matrix4x4) {
+        return transformInto(px, py, pz, matrix4x4, new Vector4D());
+    }
+
+    public static Vector4D transformInto(double px, double py, double pz, Matrix4x4 matrix4x4, Vector4D dst) {
+        var x = (px * matrix4x4.getM11())
+                + (py * matrix4x4.getM21())
+                + (pz * matrix4x4.getM31())
                 + matrix4x4.getM41();
-        var y = (position.getX() * matrix4x4.getM12())
-                + (position.getY() * matrix4x4.getM22())
-                + (position.getZ() * matrix4x4.getM32())
+        var y = (px * matrix4x4.getM12())
+                + (py * matrix4x4.getM22())
+                + (pz * matrix4x4.getM32())
                 + matrix4x4.getM42();
-        var z = (position.getX() * matrix4x4.getM13())
-                + (position.getY() * matrix4x4.getM23())
-                + (position.getZ() * matrix4x4.getM33())
+        var z = (px * matrix4x4.getM13())
+                + (py * matrix4x4.getM23())
+                + (pz * matrix4x4.getM33())
                 + matrix4x4.getM43();
-        var w = (position.getX() * matrix4x4.getM14())
-                + (position.getY() * matrix4x4.getM24())
-                + (position.getZ() * matrix4x4.getM34())
+        var w = (px * matrix4x4.getM14())
+                + (py * matrix4x4.getM24())
+                + (pz * matrix4x4.getM34())
                 + matrix4x4.getM44();
-        return new Vector4D(x, y, z, w);
+        return dst.set(x, y, z, w);
     }
 
     public static Vector4D transform(Vector4D position, Matrix4x4 matrix4x4) {
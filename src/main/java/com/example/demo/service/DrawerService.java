@@ -3,40 +3,143 @@ package com.example.demo.service;
 import static java.lang.Math.*;
 
 import com.example.demo.model.Bgra32Bitmap;
-import com.example.demo.model.Color;
-import com.example.demo.model.Triangle;
+import com.example.demo.model.DepthBuffer;
+import com.example.demo.model.GBuffer;
+import com.example.demo.model.MultisampleBuffer;
+import com.example.demo.model.ShadowMap;
+import com.example.demo.model.Texture;
+import com.example.demo.model.TileBins;
+import com.example.demo.model.TriangleBuffer;
 import com.example.demo.model.Vector4D;
-import java.util.Arrays;
-import java.util.List;
+import com.example.demo.service.FrameProfiler.Counter;
+import com.example.demo.service.FrameProfiler.Stage;
+import java.util.stream.IntStream;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 
 public class DrawerService {
 
-  private static boolean isInvisibleFace(List<Vector4D> vertexes) {
-    var a = vertexes.get(0);
-    var b = vertexes.get(1);
-    var c = vertexes.get(2);
+  // one coarse Hi-Z cell per tile, so parallel tiles never write the same depth bounds
+  public static final int TILE_SIZE = DepthBuffer.COARSE_SIZE;
 
-    var ab = b.subtract(a);
-    var ac = c.subtract(a);
+  // 28.4 fixed point for the edge-function raster: vertexes snap to 1/16 pixel
+  private static final int SUBPIXEL_BITS = 4;
+  private static final int HALF_PIXEL = 1 << (SUBPIXEL_BITS - 1);
 
-    var perpDotProduct = ab.getX() * ac.getY() - ab.getY() * ac.getX();
+  private static final WorkerLocal<RasterScratch> SCRATCH = new WorkerLocal<>(RasterScratch::new);
+
+  private static final class RasterScratch {
+    private final Vector4D p0 = new Vector4D();
+    private final Vector4D p1 = new Vector4D();
+    private final Vector4D p2 = new Vector4D();
+    private final Vector4D a = new Vector4D();
+    private final Vector4D b = new Vector4D();
+    private final TriangleSetup setup = new TriangleSetup();
+    private final FrameProfiler.Counters counters = FrameProfiler.counters();
+
+    private boolean blockMasks;
+    private int firstBlockX;
+    private int firstBlockY;
+    private int blockColumns;
+    private long occludedBlocks;
+    private long acceptedBlocks;
+
+    // pixels that passed the depth test, x in a scanline or the offset in a block when deferred
+    private int[] spanPixels = new int[0];
+    private float[] spanNx = new float[0];
+    private float[] spanNy = new float[0];
+    private float[] spanNz = new float[0];
+    private float[] spanDepth = new float[0];
+    private int[] spanColors = new int[0];
+    private int[] spanTexels = new int[0];
+    // covered samples of each span pixel when multisampled
+    private int[] spanMasks = new int[0];
+
+    // edge and depth offsets of the sample points from the pixel centre, per triangle
+    private final double[] sampleEdge0 = new double[8];
+    private final double[] sampleEdge1 = new double[8];
+    private final double[] sampleEdge2 = new double[8];
+    private final double[] sampleDepth = new double[8];
+
+    private boolean isBlockOccluded(int blockX, int blockY) {
+      return blockMasks
+          && (occludedBlocks & blockBit(blockX, blockY)) != 0;
+    }
+
+    private boolean isBlockAccepted(int blockX, int blockY) {
+      return blockMasks
+          && (acceptedBlocks & blockBit(blockX, blockY)) != 0;
+    }
+
+    private long blockBit(int blockX, int blockY) {
+      return 1L << ((blockY - firstBlockY) * blockColumns + blockX - firstBlockX);
+    }
+
+    private void ensureSpan(int width) {
+      if (spanPixels.length < width) {
+        spanPixels = new int[width];
+        spanNx = new float[width];
+        spanNy = new float[width];
+        spanNz = new float[width];
+        spanDepth = new float[width];
+        spanColors = new int[width];
+        spanTexels = new int[width];
+        spanMasks = new int[width];
+      }
+    }
+  }
+
+  private static boolean isInvisibleFace(float[] vertexes, int a, int b, int c) {
+    var abX = vertexes[b * 4] - vertexes[a * 4];
+    var abY = vertexes[b * 4 + 1] - vertexes[a * 4 + 1];
+    var acX = vertexes[c * 4] - vertexes[a * 4];
+    var acY = vertexes[c * 4 + 1] - vertexes[a * 4 + 1];
+
+    var perpDotProduct = abX * acY - abY * acX;
     return perpDotProduct > 0;
   }
 
   private static void drawTriangle(
-      List<Vector4D> vertexes,
-      List<Vector3D> normals,
+      TriangleBuffer triangles,
+      int triangle,
       Bgra32Bitmap bitmap,
-      double[][] zBuffer,
-      Vector3D lightDirection,
-      Vector3D viewDirection) {
-    if (isInvisibleFace(vertexes)) {
+      DepthBuffer depthBuffer,
+      GBuffer gBuffer,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting,
+      int minX,
+      int minY,
+      int maxX,
+      int maxY,
+      RasterScratch scratch) {
+    var vertexes = triangles.getVertexes();
+    var vertexIndexes = triangles.getVertexIndexes();
+    var i0 = vertexIndexes[triangle * 3];
+    var i1 = vertexIndexes[triangle * 3 + 1];
+    var i2 = vertexIndexes[triangle * 3 + 2];
+    if (isInvisibleFace(vertexes, i0, i1, i2)) {
+      if (FrameProfiler.ENABLED) {
+        scratch.counters.add(Counter.TRIANGLES_BACKFACE_CULLED);
+      }
       return;
     }
-    var up = vertexes.get(2);
-    var mid = vertexes.get(1);
-    var down = vertexes.get(0);
+    var setupStart = FrameProfiler.start();
+    var normalIndexes = triangles.getNormalIndexes();
+    var setup = scratch.setup;
+    var n0 = normalIndexes[triangle * 3];
+    var n1 = normalIndexes[triangle * 3 + 1];
+    var n2 = normalIndexes[triangle * 3 + 2];
+    var ready =
+        triangles.hasVertexColors()
+            ? setup.setup(vertexes, i0, i1, i2, triangles.getColors(), n0, n1, n2)
+            : setup.setup(vertexes, i0, i1, i2, triangles.getNormals(), n0, n1, n2);
+    if (!ready) {
+      return;
+    }
+    setup.setTexture(triangles.getTexture(triangle), triangles.getUvs(), n0, n1, n2);
+
+    var up = scratch.p2.set(vertexes, i2 * 4);
+    var mid = scratch.p1.set(vertexes, i1 * 4);
+    var down = scratch.p0.set(vertexes, i0 * 4);
 
     Vector4D fictive;
     if (down.getY() > mid.getY()) {
@@ -54,30 +157,38 @@ public class DrawerService {
       up = mid;
       mid = fictive;
     }
-    if (down.getY() < 0) {
-      return;
-    }
 
     var upY = (int) up.getY();
     var midY = (int) mid.getY();
     var downY = (int) down.getY();
 
+    var visible = prepareDepth(depthBuffer, scratch, downY, upY, minX, minY, maxX, maxY);
+    if (FrameProfiler.ENABLED) {
+      scratch.counters.stop(Stage.SETUP, setupStart);
+      if (visible) {
+        scratch.counters.add(Counter.TRIANGLES_RASTERIZED);
+      }
+    }
+    if (!visible) {
+      return;
+    }
+
     var firstSegmentHeight = midY - downY;
     var secondSegmentHeight = upY - midY;
 
     var totalHeight = upY - downY;
-    for (var i = 0; i < totalHeight; i++) {
+    for (var i = max(0, minY - downY); i < totalHeight; i++) {
       var y = i + downY;
-      if (y >= bitmap.getPixelHeight()) {
+      if (y >= maxY) {
         break;
       }
       var secondHalf = i > firstSegmentHeight || midY == downY;
       var segmentHeight = secondHalf ? secondSegmentHeight : firstSegmentHeight;
 
       var alpha = i / (double) totalHeight;
-      var a = up.subtract(down).multiply(Vector4D.createFromValue(alpha)).add(down);
+      var a = Vector4D.lerpInto(down, up, alpha, scratch.a);
       var beta = (i - (secondHalf ? firstSegmentHeight : 0)) / (double) segmentHeight;
-      var b = resolveB(secondHalf, up, mid, down, beta);
+      var b = resolveB(secondHalf, up, mid, down, beta, scratch.b);
 
       if (a.getX() > b.getX()) {
         fictive = a;
@@ -85,138 +196,1041 @@ public class DrawerService {
         b = fictive;
       }
 
-      drawLine(zBuffer, bitmap, b, a, vertexes, normals, lightDirection, viewDirection, y);
+      var fromX = max((int) a.getX(), minX);
+      var toX = min((int) b.getX(), maxX - 1);
+      drawLine(depthBuffer, gBuffer, shadows, bitmap, scratch, lighting, y, fromX, toX, 0);
     }
   }
 
-  private static void drawLine(
-      double[][] zBuffer,
+  /**
+   * Edge-function variant of {@link #drawTriangle}. The corners snap to 28.4 fixed point, so the
+   * edge functions are exact integers and coverage is decided without any rounding: a pixel
+   * belongs to a triangle when its centre is inside, and a centre exactly on an edge only to the
+   * triangle for which that edge is a top or left one. Triangles sharing an edge therefore cover
+   * each pixel along it exactly once, with no cracks and nothing tested or shaded twice.
+   */
+  private static void drawTriangleFixedPoint(
+      TriangleBuffer triangles,
+      int triangle,
       Bgra32Bitmap bitmap,
-      Vector4D b,
-      Vector4D a,
-      List<Vector4D> vertexes,
-      List<Vector3D> normals,
-      Vector3D lightDirection,
-      Vector3D viewDirection,
-      int y) {
-    var deltaX = b.getX() - a.getX() + 1;
+      DepthBuffer depthBuffer,
+      GBuffer gBuffer,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting,
+      int minX,
+      int minY,
+      int maxX,
+      int maxY,
+      RasterScratch scratch) {
+    var vertexes = triangles.getVertexes();
+    var vertexIndexes = triangles.getVertexIndexes();
+    var i0 = vertexIndexes[triangle * 3];
+    var i1 = vertexIndexes[triangle * 3 + 1];
+    var i2 = vertexIndexes[triangle * 3 + 2];
+    if (isInvisibleFace(vertexes, i0, i1, i2)) {
+      if (FrameProfiler.ENABLED) {
+        scratch.counters.add(Counter.TRIANGLES_BACKFACE_CULLED);
+      }
+      return;
+    }
+    var setupStart = FrameProfiler.start();
+    var x0 = toFixed(vertexes[i0 * 4]);
+    var y0 = toFixed(vertexes[i0 * 4 + 1]);
+    var x1 = toFixed(vertexes[i1 * 4]);
+    var y1 = toFixed(vertexes[i1 * 4 + 1]);
+    var x2 = toFixed(vertexes[i2 * 4]);
+    var y2 = toFixed(vertexes[i2 * 4 + 1]);
+    var area = (long) (x1 - x0) * (y2 - y0) - (long) (x2 - x0) * (y1 - y0);
+    // pixel x is covered when its centre, x * 16 + 8 in fixed point, is
+    var fromX = max(minX, (min(x0, min(x1, x2)) + HALF_PIXEL - 1) >> SUBPIXEL_BITS);
+    var toX = min(maxX - 1, (max(x0, max(x1, x2)) - HALF_PIXEL) >> SUBPIXEL_BITS);
+    var fromY = max(minY, (min(y0, min(y1, y2)) + HALF_PIXEL - 1) >> SUBPIXEL_BITS);
+    var toY = min(maxY - 1, (max(y0, max(y1, y2)) - HALF_PIXEL) >> SUBPIXEL_BITS);
+    if (area == 0 || fromX > toX || fromY > toY) {
+      if (FrameProfiler.ENABLED) {
+        scratch.counters.stop(Stage.SETUP, setupStart);
+      }
+      return;
+    }
+    // one winding from here on, swapping two corners flips the sign of every edge
+    if (area < 0) {
+      var swap = x1;
+      x1 = x2;
+      x2 = swap;
+      swap = y1;
+      y1 = y2;
+      y2 = swap;
+    }
 
-    for (var x = (int) a.getX(); x <= (int) b.getX(); x++) {
-      if (x >= bitmap.getPixelWidth()) {
-        break;
+    var normalIndexes = triangles.getNormalIndexes();
+    var setup = scratch.setup;
+    var n0 = normalIndexes[triangle * 3];
+    var n1 = normalIndexes[triangle * 3 + 1];
+    var n2 = normalIndexes[triangle * 3 + 2];
+    var ready =
+        triangles.hasVertexColors()
+            ? setup.setup(vertexes, i0, i1, i2, triangles.getColors(), n0, n1, n2)
+            : setup.setup(vertexes, i0, i1, i2, triangles.getNormals(), n0, n1, n2);
+    if (!ready) {
+      return;
+    }
+    setup.setTexture(triangles.getTexture(triangle), triangles.getUvs(), n0, n1, n2);
+
+    scratch.p0.set(vertexes, i0 * 4);
+    scratch.p1.set(vertexes, i1 * 4);
+    scratch.p2.set(vertexes, i2 * 4);
+    var visible = prepareDepth(depthBuffer, scratch, fromY, toY + 1, minX, minY, maxX, maxY);
+    if (FrameProfiler.ENABLED) {
+      scratch.counters.stop(Stage.SETUP, setupStart);
+      if (visible) {
+        scratch.counters.add(Counter.TRIANGLES_RASTERIZED);
       }
-      var p = (x - a.getX()) / deltaX;
+    }
+    if (!visible) {
+      return;
+    }
+
+    // edge functions at the centre of pixel (fromX, fromY) and their steps by one pixel
+    var centerX = (fromX << SUBPIXEL_BITS) + HALF_PIXEL;
+    var centerY = (fromY << SUBPIXEL_BITS) + HALF_PIXEL;
+    var row0 = edgeFunction(x1, y1, x2, y2, centerX, centerY);
+    var row1 = edgeFunction(x2, y2, x0, y0, centerX, centerY);
+    var row2 = edgeFunction(x0, y0, x1, y1, centerX, centerY);
+    var stepX0 = (long) (y1 - y2) << SUBPIXEL_BITS;
+    var stepX1 = (long) (y2 - y0) << SUBPIXEL_BITS;
+    var stepX2 = (long) (y0 - y1) << SUBPIXEL_BITS;
+    var stepY0 = (long) (x2 - x1) << SUBPIXEL_BITS;
+    var stepY1 = (long) (x0 - x2) << SUBPIXEL_BITS;
+    var stepY2 = (long) (x1 - x0) << SUBPIXEL_BITS;
+
+    for (var y = fromY; y <= toY; y++) {
+      var e0 = row0;
+      var e1 = row1;
+      var e2 = row2;
+      // a triangle is convex, the covered pixels of a row are one run
+      var x = fromX;
+      while (x <= toX && (e0 | e1 | e2) < 0) {
+        x++;
+        e0 += stepX0;
+        e1 += stepX1;
+        e2 += stepX2;
+      }
+      var runX = x;
+      while (x <= toX && (e0 | e1 | e2) >= 0) {
+        x++;
+        e0 += stepX0;
+        e1 += stepX1;
+        e2 += stepX2;
+      }
+      if (x > runX) {
+        drawLine(depthBuffer, gBuffer, shadows, bitmap, scratch, lighting, y, runX, x - 1, 0.5);
+      }
+      row0 += stepY0;
+      row1 += stepY1;
+      row2 += stepY2;
+    }
+  }
 
-      var z = a.getZ() + p * (b.getZ() - a.getZ());
-      try {
-        if (zBuffer[x][y] > z) {
-          zBuffer[x][y] = z;
-          Color color =
-              getPointColor(
-                  new Vector3D(x, y, z), vertexes, normals, lightDirection, viewDirection);
-          bitmap.setPixel(x, y, color);
+  private static int toFixed(float coordinate) {
+    return round(coordinate * (1 << SUBPIXEL_BITS));
+  }
+
+  /**
+   * Edge function of the edge (fromX, fromY) to (toX, toY) at (x, y), all 28.4, positive inside a
+   * triangle wound like the raster expects. The edges that are neither top nor left lose one, so a
+   * centre exactly on one of them tests as outside.
+   */
+  private static long edgeFunction(int fromX, int fromY, int toX, int toY, int x, int y) {
+    long a = fromY - toY;
+    long b = toX - fromX;
+    // y grows downwards: a left edge has the inside to its right, a top edge has it below
+    var topLeft = a > 0 || (a == 0 && b > 0);
+    return a * (x - fromX) + b * (y - fromY) - (topLeft ? 0 : 1);
+  }
+
+  /**
+   * Least value of an edge function that still covers a sample, for the edge whose inside lies
+   * along (a, b). Top and left edges keep 0, the others need a value above 0.
+   */
+  private static double sampleBias(double a, double b) {
+    return a > 0 || (a == 0 && b > 0) ? 0 : Double.MIN_VALUE;
+  }
+
+  private static boolean prepareDepth(
+      DepthBuffer depthBuffer,
+      RasterScratch scratch,
+      int downY,
+      int upY,
+      int minX,
+      int minY,
+      int maxX,
+      int maxY) {
+    var p0 = scratch.p0;
+    var p1 = scratch.p1;
+    var p2 = scratch.p2;
+    var fromX = max(minX, (int) min(p0.getX(), min(p1.getX(), p2.getX())));
+    var toX = min(maxX - 1, (int) max(p0.getX(), max(p1.getX(), p2.getX())));
+    var fromY = max(minY, downY);
+    var toY = min(maxY - 1, upY - 1);
+    if (fromX > toX || fromY > toY) {
+      return false;
+    }
+
+    var nearest = (float) min(p0.getZ(), min(p1.getZ(), p2.getZ()));
+    var farthest = (float) max(p0.getZ(), max(p1.getZ(), p2.getZ()));
+    if (depthBuffer.isOccluded(fromX, fromY, toX, toY, nearest)) {
+      return false;
+    }
+
+    var firstBlockX = fromX >> DepthBuffer.BLOCK_SHIFT;
+    var firstBlockY = fromY >> DepthBuffer.BLOCK_SHIFT;
+    var lastBlockX = toX >> DepthBuffer.BLOCK_SHIFT;
+    var lastBlockY = toY >> DepthBuffer.BLOCK_SHIFT;
+    scratch.firstBlockX = firstBlockX;
+    scratch.firstBlockY = firstBlockY;
+    scratch.blockColumns = lastBlockX - firstBlockX + 1;
+    scratch.blockMasks = scratch.blockColumns * (lastBlockY - firstBlockY + 1) <= Long.SIZE;
+    scratch.occludedBlocks = 0;
+    scratch.acceptedBlocks = 0;
+
+    var visible = false;
+    for (var blockY = firstBlockY; blockY <= lastBlockY; blockY++) {
+      for (var blockX = firstBlockX; blockX <= lastBlockX; blockX++) {
+        if (scratch.blockMasks) {
+          var bit = scratch.blockBit(blockX, blockY);
+          if (depthBuffer.getBlockMax(blockX, blockY) <= nearest) {
+            scratch.occludedBlocks |= bit;
+            continue;
+          }
+          if (depthBuffer.getBlockMin(blockX, blockY) > farthest) {
+            scratch.acceptedBlocks |= bit;
+          }
         }
-      } catch (Throwable e) {
+        depthBuffer.prepareBlock(blockX, blockY);
+        visible = true;
+      }
+    }
+    return visible;
+  }
+
+  /**
+   * Depth tests and shades pixels {@code fromX} to {@code toX} of row {@code y}, clipped by the
+   * caller. Attributes are taken at {@code (x + center, y + center)}.
+   */
+  private static void drawLine(
+      DepthBuffer depthBuffer,
+      GBuffer gBuffer,
+      ShadowMap shadows,
+      Bgra32Bitmap bitmap,
+      RasterScratch scratch,
+      SpanShader.Lighting lighting,
+      int y,
+      int fromX,
+      int endX,
+      double center) {
+    var setup = scratch.setup;
+    var shadeStart = FrameProfiler.start();
+    var blockY = y >> DepthBuffer.BLOCK_SHIFT;
+    scratch.ensureSpan(endX - fromX + 1);
+    var span = 0;
 
+    var x = fromX;
+    while (x <= endX) {
+      var blockX = x >> DepthBuffer.BLOCK_SHIFT;
+      var blockEndX = min(endX, ((blockX + 1) << DepthBuffer.BLOCK_SHIFT) - 1);
+      if (scratch.isBlockOccluded(blockX, blockY)) {
+        x = blockEndX + 1;
+        continue;
+      }
+      var accepted = scratch.isBlockAccepted(blockX, blockY);
+
+      setup.moveTo(x + center, y + center);
+      for (; x <= blockEndX; x++, setup.stepX()) {
+        var z = (float) setup.getZ();
+        var written = false;
+        if (FrameProfiler.ENABLED) {
+          scratch.counters.add(Counter.PIXELS_TESTED);
+          written = depthBuffer.get(x, y) != DepthBuffer.FAR;
+        }
+        if (accepted) {
+          depthBuffer.set(x, y, z);
+        } else if (!depthBuffer.testAndSet(x, y, z)) {
+          continue;
+        }
+        if (FrameProfiler.ENABLED && written) {
+          scratch.counters.add(Counter.PIXELS_OVERDRAWN);
+        }
+        if (setup.hasColors()) {
+          if (FrameProfiler.ENABLED) {
+            scratch.counters.add(Counter.PIXELS_SHADED);
+          }
+          var argb = shadow(setup.getArgb(), shadows, x + center, y + center, z, lighting);
+          bitmap.setPixel(x, y, texture(argb, setup));
+          continue;
+        }
+        if (gBuffer != null) {
+          gBuffer.setNormal(
+              x, y, (float) setup.getNx(), (float) setup.getNy(), (float) setup.getNz());
+          gBuffer.setAlbedo(x, y, setup.getTexel());
+          continue;
+        }
+        scratch.spanPixels[span] = x;
+        scratch.spanDepth[span] = z;
+        if (setup.hasTexture()) {
+          scratch.spanTexels[span] = setup.getTexel();
+        }
+        scratch.spanNx[span] = (float) setup.getNx();
+        scratch.spanNy[span] = (float) setup.getNy();
+        scratch.spanNz[span] = (float) setup.getNz();
+        span++;
       }
-      ;
+    }
+    if (span > 0) {
+      SpanShader.get()
+          .shade(lighting, scratch.spanNx, scratch.spanNy, scratch.spanNz, span, scratch.spanColors);
+      if (shadows != null) {
+        for (var i = 0; i < span; i++) {
+          scratch.spanColors[i] =
+              shadow(
+                  scratch.spanColors[i],
+                  shadows,
+                  scratch.spanPixels[i] + center,
+                  y + center,
+                  scratch.spanDepth[i],
+                  lighting);
+        }
+      }
+      if (setup.hasTexture()) {
+        modulate(scratch.spanColors, scratch.spanTexels, span);
+      }
+      for (var i = 0; i < span; i++) {
+        bitmap.setPixel(scratch.spanPixels[i], y, scratch.spanColors[i]);
+      }
+      if (FrameProfiler.ENABLED) {
+        scratch.counters.add(Counter.PIXELS_SHADED, span);
+      }
+    }
+    // a deferred frame shades in its own pass, this loop only tested depth and stored normals
+    if (FrameProfiler.ENABLED && (gBuffer == null || setup.hasColors())) {
+      scratch.counters.stop(Stage.SHADE, shadeStart);
     }
   }
 
-  private static final Vector3D AMB = new Vector3D(60, 10, 10);
-  private static final Vector3D DIF = new Vector3D(250, 100, 30);
-  private static final Vector3D SPEC =
-      new Vector3D(255.0 / 50000.0, 255.0 / 50000.0, 255.0 / 50000.0);
+  /**
+   * Keeps the ambient part of a lit color and scales what the light adds on top by the share of
+   * it that reaches (x, y, z), no-op without a shadow map.
+   */
+  private static int shadow(
+      int argb, ShadowMap shadows, double x, double y, double z, SpanShader.Lighting lighting) {
+    if (shadows == null) {
+      return argb;
+    }
+    var visibility = shadows.visibility(x, y, z);
+    if (visibility >= 1) {
+      return argb;
+    }
+    var red = shadowChannel((argb >> 16) & 0xFF, lighting.ambientRed(), visibility);
+    var green = shadowChannel((argb >> 8) & 0xFF, lighting.ambientGreen(), visibility);
+    var blue = shadowChannel(argb & 0xFF, lighting.ambientBlue(), visibility);
+    return (argb & 0xFF000000) | red << 16 | green << 8 | blue;
+  }
 
-  private static Color getPointColor(
-      Vector3D point,
-      List<Vector4D> vertexes,
-      List<Vector3D> normals,
-      Vector3D lightDirection,
-      Vector3D viewDirection) {
+  private static int shadowChannel(int lit, float ambient, float visibility) {
+    var base = min(lit, ambient);
+    return (int) (base + (lit - base) * visibility);
+  }
 
-    final float AmbientWeight = 0.5f;
-    final float DiffuseWeight = 10f;
-    final float SpecularWeight = 4f;
+  private static int texture(int argb, TriangleSetup setup) {
+    return setup.hasTexture() ? Texture.modulate(argb, setup.getTexel()) : argb;
+  }
+
+  private static void modulate(int[] colors, int[] texels, int count) {
+    for (var i = 0; i < count; i++) {
+      colors[i] = Texture.modulate(colors[i], texels[i]);
+    }
+  }
+
+  private static void shadeDeferred(
+      GBuffer gBuffer,
+      DepthBuffer depthBuffer,
+      ShadowMap shadows,
+      Bgra32Bitmap bitmap,
+      SpanShader.Lighting lighting) {
+    var width = bitmap.getPixelWidth();
+    var height = bitmap.getPixelHeight();
+    var blocksX = (width + DepthBuffer.BLOCK_SIZE - 1) >> DepthBuffer.BLOCK_SHIFT;
+    var blocksY = (height + DepthBuffer.BLOCK_SIZE - 1) >> DepthBuffer.BLOCK_SHIFT;
 
-    var a = new Vector3D(vertexes.get(0).getX(), vertexes.get(0).getY(), vertexes.get(0).getZ());
-    var b = new Vector3D(vertexes.get(1).getX(), vertexes.get(1).getY(), vertexes.get(1).getZ());
-    var c = new Vector3D(vertexes.get(2).getX(), vertexes.get(2).getY(), vertexes.get(2).getZ());
+    IntStream.range(0, blocksY)
+        .parallel()
+        .forEach(
+            blockY -> {
+              var scratch = SCRATCH.get();
+              var shadeStart = FrameProfiler.start();
+              var shaded = 0;
+              var center = gBuffer.getCenter();
+              scratch.ensureSpan(DepthBuffer.BLOCK_SIZE * DepthBuffer.BLOCK_SIZE);
+              var minY = blockY << DepthBuffer.BLOCK_SHIFT;
+              var maxY = min(minY + DepthBuffer.BLOCK_SIZE, height);
+              for (var blockX = 0; blockX < blocksX; blockX++) {
+                // blocks that no triangle reached were not even cleared this frame
+                if (depthBuffer.getBlockMin(blockX, blockY) == DepthBuffer.FAR) {
+                  continue;
+                }
+                var minX = blockX << DepthBuffer.BLOCK_SHIFT;
+                var maxX = min(minX + DepthBuffer.BLOCK_SIZE, width);
+                // gather the covered pixels of the block, then shade them as one span
+                var span = 0;
+                for (var y = minY; y < maxY; y++) {
+                  for (var x = minX; x < maxX; x++) {
+                    if (depthBuffer.get(x, y) == DepthBuffer.FAR) {
+                      continue;
+                    }
+                    scratch.spanPixels[span] = (y - minY) << DepthBuffer.BLOCK_SHIFT | (x - minX);
+                    scratch.spanNx[span] = gBuffer.getNormalX(x, y);
+                    scratch.spanNy[span] = gBuffer.getNormalY(x, y);
+                    scratch.spanNz[span] = gBuffer.getNormalZ(x, y);
+                    span++;
+                  }
+                }
+                SpanShader.get()
+                    .shade(
+                        lighting,
+                        scratch.spanNx,
+                        scratch.spanNy,
+                        scratch.spanNz,
+                        span,
+                        scratch.spanColors);
+                for (var i = 0; i < span; i++) {
+                  var offset = scratch.spanPixels[i];
+                  var x = minX + (offset & (DepthBuffer.BLOCK_SIZE - 1));
+                  var y = minY + (offset >> DepthBuffer.BLOCK_SHIFT);
+                  var albedo = gBuffer.getAlbedo(x, y);
+                  var argb =
+                      shadow(
+                          scratch.spanColors[i],
+                          shadows,
+                          x + center,
+                          y + center,
+                          depthBuffer.get(x, y),
+                          lighting);
+                  if (albedo != 0xFFFFFFFF) {
+                    argb = Texture.modulate(argb, albedo);
+                  }
+                  bitmap.setPixel(x, y, argb);
+                }
+                shaded += span;
+              }
+              if (FrameProfiler.ENABLED) {
+                scratch.counters.add(Counter.PIXELS_SHADED, shaded);
+                scratch.counters.stop(Stage.SHADE, shadeStart);
+              }
+            });
+  }
+
+  static final Vector3D AMB = new Vector3D(60, 10, 10);
+  static final Vector3D DIF = new Vector3D(250, 100, 30);
+  static final Vector3D SPEC =
+      new Vector3D(255.0 / 50000.0, 255.0 / 50000.0, 255.0 / 50000.0);
+  static final float AMBIENT_WEIGHT = 0.5f;
+  static final float DIFFUSE_WEIGHT = 10f;
+  // SpanShader squares twice instead of calling pow, keep the two in step
+  static final float SPECULAR_WEIGHT = 4f;
 
-    var area = Vector3D.crossProduct(b.subtract(a), c.subtract(a)).getNorm();
+  public static int getPointColor(
+      double nx, double ny, double nz, Vector3D lightDirection, Vector3D viewDirection) {
 
-    var u = Vector3D.crossProduct(c.subtract(b), point.subtract(b)).getNorm() / area;
-    var v = Vector3D.crossProduct(a.subtract(c), point.subtract(c)).getNorm() / area;
-    var w = Vector3D.crossProduct(b.subtract(a), point.subtract(a)).getNorm() / area;
+    var normalLength = sqrt(nx * nx + ny * ny + nz * nz);
+    nx /= normalLength;
+    ny /= normalLength;
+    nz /= normalLength;
 
-    var interpolatedNormal =
-        normals
-            .get(0)
-            .scalarMultiply(u)
-            .add(normals.get(1).scalarMultiply(v))
-            .add(normals.get(2).scalarMultiply(w))
-            .normalize();
+    var lx = lightDirection.getX();
+    var ly = lightDirection.getY();
+    var lz = lightDirection.getZ();
     var lightLength = lightDirection.getNorm();
 
-    var diffuse =
-        max(
-            0,
-            Vector3D.dotProduct(interpolatedNormal, lightDirection) / (lightLength * lightLength));
+    var lightDotNormal = lx * nx + ly * ny + lz * nz;
+    var diffuse = max(0, lightDotNormal / (lightLength * lightLength));
     var specular =
         max(
             0,
-            Vector3D.dotProduct(
-                viewDirection,
-                lightDirection.subtract(
-                    interpolatedNormal.scalarMultiply(
-                        2 * lightDirection.dotProduct(interpolatedNormal)))));
-
-    var color =
-        AMB.scalarMultiply(AmbientWeight)
-            .add(DIF.scalarMultiply(diffuse).scalarMultiply(DiffuseWeight))
-            .add(SPEC.scalarMultiply(pow(specular, SpecularWeight)));
-
-    return new Color(
-        (byte) max(0.0, min(color.getX(), 255.0)),
-        (byte) max(0.0, min(color.getY(), 255.0)),
-        (byte) max(0.0, min(color.getZ(), 255.0)));
-  }
-
-  public static Bgra32Bitmap drawModel(
-          Vector4D[] vertexes,
-          Vector3D[] normals,
-          List<Triangle> triangles,
-          int width,
-          int height,
-          double[][] zBuffer,
+            viewDirection.getX() * (lx - nx * 2 * lightDotNormal)
+                + viewDirection.getY() * (ly - ny * 2 * lightDotNormal)
+                + viewDirection.getZ() * (lz - nz * 2 * lightDotNormal));
+    var specularPower = pow(specular, SPECULAR_WEIGHT);
+
+    var red =
+        AMB.getX() * AMBIENT_WEIGHT
+            + DIF.getX() * diffuse * DIFFUSE_WEIGHT
+            + SPEC.getX() * specularPower;
+    var green =
+        AMB.getY() * AMBIENT_WEIGHT
+            + DIF.getY() * diffuse * DIFFUSE_WEIGHT
+            + SPEC.getY() * specularPower;
+    var blue =
+        AMB.getZ() * AMBIENT_WEIGHT
+            + DIF.getZ() * diffuse * DIFFUSE_WEIGHT
+            + SPEC.getZ() * specularPower;
+
+    return (255 << 24)
+        | ((int) max(0.0, min(red, 255.0)) << 16)
+        | ((int) max(0.0, min(green, 255.0)) << 8)
+        | (int) max(0.0, min(blue, 255.0));
+  }
+
+  public static void drawModel(
+          TriangleBuffer triangles,
+          Bgra32Bitmap bitmap,
+          DepthBuffer depthBuffer,
+          Vector3D lightDirection,
+          Vector3D viewDirection) {
+    drawModel(triangles, bitmap, depthBuffer, null, lightDirection, viewDirection);
+  }
+
+  /**
+   * Draws into the back buffer of {@code bitmap}. With a {@code gBuffer} the raster pass only
+   * stores the normals of the nearest surface and every visible pixel is shaded exactly once
+   * afterwards, so the shading cost no longer grows with overdraw.
+   */
+  public static void drawModel(
+          TriangleBuffer triangles,
+          Bgra32Bitmap bitmap,
+          DepthBuffer depthBuffer,
+          GBuffer gBuffer,
           Vector3D lightDirection,
           Vector3D viewDirection) {
-    for (var i = 0; i < width; ++i) {
-      for (var j = 0; j < height; ++j) {
-        zBuffer[i][j] = Float.MAX_VALUE;
+    var width = bitmap.getPixelWidth();
+    var height = bitmap.getPixelHeight();
+    depthBuffer.clear();
+
+    bitmap.clear();
+    var scratch = SCRATCH.get();
+    var lighting = SpanShader.Lighting.of(lightDirection, viewDirection);
+    if (gBuffer != null) {
+      gBuffer.setCenter(0);
+    }
+
+    var rasterStart = FrameProfiler.start();
+    for (var t = 0; t < triangles.getTriangleCount(); t++) {
+      drawTriangle(
+              triangles,
+              t,
+              bitmap,
+              depthBuffer,
+              gBuffer,
+              null,
+              lighting,
+              0,
+              0,
+              width,
+              height,
+              scratch);
+    }
+    FrameProfiler.stop(Stage.RASTER, rasterStart);
+
+    // Gouraud frames already wrote their final colors
+    if (gBuffer != null && !triangles.hasVertexColors()) {
+      shadeDeferred(gBuffer, depthBuffer, null, bitmap, lighting);
+    }
+  }
+
+  public static void drawModelTiled(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      TileBins bins,
+      Vector3D lightDirection,
+      Vector3D viewDirection) {
+    drawModelTiled(triangles, bitmap, depthBuffer, bins, null, lightDirection, viewDirection);
+  }
+
+  /**
+   * Tiled variant of {@link #drawModel(TriangleBuffer, Bgra32Bitmap, DepthBuffer, GBuffer,
+   * Vector3D, Vector3D)}.
+   */
+  public static void drawModelTiled(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      TileBins bins,
+      GBuffer gBuffer,
+      Vector3D lightDirection,
+      Vector3D viewDirection) {
+    clear(bitmap, depthBuffer);
+    var lighting = SpanShader.Lighting.of(lightDirection, viewDirection);
+    rasterTiled(triangles, bitmap, depthBuffer, bins, gBuffer, lighting);
+    // Gouraud frames already wrote their final colors
+    if (!triangles.hasVertexColors()) {
+      resolveDeferred(bitmap, depthBuffer, gBuffer, lighting);
+    }
+  }
+
+  /** Forward frame drawn with {@link #rasterTiledFixedPoint}. */
+  public static void drawModelTiledFixedPoint(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      TileBins bins,
+      Vector3D lightDirection,
+      Vector3D viewDirection) {
+    clear(bitmap, depthBuffer);
+    var lighting = SpanShader.Lighting.of(lightDirection, viewDirection);
+    rasterTiledFixedPoint(triangles, bitmap, depthBuffer, bins, null, null, lighting);
+  }
+
+  /** Clears the back buffer and the depth buffer, the start of a frame drawn in several passes. */
+  public static void clear(Bgra32Bitmap bitmap, DepthBuffer depthBuffer) {
+    bitmap.clear();
+    depthBuffer.clear();
+  }
+
+  /**
+   * Bins and rasterizes one batch of triangles on top of what the frame already holds, so the
+   * instances of a scene share one depth buffer without clearing in between.
+   */
+  public static void rasterTiled(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      TileBins bins,
+      GBuffer gBuffer,
+      SpanShader.Lighting lighting) {
+    rasterTiled(triangles, bitmap, depthBuffer, bins, gBuffer, null, lighting);
+  }
+
+  /**
+   * Same with shadows, the light a pixel receives is scaled by what {@code shadows} lets through.
+   * Deferred frames look shadows up when they resolve instead.
+   */
+  public static void rasterTiled(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      TileBins bins,
+      GBuffer gBuffer,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting) {
+    rasterTiled(triangles, bitmap, depthBuffer, bins, gBuffer, shadows, lighting, false);
+  }
+
+  /**
+   * {@link #rasterTiled} with 28.4 fixed-point edge functions and a top-left fill rule instead of
+   * scanlines, every pixel along an edge shared by two triangles is drawn once.
+   */
+  public static void rasterTiledFixedPoint(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      TileBins bins,
+      GBuffer gBuffer,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting) {
+    rasterTiled(triangles, bitmap, depthBuffer, bins, gBuffer, shadows, lighting, true);
+  }
+
+  private static void rasterTiled(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      TileBins bins,
+      GBuffer gBuffer,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting,
+      boolean fixedPoint) {
+    var width = bitmap.getPixelWidth();
+    var height = bitmap.getPixelHeight();
+    // the deferred resolve looks shadows up where depth was taken
+    if (gBuffer != null) {
+      gBuffer.setCenter(fixedPoint ? 0.5 : 0);
+    }
+    var tileSize = bins.getTileSize();
+    var tilesX = bins.getTilesX();
+    var binStart = FrameProfiler.start();
+    binTriangles(triangles, bins, width, height);
+    FrameProfiler.stop(Stage.BIN, binStart);
+
+    var rasterStart = FrameProfiler.start();
+    IntStream.range(0, bins.getTileCount())
+        .parallel()
+        .forEach(
+            tile -> {
+              var minX = (tile % tilesX) * tileSize;
+              var minY = (tile / tilesX) * tileSize;
+              var maxX = min(minX + tileSize, width);
+              var maxY = min(minY + tileSize, height);
+
+              var scratch = SCRATCH.get();
+              for (var i = 0; i < bins.size(tile); i++) {
+                if (fixedPoint) {
+                  drawTriangleFixedPoint(
+                      triangles,
+                      bins.get(tile, i),
+                      bitmap,
+                      depthBuffer,
+                      gBuffer,
+                      shadows,
+                      lighting,
+                      minX,
+                      minY,
+                      maxX,
+                      maxY,
+                      scratch);
+                } else {
+                  drawTriangle(
+                      triangles,
+                      bins.get(tile, i),
+                      bitmap,
+                      depthBuffer,
+                      gBuffer,
+                      shadows,
+                      lighting,
+                      minX,
+                      minY,
+                      maxX,
+                      maxY,
+                      scratch);
+                }
+              }
+            });
+    FrameProfiler.stop(Stage.RASTER, rasterStart);
+  }
+
+  /** Shades the normals left in {@code gBuffer} once all batches are rasterized, no-op without one. */
+  public static void resolveDeferred(
+      Bgra32Bitmap bitmap, DepthBuffer depthBuffer, GBuffer gBuffer, SpanShader.Lighting lighting) {
+    resolveDeferred(bitmap, depthBuffer, gBuffer, null, lighting);
+  }
+
+  /** Same with shadows, looked up once per visible pixel. */
+  public static void resolveDeferred(
+      Bgra32Bitmap bitmap,
+      DepthBuffer depthBuffer,
+      GBuffer gBuffer,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting) {
+    if (gBuffer != null) {
+      shadeDeferred(gBuffer, depthBuffer, shadows, bitmap, lighting);
+    }
+  }
+
+  public static void drawModelMultisample(
+      TriangleBuffer triangles,
+      Bgra32Bitmap bitmap,
+      MultisampleBuffer samples,
+      TileBins bins,
+      Vector3D lightDirection,
+      Vector3D viewDirection) {
+    clear(bitmap, samples);
+    rasterTiledMultisample(
+        triangles, samples, bins, SpanShader.Lighting.of(lightDirection, viewDirection));
+    resolveMultisample(samples, bitmap);
+  }
+
+  /** Clears the back buffer and the samples, the start of a multisampled frame. */
+  public static void clear(Bgra32Bitmap bitmap, MultisampleBuffer samples) {
+    bitmap.clear();
+    samples.clear();
+  }
+
+  /**
+   * Multisampled variant of {@link #rasterTiled}. Coverage and depth are tested per sample but a
+   * pixel is shaded once per triangle, at its centre, and the color goes to every sample the
+   * triangle won. Edges come out close to supersampling while the shading cost stays that of
+   * one sample per pixel. Deferred shading does not apply, the colors are final.
+   */
+  public static void rasterTiledMultisample(
+      TriangleBuffer triangles,
+      MultisampleBuffer samples,
+      TileBins bins,
+      SpanShader.Lighting lighting) {
+    rasterTiledMultisample(triangles, samples, bins, null, lighting);
+  }
+
+  /** Same with shadows, looked up once per shaded pixel at its centre. */
+  public static void rasterTiledMultisample(
+      TriangleBuffer triangles,
+      MultisampleBuffer samples,
+      TileBins bins,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting) {
+    if (samples.getTileSize() != bins.getTileSize()) {
+      // the samples clear lazily per tile, a bin spanning two of their tiles would race
+      throw new IllegalArgumentException(
+          "sample tiles of " + samples.getTileSize() + " but bins of " + bins.getTileSize());
+    }
+    var width = samples.getWidth();
+    var height = samples.getHeight();
+    var tileSize = bins.getTileSize();
+    var tilesX = bins.getTilesX();
+    var binStart = FrameProfiler.start();
+    binTriangles(triangles, bins, width, height);
+    FrameProfiler.stop(Stage.BIN, binStart);
+
+    var rasterStart = FrameProfiler.start();
+    IntStream.range(0, bins.getTileCount())
+        .parallel()
+        .forEach(
+            tile -> {
+              if (bins.size(tile) == 0) {
+                return;
+              }
+              var minX = (tile % tilesX) * tileSize;
+              var minY = (tile / tilesX) * tileSize;
+              var maxX = min(minX + tileSize, width);
+              var maxY = min(minY + tileSize, height);
+
+              samples.prepareTile(tile);
+              var scratch = SCRATCH.get();
+              for (var i = 0; i < bins.size(tile); i++) {
+                drawTriangleMultisample(
+                    triangles,
+                    bins.get(tile, i),
+                    samples,
+                    shadows,
+                    lighting,
+                    minX,
+                    minY,
+                    maxX,
+                    maxY,
+                    scratch);
+              }
+            });
+    FrameProfiler.stop(Stage.RASTER, rasterStart);
+  }
+
+  private static void drawTriangleMultisample(
+      TriangleBuffer triangles,
+      int triangle,
+      MultisampleBuffer samples,
+      ShadowMap shadows,
+      SpanShader.Lighting lighting,
+      int minX,
+      int minY,
+      int maxX,
+      int maxY,
+      RasterScratch scratch) {
+    var vertexes = triangles.getVertexes();
+    var vertexIndexes = triangles.getVertexIndexes();
+    var i0 = vertexIndexes[triangle * 3];
+    var i1 = vertexIndexes[triangle * 3 + 1];
+    var i2 = vertexIndexes[triangle * 3 + 2];
+    if (isInvisibleFace(vertexes, i0, i1, i2)) {
+      if (FrameProfiler.ENABLED) {
+        scratch.counters.add(Counter.TRIANGLES_BACKFACE_CULLED);
       }
+      return;
     }
+    var setupStart = FrameProfiler.start();
+    var normalIndexes = triangles.getNormalIndexes();
+    var setup = scratch.setup;
+    var n0 = normalIndexes[triangle * 3];
+    var n1 = normalIndexes[triangle * 3 + 1];
+    var n2 = normalIndexes[triangle * 3 + 2];
+    var ready =
+        triangles.hasVertexColors()
+            ? setup.setup(vertexes, i0, i1, i2, triangles.getColors(), n0, n1, n2)
+            : setup.setup(vertexes, i0, i1, i2, triangles.getNormals(), n0, n1, n2);
+    if (!ready) {
+      return;
+    }
+    setup.setTexture(triangles.getTexture(triangle), triangles.getUvs(), n0, n1, n2);
 
-    Bgra32Bitmap bitmap = new Bgra32Bitmap(width, height);
+    // a sample at the centre offset (ox, oy) of pixel x covers [x, x + 1)
+    var x0 = vertexes[i0 * 4];
+    var y0 = vertexes[i0 * 4 + 1];
+    var x1 = vertexes[i1 * 4];
+    var y1 = vertexes[i1 * 4 + 1];
+    var x2 = vertexes[i2 * 4];
+    var y2 = vertexes[i2 * 4 + 1];
+    var fromX = max(minX, (int) floor(min(x0, min(x1, x2))));
+    var toX = min(maxX - 1, (int) floor(max(x0, max(x1, x2))));
+    var fromY = max(minY, (int) floor(min(y0, min(y1, y2))));
+    var toY = min(maxY - 1, (int) floor(max(y0, max(y1, y2))));
+    if (fromX > toX || fromY > toY) {
+      if (FrameProfiler.ENABLED) {
+        scratch.counters.stop(Stage.SETUP, setupStart);
+      }
+      return;
+    }
 
-    for (var triangle : triangles) {
-      var indexes = triangle.getIndexes();
-      var triangleVertexes =
-              Arrays.stream(indexes).map(index -> vertexes[index.getVertex()]).toList();
-      var normalVertexes = Arrays.stream(indexes).map(index -> normals[index.getNormal()]).toList();
-      drawTriangle(
-              triangleVertexes, normalVertexes, bitmap, zBuffer, lightDirection, viewDirection);
+    // flip the edges of clockwise triangles so inside is always >= 0
+    var sign = setup.getArea() > 0 ? 1 : -1;
+    // a sample exactly on a shared edge belongs to one triangle only, as in edgeFunction
+    var bias0 = sampleBias(sign * setup.getEdgeA(0), sign * setup.getEdgeB(0));
+    var bias1 = sampleBias(sign * setup.getEdgeA(1), sign * setup.getEdgeB(1));
+    var bias2 = sampleBias(sign * setup.getEdgeA(2), sign * setup.getEdgeB(2));
+    var sampleCount = samples.getSamples();
+    for (var s = 0; s < sampleCount; s++) {
+      var ox = samples.getSampleX(s);
+      var oy = samples.getSampleY(s);
+      scratch.sampleEdge0[s] = sign * (setup.getEdgeA(0) * ox + setup.getEdgeB(0) * oy);
+      scratch.sampleEdge1[s] = sign * (setup.getEdgeA(1) * ox + setup.getEdgeB(1) * oy);
+      scratch.sampleEdge2[s] = sign * (setup.getEdgeA(2) * ox + setup.getEdgeB(2) * oy);
+      scratch.sampleDepth[s] = setup.getDepthDx() * ox + setup.getDepthDy() * oy;
+    }
+    var step0 = sign * setup.getEdgeA(0);
+    var step1 = sign * setup.getEdgeA(1);
+    var step2 = sign * setup.getEdgeA(2);
+    if (FrameProfiler.ENABLED) {
+      scratch.counters.stop(Stage.SETUP, setupStart);
+      scratch.counters.add(Counter.TRIANGLES_RASTERIZED);
     }
 
-    return bitmap;
+    var shadeStart = FrameProfiler.start();
+    scratch.ensureSpan(maxX - minX);
+    for (var y = fromY; y <= toY; y++) {
+      var centerX = fromX + 0.5;
+      var centerY = y + 0.5;
+      var e0 = sign * setup.edgeAt(0, centerX, centerY);
+      var e1 = sign * setup.edgeAt(1, centerX, centerY);
+      var e2 = sign * setup.edgeAt(2, centerX, centerY);
+      setup.moveTo(centerX, centerY);
+      var span = 0;
+      for (var x = fromX; x <= toX; x++, e0 += step0, e1 += step1, e2 += step2, setup.stepX()) {
+        var index = samples.index(x, y);
+        var z = setup.getZ();
+        var mask = 0;
+        var covered = false;
+        for (var s = 0; s < sampleCount; s++) {
+          if (e0 + scratch.sampleEdge0[s] >= bias0
+              && e1 + scratch.sampleEdge1[s] >= bias1
+              && e2 + scratch.sampleEdge2[s] >= bias2) {
+            covered = true;
+            if (samples.testAndSet(index + s, (float) (z + scratch.sampleDepth[s]))) {
+              mask |= 1 << s;
+            }
+          }
+        }
+        if (FrameProfiler.ENABLED && covered) {
+          scratch.counters.add(Counter.PIXELS_TESTED);
+        }
+        if (mask == 0) {
+          continue;
+        }
+        if (setup.hasColors()) {
+          var argb = shadow(setup.getArgb(), shadows, x + 0.5, centerY, z, lighting);
+          samples.setColor(index, mask, texture(argb, setup));
+          if (FrameProfiler.ENABLED) {
+            scratch.counters.add(Counter.PIXELS_SHADED);
+          }
+          continue;
+        }
+        scratch.spanPixels[span] = x;
+        scratch.spanMasks[span] = mask;
+        scratch.spanDepth[span] = (float) z;
+        if (setup.hasTexture()) {
+          scratch.spanTexels[span] = setup.getTexel();
+        }
+        scratch.spanNx[span] = (float) setup.getNx();
+        scratch.spanNy[span] = (float) setup.getNy();
+        scratch.spanNz[span] = (float) setup.getNz();
+        span++;
+      }
+      if (span > 0) {
+        SpanShader.get()
+            .shade(
+                lighting, scratch.spanNx, scratch.spanNy, scratch.spanNz, span, scratch.spanColors);
+        if (shadows != null) {
+          for (var i = 0; i < span; i++) {
+            scratch.spanColors[i] =
+                shadow(
+                    scratch.spanColors[i],
+                    shadows,
+                    scratch.spanPixels[i] + 0.5,
+                    centerY,
+                    scratch.spanDepth[i],
+                    lighting);
+          }
+        }
+        if (setup.hasTexture()) {
+          modulate(scratch.spanColors, scratch.spanTexels, span);
+        }
+        for (var i = 0; i < span; i++) {
+          samples.setColor(
+              samples.index(scratch.spanPixels[i], y), scratch.spanMasks[i], scratch.spanColors[i]);
+        }
+        if (FrameProfiler.ENABLED) {
+          scratch.counters.add(Counter.PIXELS_SHADED, span);
+        }
+      }
+    }
+    if (FrameProfiler.ENABLED) {
+      scratch.counters.stop(Stage.SHADE, shadeStart);
+    }
+  }
+
+  /** Averages the samples into the back buffer, tiles no triangle reached stay cleared. */
+  public static void resolveMultisample(MultisampleBuffer samples, Bgra32Bitmap bitmap) {
+    var width = samples.getWidth();
+    var height = samples.getHeight();
+    var tileSize = samples.getTileSize();
+    var tilesX = samples.getTilesX();
+    var resolveStart = FrameProfiler.start();
+    IntStream.range(0, samples.getTileCount())
+        .parallel()
+        .forEach(
+            tile -> {
+              if (!samples.isTileWritten(tile)) {
+                return;
+              }
+              var minX = (tile % tilesX) * tileSize;
+              var minY = (tile / tilesX) * tileSize;
+              var maxX = min(minX + tileSize, width);
+              var maxY = min(minY + tileSize, height);
+              for (var y = minY; y < maxY; y++) {
+                for (var x = minX; x < maxX; x++) {
+                  bitmap.setPixel(x, y, samples.resolve(x, y));
+                }
+              }
+            });
+    FrameProfiler.stop(Stage.RESOLVE, resolveStart);
+  }
+
+  private static void binTriangles(
+      TriangleBuffer triangles, TileBins bins, int width, int height) {
+    var tileSize = bins.getTileSize();
+    var tilesX = bins.getTilesX();
+    bins.clear();
+
+    var vertexes = triangles.getVertexes();
+    var vertexIndexes = triangles.getVertexIndexes();
+    for (var t = 0; t < triangles.getTriangleCount(); t++) {
+      var a = vertexIndexes[t * 3] * 4;
+      var b = vertexIndexes[t * 3 + 1] * 4;
+      var c = vertexIndexes[t * 3 + 2] * 4;
+      if (isInvisibleFace(vertexes, a / 4, b / 4, c / 4)) {
+        FrameProfiler.add(Counter.TRIANGLES_BACKFACE_CULLED, 1);
+        continue;
+      }
+
+      var minY = (int) min(vertexes[a + 1], min(vertexes[b + 1], vertexes[c + 1]));
+      var maxY = (int) max(vertexes[a + 1], max(vertexes[b + 1], vertexes[c + 1]));
+      var minX = (int) min(vertexes[a], min(vertexes[b], vertexes[c]));
+      var maxX = (int) max(vertexes[a], max(vertexes[b], vertexes[c]));
+      if (maxY < 0 || minY >= height || maxX < 0 || minX >= width) {
+        FrameProfiler.add(Counter.TRIANGLES_FRUSTUM_CULLED, 1);
+        continue;
+      }
+
+      var firstTileX = max(minX, 0) / tileSize;
+      var lastTileX = min(maxX, width - 1) / tileSize;
+      var firstTileY = max(minY, 0) / tileSize;
+      var lastTileY = min(maxY, height - 1) / tileSize;
+      for (var ty = firstTileY; ty <= lastTileY; ty++) {
+        for (var tx = firstTileX; tx <= lastTileX; tx++) {
+          bins.add(ty * tilesX + tx, t);
+        }
+      }
+    }
   }
 
   private static Vector4D resolveB(
-      boolean secondHalf, Vector4D up, Vector4D mid, Vector4D down, double beta) {
+      boolean secondHalf, Vector4D up, Vector4D mid, Vector4D down, double beta, Vector4D dst) {
     if (secondHalf) {
-      return up.subtract(mid).multiply(Vector4D.createFromValue(beta)).add(mid);
+      return Vector4D.lerpInto(mid, up, beta, dst);
     } else {
-      return mid.subtract(down).multiply(Vector4D.createFromValue(beta)).add(down);
+      return Vector4D.lerpInto(down, mid, beta, dst);
     }
   }
 }
@@ -0,0 +1,144 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class FrameProfiler {
+
+  public static final boolean ENABLED = Boolean.getBoolean("render.profile");
+
+  public enum Stage {
+    TRANSFORM,
+    SHADOW,
+    BIN,
+    SETUP,
+    RASTER,
+    SHADE,
+    RESOLVE,
+    PRESENT
+  }
+
+  public enum Counter {
+    LOD_LEVEL,
+    INSTANCES_DRAWN,
+    INSTANCES_CULLED,
+    MESHLETS_FRUSTUM_CULLED,
+    MESHLETS_CONE_CULLED,
+    TRIANGLES_SUBMITTED,
+    TRIANGLES_FRUSTUM_CULLED,
+    TRIANGLES_BACKFACE_CULLED,
+    TRIANGLES_CLIPPED,
+    TRIANGLES_RASTERIZED,
+    PIXELS_TESTED,
+    PIXELS_SHADED,
+    PIXELS_OVERDRAWN
+  }
+
+  public record FrameStats(long frame, long[] stageNanos, long[] counts) {
+
+    public long nanos(Stage stage) {
+      return stageNanos[stage.ordinal()];
+    }
+
+    public long count(Counter counter) {
+      return counts[counter.ordinal()];
+    }
+  }
+
+  public static final class Counters {
+    private final long[] nanos = new long[Stage.values().length];
+    private final long[] counts = new long[Counter.values().length];
+
+    public void add(Counter counter) {
+      counts[counter.ordinal()]++;
+    }
+
+    public void add(Counter counter, long amount) {
+      counts[counter.ordinal()] += amount;
+    }
+
+    public void stop(Stage stage, long start) {
+      nanos[stage.ordinal()] += System.nanoTime() - start;
+    }
+  }
+
+  private static final List<Counters> ALL_COUNTERS = new CopyOnWriteArrayList<>();
+  private static final WorkerLocal<Counters> COUNTERS =
+      new WorkerLocal<>(
+          () -> {
+            var counters = new Counters();
+            ALL_COUNTERS.add(counters);
+            return counters;
+          });
+
+  private static long frame;
+  private static RenderFrameEvent event;
+  private static FrameStats lastFrame =
+      new FrameStats(0, new long[Stage.values().length], new long[Counter.values().length]);
+
+  public static Counters counters() {
+    return COUNTERS.get();
+  }
+
+  public static long start() {
+    return ENABLED ? System.nanoTime() : 0;
+  }
+
+  public static void stop(Stage stage, long start) {
+    if (ENABLED) {
+      COUNTERS.get().stop(stage, start);
+    }
+  }
+
+  public static void add(Counter counter, long amount) {
+    if (ENABLED) {
+      COUNTERS.get().add(counter, amount);
+    }
+  }
+
+  // workers only touch their counters inside a frame, so resetting and summing from the frame
+  // thread is ordered by the parallel stream's fork and join
+  public static void beginFrame() {
+    if (!ENABLED) {
+      return;
+    }
+    for (var counters : ALL_COUNTERS) {
+      Arrays.fill(counters.nanos, 0);
+      Arrays.fill(counters.counts, 0);
+    }
+    event = new RenderFrameEvent();
+    event.begin();
+  }
+
+  public static FrameStats endFrame() {
+    if (!ENABLED) {
+      return lastFrame;
+    }
+    var nanos = new long[Stage.values().length];
+    var counts = new long[Counter.values().length];
+    for (var counters : ALL_COUNTERS) {
+      for (var i = 0; i < nanos.length; i++) {
+        nanos[i] += counters.nanos[i];
+      }
+      for (var i = 0; i < counts.length; i++) {
+        counts[i] += counters.counts[i];
+      }
+    }
+    lastFrame = new FrameStats(++frame, nanos, counts);
+
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.fill(lastFrame);
+        event.commit();
+      }
+      event = null;
+    }
+    return lastFrame;
+  }
+
+  public static FrameStats getLastFrame() {
+    return lastFrame;
+  }
+}
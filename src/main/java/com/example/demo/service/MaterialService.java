@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Material;
+import com.example.demo.model.Texture;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+public class MaterialService {
+
+  /** The MTL files named by the mtllib lines of {@code obj}, resolved against its folder. */
+  public static Path[] resolveLibraries(Path obj, Collection<String> libraries) {
+    return libraries.stream().map(library -> resolve(obj, library)).toArray(Path[]::new);
+  }
+
+  /**
+   * Resolves {@code names} against the MTL libraries an OBJ file references, in the order given.
+   * Libraries, materials and images that are missing leave the material untextured instead of
+   * failing the load, as most viewers do.
+   */
+  public static Material[] load(Path[] libraries, Collection<String> names) {
+    var textures = new HashMap<String, Path>();
+    for (var file : libraries) {
+      try {
+        readLibrary(file, textures);
+      } catch (IOException e) {
+        // a missing library only costs the textures
+      }
+    }
+
+    var texturePaths = names.stream().map(textures::get).toArray(Path[]::new);
+    return load(names.toArray(String[]::new), texturePaths);
+  }
+
+  /**
+   * Materials whose diffuse maps are already resolved, as the mesh cache stores them. Images
+   * shared by several materials are decoded once.
+   */
+  public static Material[] load(String[] names, Path[] texturePaths) {
+    var loaded = new HashMap<Path, Texture>();
+    var materials = new Material[names.length];
+    for (var i = 0; i < names.length; i++) {
+      materials[i] = new Material(names[i], texturePaths[i], loadTexture(texturePaths[i], loaded));
+    }
+    return materials;
+  }
+
+  // null when there is no image or it cannot be decoded
+  private static Texture loadTexture(Path path, Map<Path, Texture> loaded) {
+    if (path == null) {
+      return null;
+    }
+    return loaded.computeIfAbsent(
+        path,
+        file -> {
+          try {
+            var image = ImageIO.read(file.toFile());
+            if (image == null) {
+              return null;
+            }
+            var width = image.getWidth();
+            var height = image.getHeight();
+            return Texture.of(width, height, image.getRGB(0, 0, width, height, null, 0, width));
+          } catch (IOException | IllegalArgumentException e) {
+            return null;
+          }
+        });
+  }
+
+  private static void readLibrary(Path file, Map<String, Path> textures) throws IOException {
+    String material = null;
+    for (var line : Files.readAllLines(file)) {
+      var trimmed = line.strip();
+      if (trimmed.startsWith("newmtl ")) {
+        material = trimmed.substring("newmtl ".length()).strip();
+      } else if (trimmed.startsWith("map_Kd ") && material != null) {
+        // options such as -s or -o come first, the file name is the last token
+        var tokens = trimmed.split("\\s+");
+        textures.put(material, resolve(file, tokens[tokens.length - 1]));
+      }
+    }
+  }
+
+  private static Path resolve(Path sibling, String name) {
+    var parent = sibling.toAbsolutePath().getParent();
+    return parent.resolve(name.replace('\\', '/')).normalize();
+  }
+}
@@ -0,0 +1,355 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Material;
+import com.example.demo.model.MeshBounds;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.MeshLods;
+import com.example.demo.model.MeshSurface;
+import com.example.demo.model.Meshlets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+public class MeshCacheService {
+
+    private static final int MAGIC = 0x4D474B41;
+    private static final int VERSION = 6;
+    private static final int FLAG_MESHLETS = 2;
+    private static final int FLAG_SURFACE = 4;
+    private static final int HEADER_SIZE = 40;
+    private static final int STAMP_SIZE = 16;
+    private static final int LEVEL_HEADER_SIZE = 48;
+    private static final int BOUNDS_SIZE = 24;
+    private static final String EXTENSION = ".mesh";
+
+    public static MeshLods load(Path source) throws IOException {
+        var cache = cachePath(source);
+        var sourceSize = Files.size(source);
+        var sourceModified = Files.getLastModifiedTime(source).toMillis();
+
+        if (Files.isRegularFile(cache)) {
+            MeshLods lods;
+            try {
+                lods = read(cache, sourceSize, sourceModified);
+            } catch (IOException | RuntimeException e) {
+                // an unreadable or corrupt cache is a miss like a stale one, the OBJ is still there
+                lods = null;
+            }
+            if (lods != null) {
+                return lods;
+            }
+        }
+
+        var lods = MeshSimplifier.buildLods(MeshWelder.weld(ParserService.parse(source)));
+        try {
+            write(lods, source, sourceSize, sourceModified);
+        } catch (IOException e) {
+            // the cache is only an optimisation, a read-only asset folder must still load
+        }
+        return lods;
+    }
+
+    public static Path cachePath(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    private static MeshLods read(Path cache, long sourceSize, long sourceModified) throws IOException {
+        try (var channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC
+                    || header.getInt() != VERSION
+                    || header.getLong() != sourceSize
+                    || header.getLong() != sourceModified) {
+                return null;
+            }
+            // every count is checked against the file before it sizes an array
+            var levelCount = header.getInt();
+            var materialCount = header.getInt();
+            var libraryCount = header.getInt();
+            if (levelCount < 1 || levelCount > MeshSimplifier.MAX_LEVELS
+                    || materialCount < 0 || libraryCount < 0
+                    || channel.size() < HEADER_SIZE + (4L + STAMP_SIZE) * libraryCount + 8L * materialCount) {
+                return null;
+            }
+            var levels = new MeshBuffer[levelCount];
+
+            // the materials are stale as soon as one of their MTL files changed, appeared or went
+            long offset = HEADER_SIZE;
+            var libraries = new Path[libraryCount];
+            for (var i = 0; i < libraryCount; i++) {
+                var library = readString(channel, offset);
+                if (library == null) {
+                    return null;
+                }
+                offset += 4 + library.getBytes(StandardCharsets.UTF_8).length;
+                if (channel.size() < offset + STAMP_SIZE) {
+                    return null;
+                }
+                var stamp = channel.map(FileChannel.MapMode.READ_ONLY, offset, STAMP_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                libraries[i] = Path.of(library);
+                var current = stamp(libraries[i]);
+                if (stamp.getLong() != current[0] || stamp.getLong() != current[1]) {
+                    return null;
+                }
+                offset += STAMP_SIZE;
+            }
+
+            // textures are decoded again, only the resolved image paths are cached
+            var names = new String[materialCount];
+            var texturePaths = new Path[materialCount];
+            for (var i = 0; i < materialCount; i++) {
+                var name = readString(channel, offset);
+                if (name == null) {
+                    return null;
+                }
+                offset += 4 + name.getBytes(StandardCharsets.UTF_8).length;
+                var texturePath = readString(channel, offset);
+                if (texturePath == null) {
+                    return null;
+                }
+                offset += 4 + texturePath.getBytes(StandardCharsets.UTF_8).length;
+                names[i] = name;
+                texturePaths[i] = texturePath.isEmpty() ? null : Path.of(texturePath);
+            }
+            var materials = MaterialService.load(names, texturePaths);
+
+            for (var i = 0; i < levels.length; i++) {
+                if (channel.size() < offset + LEVEL_HEADER_SIZE) {
+                    return null;
+                }
+                var levelHeader = channel.map(FileChannel.MapMode.READ_ONLY, offset, LEVEL_HEADER_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                var vertexCount = levelHeader.getInt();
+                var normalCount = levelHeader.getInt();
+                var indexCount = levelHeader.getInt();
+                var flags = levelHeader.getInt();
+                var meshletCount = (flags & FLAG_MESHLETS) != 0 ? levelHeader.getInt() : 0;
+                levelHeader.position(LEVEL_HEADER_SIZE - BOUNDS_SIZE);
+                var bounds = new MeshBounds(
+                        levelHeader.getFloat(), levelHeader.getFloat(), levelHeader.getFloat(),
+                        levelHeader.getFloat(), levelHeader.getFloat(), levelHeader.getFloat());
+
+                offset += LEVEL_HEADER_SIZE;
+                if (vertexCount < 0 || normalCount < 0 || indexCount < 0 || meshletCount < 0
+                        || vertexCount > Integer.MAX_VALUE / 3 || normalCount > Integer.MAX_VALUE / 3
+                        || meshletCount > Integer.MAX_VALUE / 4 - 1) {
+                    return null;
+                }
+                var levelSize = 4L * (3L * vertexCount + 3L * normalCount + indexCount * 2L)
+                        + 4L * meshletsSize(meshletCount, flags)
+                        + 4L * surfaceSize(normalCount, indexCount, flags);
+                if (channel.size() < offset + levelSize) {
+                    return null;
+                }
+                var positions = new float[vertexCount * 3];
+                var normals = new float[normalCount * 3];
+                var vertexIndexes = new int[indexCount];
+                var normalIndexes = new int[indexCount];
+
+                offset = read(channel, offset, positions);
+                offset = read(channel, offset, normals);
+                offset = read(channel, offset, vertexIndexes);
+                offset = read(channel, offset, normalIndexes);
+
+                Meshlets meshlets = null;
+                if ((flags & FLAG_MESHLETS) != 0) {
+                    var vertexOffsets = new int[meshletCount + 1];
+                    var normalOffsets = new int[meshletCount + 1];
+                    var triangleOffsets = new int[meshletCount + 1];
+                    var spheres = new float[meshletCount * 4];
+                    var cones = new float[meshletCount * 4];
+                    offset = read(channel, offset, vertexOffsets);
+                    offset = read(channel, offset, normalOffsets);
+                    offset = read(channel, offset, triangleOffsets);
+                    offset = read(channel, offset, spheres);
+                    offset = read(channel, offset, cones);
+                    meshlets = new Meshlets(vertexOffsets, normalOffsets, triangleOffsets, spheres, cones);
+                }
+                MeshSurface surface = null;
+                if ((flags & FLAG_SURFACE) != 0) {
+                    var uvs = new float[normals.length / 3 * 2];
+                    var materialIndexes = new int[vertexIndexes.length];
+                    offset = read(channel, offset, uvs);
+                    offset = read(channel, offset, materialIndexes);
+                    surface = new MeshSurface(uvs, normalIndexes, materialIndexes, materials, libraries);
+                }
+                levels[i] = new MeshBuffer(positions, normals, vertexIndexes, normalIndexes, bounds, meshlets,
+                        surface);
+            }
+            return channel.size() == offset ? new MeshLods(levels) : null;
+        }
+    }
+
+    private static void write(MeshLods lods, Path source, long sourceSize, long sourceModified)
+            throws IOException {
+        var cache = cachePath(source);
+        // a file of its own per writer, processes warming the same asset never share one
+        var temp = Files.createTempFile(
+                cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            writeTemp(lods, temp, sourceSize, sourceModified);
+            // temp files are private to their owner, the cache is as readable as its asset
+            if (Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(source));
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void writeTemp(MeshLods lods, Path temp, long sourceSize, long sourceModified)
+            throws IOException {
+        var surface = lods.base().surface();
+        var materials = surface != null ? surface.materials() : new Material[0];
+        var libraries = surface != null ? surface.libraries() : new Path[0];
+
+        try (var channel = FileChannel.open(temp,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(sourceSize)
+                    .putLong(sourceModified)
+                    .putInt(lods.count())
+                    .putInt(materials.length)
+                    .putInt(libraries.length)
+                    .position(HEADER_SIZE);
+            channel.write(header.flip(), 0);
+
+            long offset = HEADER_SIZE;
+            for (var library : libraries) {
+                offset = writeString(channel, offset, library.toString());
+                var current = stamp(library);
+                var stamp = ByteBuffer.allocate(STAMP_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                stamp.putLong(current[0]).putLong(current[1]).flip();
+                channel.write(stamp, offset);
+                offset += STAMP_SIZE;
+            }
+            for (var material : materials) {
+                offset = writeString(channel, offset, material.name());
+                offset = writeString(channel, offset,
+                        material.texturePath() != null ? material.texturePath().toString() : "");
+            }
+            for (var mesh : lods.levels()) {
+                offset = write(channel, offset, mesh);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static long write(FileChannel channel, long offset, MeshBuffer mesh) throws IOException {
+        var bounds = mesh.bounds();
+        var meshlets = mesh.meshlets();
+        var header = ByteBuffer.allocate(LEVEL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(mesh.vertexCount())
+                .putInt(mesh.normalCount())
+                .putInt(mesh.vertexIndexes().length)
+                .putInt((meshlets != null ? FLAG_MESHLETS : 0) | (mesh.surface() != null ? FLAG_SURFACE : 0))
+                .putInt(meshlets != null ? meshlets.count() : 0)
+                .position(LEVEL_HEADER_SIZE - BOUNDS_SIZE);
+        header.putFloat(bounds.minX())
+                .putFloat(bounds.minY())
+                .putFloat(bounds.minZ())
+                .putFloat(bounds.maxX())
+                .putFloat(bounds.maxY())
+                .putFloat(bounds.maxZ())
+                .flip();
+        channel.write(header, offset);
+
+        offset += LEVEL_HEADER_SIZE;
+        offset = write(channel, offset, mesh.positions());
+        offset = write(channel, offset, mesh.normals());
+        offset = write(channel, offset, mesh.vertexIndexes());
+        offset = write(channel, offset, mesh.normalIndexes());
+        if (meshlets != null) {
+            offset = write(channel, offset, meshlets.vertexOffsets());
+            offset = write(channel, offset, meshlets.normalOffsets());
+            offset = write(channel, offset, meshlets.triangleOffsets());
+            offset = write(channel, offset, meshlets.spheres());
+            offset = write(channel, offset, meshlets.cones());
+        }
+        if (mesh.surface() != null) {
+            offset = write(channel, offset, mesh.surface().uvs());
+            offset = write(channel, offset, mesh.surface().materialIndexes());
+        }
+        return offset;
+    }
+
+    // size and modification time of a file, -1 for both while it does not exist
+    private static long[] stamp(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return new long[] {-1, -1};
+        }
+        return new long[] {Files.size(file), Files.getLastModifiedTime(file).toMillis()};
+    }
+
+    private static long meshletsSize(int meshletCount, int flags) {
+        return (flags & FLAG_MESHLETS) != 0 ? 3L * (meshletCount + 1) + 8L * meshletCount : 0;
+    }
+
+    private static long surfaceSize(int normalCount, int indexCount, int flags) {
+        return (flags & FLAG_SURFACE) != 0 ? normalCount * 2L + indexCount : 0;
+    }
+
+    // a length-prefixed UTF-8 string, null when the file ends first
+    private static String readString(FileChannel channel, long offset) throws IOException {
+        if (channel.size() < offset + 4) {
+            return null;
+        }
+        var length = map(channel, FileChannel.MapMode.READ_ONLY, offset, 1).getInt();
+        if (length < 0 || channel.size() < offset + 4 + length) {
+            return null;
+        }
+        var bytes = new byte[length];
+        channel.map(FileChannel.MapMode.READ_ONLY, offset + 4, length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long writeString(FileChannel channel, long offset, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocate(4 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(bytes.length).put(bytes).flip();
+        channel.write(buffer, offset);
+        return offset + 4 + bytes.length;
+    }
+
+    private static long read(FileChannel channel, long offset, float[] dst) throws IOException {
+        map(channel, FileChannel.MapMode.READ_ONLY, offset, dst.length).asFloatBuffer().get(dst);
+        return offset + 4L * dst.length;
+    }
+
+    private static long read(FileChannel channel, long offset, int[] dst) throws IOException {
+        map(channel, FileChannel.MapMode.READ_ONLY, offset, dst.length).asIntBuffer().get(dst);
+        return offset + 4L * dst.length;
+    }
+
+    private static long write(FileChannel channel, long offset, float[] src) throws IOException {
+        map(channel, FileChannel.MapMode.READ_WRITE, offset, src.length).asFloatBuffer().put(src);
+        return offset + 4L * src.length;
+    }
+
+    private static long write(FileChannel channel, long offset, int[] src) throws IOException {
+        map(channel, FileChannel.MapMode.READ_WRITE, offset, src.length).asIntBuffer().put(src);
+        return offset + 4L * src.length;
+    }
+
+    private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, int elements)
+            throws IOException {
+        return channel.map(mode, offset, 4L * elements).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
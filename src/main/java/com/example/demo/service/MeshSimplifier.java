@@ -0,0 +1,355 @@
+package com.example.demo.service;
+
+import com.example.demo.model.MeshBounds;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.MeshLods;
+import com.example.demo.model.MeshSurface;
+import com.example.demo.util.FloatArrayList;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class MeshSimplifier {
+
+  public static final int MAX_LEVELS = 6;
+
+  // every level keeps about half of the triangles of the previous one, coarser levels than this
+  // are not worth the memory because the raster cost is already dominated by per-frame overhead
+  private static final float LEVEL_RATIO = 0.5f;
+  private static final int MIN_LEVEL_TRIANGLES = 256;
+
+  // open borders get a plane perpendicular to the face so the outline of a cut-open mesh stays
+  // in place until the interior has been collapsed
+  private static final double BORDER_WEIGHT = 10;
+
+  // a collapse is rejected once it turns a surviving triangle further than this, otherwise the
+  // coarse levels fold over themselves along thin parts
+  private static final double MIN_FLIP_DOT = 0.2;
+
+  private static final int MAX_PASSES = 64;
+
+  public static MeshLods buildLods(MeshBuffer mesh) {
+    var levels = new ArrayList<MeshBuffer>();
+    levels.add(MeshletBuilder.build(mesh));
+    var current = mesh;
+    while (levels.size() < MAX_LEVELS) {
+      var target = (int) (current.triangleCount() * LEVEL_RATIO);
+      if (target < MIN_LEVEL_TRIANGLES) {
+        break;
+      }
+      var next = simplify(current, target);
+      // nearly every collapse was rejected, another level would look the same
+      if (next.triangleCount() > current.triangleCount() * 0.8f) {
+        break;
+      }
+      levels.add(MeshletBuilder.build(MeshWelder.weld(next)));
+      current = next;
+    }
+    return new MeshLods(levels.toArray(MeshBuffer[]::new));
+  }
+
+  /**
+   * Collapses edges in order of their quadric error until the mesh has at most {@code
+   * targetTriangles} triangles. Vertices only ever move onto one of their neighbours, so the
+   * surviving corners keep their original normals.
+   */
+  public static MeshBuffer simplify(MeshBuffer mesh, int targetTriangles) {
+    var positions = mesh.positions();
+    var vertexCount = mesh.vertexCount();
+    // seam duplicates collapse together, the welded id of a welded id is itself
+    var ids = MeshletBuilder.positionIds(positions, vertexCount);
+    var indexes = new int[mesh.vertexIndexes().length];
+    for (var i = 0; i < indexes.length; i++) {
+      indexes[i] = ids[mesh.vertexIndexes()[i]];
+    }
+    var normalIndexes = mesh.normalIndexes().clone();
+    var materialIndexes = mesh.surface() != null ? mesh.surface().materialIndexes().clone() : null;
+    var triangleCount = mesh.triangleCount();
+
+    var quadrics = new double[vertexCount * 10];
+    var offsets = new int[vertexCount + 1];
+    var adjacency = MeshletBuilder.vertexTriangles(indexes, ids, offsets);
+    addQuadrics(positions, indexes, adjacency, offsets, quadrics);
+
+    var remap = new int[vertexCount];
+    var locked = new boolean[vertexCount];
+    for (var pass = 0; pass < MAX_PASSES && triangleCount > targetTriangles; pass++) {
+      if (pass > 0) {
+        offsets = new int[vertexCount + 1];
+        adjacency = MeshletBuilder.vertexTriangles(indexes, ids, offsets);
+      }
+
+      var edgeCount = indexes.length;
+      var edgeFrom = new int[edgeCount];
+      var edgeTo = new int[edgeCount];
+      var keys = new long[edgeCount];
+      for (var e = 0; e < edgeCount; e++) {
+        var a = indexes[e];
+        var b = indexes[e - e % 3 + (e + 1) % 3];
+        var toB = error(quadrics, a, b, positions, b);
+        var toA = error(quadrics, a, b, positions, a);
+        edgeFrom[e] = toB <= toA ? a : b;
+        edgeTo[e] = toB <= toA ? b : a;
+        var cost = (float) Math.max(Math.min(toA, toB), 0);
+        keys[e] = ((long) Float.floatToIntBits(cost) << 32) | e;
+      }
+      Arrays.sort(keys);
+
+      for (var v = 0; v < vertexCount; v++) {
+        remap[v] = v;
+      }
+      Arrays.fill(locked, false);
+      var removed = 0;
+      for (var key : keys) {
+        if (triangleCount - removed <= targetTriangles) {
+          break;
+        }
+        var e = (int) key;
+        var from = edgeFrom[e];
+        var to = edgeTo[e];
+        if (locked[from] || locked[to] || flips(positions, indexes, adjacency, offsets, from, to)) {
+          continue;
+        }
+
+        remap[from] = to;
+        for (var k = 0; k < 10; k++) {
+          quadrics[to * 10 + k] += quadrics[from * 10 + k];
+        }
+        // every triangle around from changes shape, none of their corners may move again in
+        // this pass or the flip test above would have looked at stale positions
+        for (var i = offsets[from]; i < offsets[from + 1]; i++) {
+          var t = adjacency[i] * 3;
+          locked[indexes[t]] = true;
+          locked[indexes[t + 1]] = true;
+          locked[indexes[t + 2]] = true;
+          if (indexes[t] == to || indexes[t + 1] == to || indexes[t + 2] == to) {
+            removed++;
+          }
+        }
+      }
+      if (removed == 0) {
+        break;
+      }
+
+      var write = 0;
+      for (var t = 0; t < triangleCount; t++) {
+        var a = remap[indexes[t * 3]];
+        var b = remap[indexes[t * 3 + 1]];
+        var c = remap[indexes[t * 3 + 2]];
+        if (a == b || b == c || a == c) {
+          continue;
+        }
+        indexes[write * 3] = a;
+        indexes[write * 3 + 1] = b;
+        indexes[write * 3 + 2] = c;
+        normalIndexes[write * 3] = normalIndexes[t * 3];
+        normalIndexes[write * 3 + 1] = normalIndexes[t * 3 + 1];
+        normalIndexes[write * 3 + 2] = normalIndexes[t * 3 + 2];
+        if (materialIndexes != null) {
+          System.arraycopy(materialIndexes, t * 3, materialIndexes, write * 3, 3);
+        }
+        write++;
+      }
+      triangleCount = write;
+      indexes = Arrays.copyOf(indexes, triangleCount * 3);
+      normalIndexes = Arrays.copyOf(normalIndexes, triangleCount * 3);
+      if (materialIndexes != null) {
+        materialIndexes = Arrays.copyOf(materialIndexes, triangleCount * 3);
+      }
+    }
+
+    return compact(mesh, indexes, normalIndexes, materialIndexes);
+  }
+
+  private static void addQuadrics(
+      float[] positions, int[] indexes, int[] adjacency, int[] offsets, double[] quadrics) {
+    for (var t = 0; t < indexes.length; t += 3) {
+      var a = indexes[t] * 3;
+      var b = indexes[t + 1] * 3;
+      var c = indexes[t + 2] * 3;
+      var abX = positions[b] - positions[a];
+      var abY = positions[b + 1] - positions[a + 1];
+      var abZ = positions[b + 2] - positions[a + 2];
+      var acX = positions[c] - positions[a];
+      var acY = positions[c + 1] - positions[a + 1];
+      var acZ = positions[c + 2] - positions[a + 2];
+      double x = abY * acZ - abZ * acY;
+      double y = abZ * acX - abX * acZ;
+      double z = abX * acY - abY * acX;
+      var length = Math.sqrt(x * x + y * y + z * z);
+      if (length == 0) {
+        continue;
+      }
+      x /= length;
+      y /= length;
+      z /= length;
+      // area weighted, so a sliver does not outvote the large faces around it
+      var d = -(x * positions[a] + y * positions[a + 1] + z * positions[a + 2]);
+      for (var k = 0; k < 3; k++) {
+        addPlane(quadrics, indexes[t + k], x, y, z, d, length / 2);
+      }
+
+      for (var k = 0; k < 3; k++) {
+        var from = indexes[t + k];
+        var to = indexes[t + (k + 1) % 3];
+        if (!isBorder(indexes, adjacency, offsets, from, to)) {
+          continue;
+        }
+        double edgeX = positions[to * 3] - positions[from * 3];
+        double edgeY = positions[to * 3 + 1] - positions[from * 3 + 1];
+        double edgeZ = positions[to * 3 + 2] - positions[from * 3 + 2];
+        var edgeLength = edgeX * edgeX + edgeY * edgeY + edgeZ * edgeZ;
+        var planeX = edgeY * z - edgeZ * y;
+        var planeY = edgeZ * x - edgeX * z;
+        var planeZ = edgeX * y - edgeY * x;
+        var planeLength = Math.sqrt(planeX * planeX + planeY * planeY + planeZ * planeZ);
+        if (planeLength == 0) {
+          continue;
+        }
+        planeX /= planeLength;
+        planeY /= planeLength;
+        planeZ /= planeLength;
+        var planeD =
+            -(planeX * positions[from * 3]
+                + planeY * positions[from * 3 + 1]
+                + planeZ * positions[from * 3 + 2]);
+        addPlane(quadrics, from, planeX, planeY, planeZ, planeD, BORDER_WEIGHT * edgeLength);
+        addPlane(quadrics, to, planeX, planeY, planeZ, planeD, BORDER_WEIGHT * edgeLength);
+      }
+    }
+  }
+
+  private static boolean isBorder(int[] indexes, int[] adjacency, int[] offsets, int a, int b) {
+    var shared = 0;
+    for (var i = offsets[a]; i < offsets[a + 1]; i++) {
+      var t = adjacency[i] * 3;
+      if (indexes[t] == b || indexes[t + 1] == b || indexes[t + 2] == b) {
+        shared++;
+      }
+    }
+    return shared == 1;
+  }
+
+  private static void addPlane(
+      double[] quadrics, int v, double a, double b, double c, double d, double weight) {
+    var o = v * 10;
+    quadrics[o] += weight * a * a;
+    quadrics[o + 1] += weight * a * b;
+    quadrics[o + 2] += weight * a * c;
+    quadrics[o + 3] += weight * a * d;
+    quadrics[o + 4] += weight * b * b;
+    quadrics[o + 5] += weight * b * c;
+    quadrics[o + 6] += weight * b * d;
+    quadrics[o + 7] += weight * c * c;
+    quadrics[o + 8] += weight * c * d;
+    quadrics[o + 9] += weight * d * d;
+  }
+
+  private static double error(double[] quadrics, int u, int v, float[] positions, int target) {
+    double x = positions[target * 3];
+    double y = positions[target * 3 + 1];
+    double z = positions[target * 3 + 2];
+    return evaluate(quadrics, u * 10, x, y, z) + evaluate(quadrics, v * 10, x, y, z);
+  }
+
+  private static double evaluate(double[] quadrics, int o, double x, double y, double z) {
+    return quadrics[o] * x * x
+        + 2 * quadrics[o + 1] * x * y
+        + 2 * quadrics[o + 2] * x * z
+        + 2 * quadrics[o + 3] * x
+        + quadrics[o + 4] * y * y
+        + 2 * quadrics[o + 5] * y * z
+        + 2 * quadrics[o + 6] * y
+        + quadrics[o + 7] * z * z
+        + 2 * quadrics[o + 8] * z
+        + quadrics[o + 9];
+  }
+
+  private static boolean flips(
+      float[] positions, int[] indexes, int[] adjacency, int[] offsets, int from, int to) {
+    var before = new double[3];
+    var after = new double[3];
+    for (var i = offsets[from]; i < offsets[from + 1]; i++) {
+      var t = adjacency[i] * 3;
+      var a = indexes[t];
+      var b = indexes[t + 1];
+      var c = indexes[t + 2];
+      if (a == to || b == to || c == to) {
+        // collapses into an edge and disappears
+        continue;
+      }
+      if (!normal(positions, a, b, c, before)) {
+        continue;
+      }
+      normal(positions, a == from ? to : a, b == from ? to : b, c == from ? to : c, after);
+      var dot = before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+      var length =
+          Math.sqrt(before[0] * before[0] + before[1] * before[1] + before[2] * before[2])
+              * Math.sqrt(after[0] * after[0] + after[1] * after[1] + after[2] * after[2]);
+      if (dot <= MIN_FLIP_DOT * length) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean normal(float[] positions, int a, int b, int c, double[] dst) {
+    double abX = positions[b * 3] - positions[a * 3];
+    double abY = positions[b * 3 + 1] - positions[a * 3 + 1];
+    double abZ = positions[b * 3 + 2] - positions[a * 3 + 2];
+    double acX = positions[c * 3] - positions[a * 3];
+    double acY = positions[c * 3 + 1] - positions[a * 3 + 1];
+    double acZ = positions[c * 3 + 2] - positions[a * 3 + 2];
+    dst[0] = abY * acZ - abZ * acY;
+    dst[1] = abZ * acX - abX * acZ;
+    dst[2] = abX * acY - abY * acX;
+    return dst[0] != 0 || dst[1] != 0 || dst[2] != 0;
+  }
+
+  // the surviving corners keep their uvs too, they are stored per normal of the welded source
+  private static MeshBuffer compact(
+      MeshBuffer mesh, int[] indexes, int[] normalIndexes, int[] materialIndexes) {
+    var surface = mesh.surface();
+    var uvs = new FloatArrayList(surface != null ? indexes.length : 0);
+    var vertexMap = new int[mesh.vertexCount()];
+    var normalMap = new int[mesh.normalCount()];
+    Arrays.fill(vertexMap, -1);
+    Arrays.fill(normalMap, -1);
+    var positions = new FloatArrayList(indexes.length);
+    var normals = new FloatArrayList(indexes.length);
+    var vertexIndexes = new int[indexes.length];
+    var newNormalIndexes = new int[indexes.length];
+    for (var i = 0; i < indexes.length; i++) {
+      var v = indexes[i];
+      if (vertexMap[v] < 0) {
+        vertexMap[v] = positions.size() / 3;
+        positions.add(
+            mesh.positions()[v * 3], mesh.positions()[v * 3 + 1], mesh.positions()[v * 3 + 2]);
+      }
+      vertexIndexes[i] = vertexMap[v];
+
+      var n = normalIndexes[i];
+      if (normalMap[n] < 0) {
+        normalMap[n] = normals.size() / 3;
+        normals.add(mesh.normals()[n * 3], mesh.normals()[n * 3 + 1], mesh.normals()[n * 3 + 2]);
+        if (surface != null) {
+          uvs.add(surface.uvs()[n * 2]);
+          uvs.add(surface.uvs()[n * 2 + 1]);
+        }
+      }
+      newNormalIndexes[i] = normalMap[n];
+    }
+    var positionArray = positions.toArray();
+    var newSurface =
+        surface != null
+            ? surface.withCorners(uvs.toArray(), newNormalIndexes, materialIndexes)
+            : null;
+    return new MeshBuffer(
+        positionArray,
+        normals.toArray(),
+        vertexIndexes,
+        newNormalIndexes,
+        MeshBounds.of(positionArray),
+        null,
+        newSurface);
+  }
+}
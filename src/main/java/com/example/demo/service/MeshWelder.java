@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.MeshSurface;
+import java.util.Arrays;
+
+public class MeshWelder {
+
+  /**
+   * Turns every distinct (position, normal, uv) index triple into one vertex, so positions,
+   * normals and uvs line up and a single index buffer addresses all of them. Per-vertex work such
+   * as Gouraud lighting is then done once for every corner that shares the triple.
+   */
+  public static MeshBuffer weld(MeshBuffer mesh) {
+    var vertexIndexes = mesh.vertexIndexes();
+    var normalIndexes = mesh.normalIndexes();
+    var surface = mesh.surface();
+    var uvIndexes = surface != null ? surface.uvIndexes() : null;
+    var table = new int[Integer.highestOneBit(Math.max(vertexIndexes.length, 1) * 2) * 2];
+    var mask = table.length - 1;
+    Arrays.fill(table, -1);
+
+    var triples = new int[vertexIndexes.length * 3];
+    var indexes = new int[vertexIndexes.length];
+    var count = 0;
+    for (var i = 0; i < vertexIndexes.length; i++) {
+      var vertex = vertexIndexes[i];
+      var normal = normalIndexes[i];
+      var uv = uvIndexes != null ? uvIndexes[i] : -1;
+      var hash = vertex * 73856093 ^ normal * 19349663 ^ uv * 83492791;
+      var slot = (hash ^ (hash >>> 16)) & mask;
+      while (table[slot] >= 0 && !matches(triples, table[slot], vertex, normal, uv)) {
+        slot = (slot + 1) & mask;
+      }
+      if (table[slot] < 0) {
+        table[slot] = count;
+        triples[count * 3] = vertex;
+        triples[count * 3 + 1] = normal;
+        triples[count * 3 + 2] = uv;
+        count++;
+      }
+      indexes[i] = table[slot];
+    }
+
+    var sourcePositions = mesh.positions();
+    var sourceNormals = mesh.normals();
+    var positions = new float[count * 3];
+    var normals = new float[count * 3];
+    for (var v = 0; v < count; v++) {
+      System.arraycopy(sourcePositions, triples[v * 3] * 3, positions, v * 3, 3);
+      System.arraycopy(sourceNormals, triples[v * 3 + 1] * 3, normals, v * 3, 3);
+    }
+
+    MeshSurface welded = null;
+    if (surface != null) {
+      // corners without a vt line sample the texture at the origin
+      var sourceUvs = surface.uvs();
+      var uvs = new float[count * 2];
+      for (var v = 0; v < count; v++) {
+        var uv = triples[v * 3 + 2];
+        if (uv >= 0) {
+          System.arraycopy(sourceUvs, uv * 2, uvs, v * 2, 2);
+        }
+      }
+      welded = surface.withCorners(uvs, indexes, surface.materialIndexes());
+    }
+    return new MeshBuffer(positions, normals, indexes, indexes, mesh.bounds(), null, welded);
+  }
+
+  private static boolean matches(int[] triples, int v, int vertex, int normal, int uv) {
+    return triples[v * 3] == vertex && triples[v * 3 + 1] == normal && triples[v * 3 + 2] == uv;
+  }
+}
@@ -0,0 +1,405 @@
+package com.example.demo.service;
+
+import com.example.demo.model.MeshBounds;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.MeshSurface;
+import com.example.demo.model.Meshlets;
+import com.example.demo.util.FloatArrayList;
+import com.example.demo.util.IntArrayList;
+import java.util.Arrays;
+
+public class MeshletBuilder {
+
+  public static final int MIN_TRIANGLES = 64;
+  public static final int MAX_TRIANGLES = 128;
+  public static final int MAX_VERTEXES = 128;
+
+  // past MIN_TRIANGLES a meshlet stops growing once its best neighbour bends further than this
+  // away from the average normal, which keeps the cones narrow enough to be rejected
+  private static final float MIN_NORMAL_DOT = 0.7f;
+
+  // how many of the following triangles are searched for the nearest unassigned one when a
+  // meshlet runs out of connected neighbours before reaching MIN_TRIANGLES
+  private static final int NEAREST_WINDOW = 512;
+
+  // meshlets whose normals spread wider than this never pass the cone test, see meshoptimizer
+  private static final float MIN_CONE_DOT = 0.1f;
+
+  public static MeshBuffer build(MeshBuffer mesh) {
+    var triangleCount = mesh.triangleCount();
+    var sourcePositions = mesh.positions();
+    var sourceNormals = mesh.normals();
+    var vertexIndexes = mesh.vertexIndexes();
+    var normalIndexes = mesh.normalIndexes();
+    var faceNormals = faceNormals(mesh);
+    var positionIds = positionIds(sourcePositions, mesh.vertexCount());
+    var adjacencyOffsets = new int[mesh.vertexCount() + 1];
+    var adjacency = vertexTriangles(vertexIndexes, positionIds, adjacencyOffsets);
+
+    var positions = new FloatArrayList(sourcePositions.length);
+    var normals = new FloatArrayList(sourceNormals.length);
+    var newVertexIndexes = new int[vertexIndexes.length];
+    var newNormalIndexes = new int[normalIndexes.length];
+    // uvs line up with the normals of a welded mesh and move with them
+    var surface = mesh.surface();
+    var sourceUvs = surface != null ? surface.uvs() : null;
+    var materialIndexes = surface != null ? surface.materialIndexes() : null;
+    var uvs = new FloatArrayList(sourceUvs != null ? sourceUvs.length : 0);
+    var newMaterialIndexes = materialIndexes != null ? new int[materialIndexes.length] : null;
+    var vertexOffsets = new IntArrayList(triangleCount / 64 + 2);
+    var normalOffsets = new IntArrayList(triangleCount / 64 + 2);
+    var triangleOffsets = new IntArrayList(triangleCount / 64 + 2);
+    var spheres = new FloatArrayList(triangleCount / 16 + 16);
+    var cones = new FloatArrayList(triangleCount / 16 + 16);
+
+    var assigned = new boolean[triangleCount];
+    var queued = new int[triangleCount];
+    var vertexStamp = new int[mesh.vertexCount()];
+    var vertexMapStamp = new int[mesh.vertexCount()];
+    var vertexMap = new int[mesh.vertexCount()];
+    var normalStamp = new int[mesh.normalCount()];
+    var normalMap = new int[mesh.normalCount()];
+    Arrays.fill(queued, -1);
+    Arrays.fill(vertexStamp, -1);
+    Arrays.fill(vertexMapStamp, -1);
+    Arrays.fill(normalStamp, -1);
+
+    var frontier = new IntArrayList(MAX_TRIANGLES * 4);
+    var cluster = new int[MAX_TRIANGLES];
+    var written = 0;
+    var meshlet = 0;
+
+    for (var seed = 0; seed < triangleCount; seed++) {
+      if (assigned[seed]) {
+        continue;
+      }
+
+      var size = 0;
+      var vertexes = 0;
+      var axisX = 0f;
+      var axisY = 0f;
+      var axisZ = 0f;
+      var centerX = 0f;
+      var centerY = 0f;
+      var centerZ = 0f;
+      frontier.clear();
+      frontier.add(seed);
+      queued[seed] = meshlet;
+
+      var head = 0;
+      while (size < MAX_TRIANGLES) {
+        while (head < frontier.size() && assigned[frontier.get(head)]) {
+          head++;
+        }
+
+        // most coherent neighbour first, ties keep breadth-first order so clusters stay compact
+        var best = -1;
+        var bestDot = -Float.MAX_VALUE;
+        var full = false;
+        var axisLength = (float) Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        for (var i = head; i < frontier.size(); i++) {
+          var t = frontier.get(i);
+          if (assigned[t]) {
+            continue;
+          }
+          if (vertexes + newVertexes(vertexIndexes, vertexStamp, t, meshlet) > MAX_VERTEXES) {
+            full = true;
+            continue;
+          }
+          var dot =
+              axisLength == 0
+                  ? 1
+                  : (faceNormals[t * 3] * axisX
+                          + faceNormals[t * 3 + 1] * axisY
+                          + faceNormals[t * 3 + 2] * axisZ)
+                      / axisLength;
+          if (dot > bestDot) {
+            best = t;
+            bestDot = dot;
+          }
+        }
+        if (best < 0 && !full && size < MIN_TRIANGLES) {
+          var nearest =
+              nearestUnassigned(
+                  mesh, assigned, queued, meshlet, seed, centerX / size, centerY / size, centerZ / size);
+          if (nearest >= 0) {
+            queued[nearest] = meshlet;
+            frontier.add(nearest);
+            continue;
+          }
+        }
+        if (best < 0 || (size >= MIN_TRIANGLES && bestDot < MIN_NORMAL_DOT)) {
+          break;
+        }
+
+        assigned[best] = true;
+        cluster[size++] = best;
+        axisX += faceNormals[best * 3];
+        axisY += faceNormals[best * 3 + 1];
+        axisZ += faceNormals[best * 3 + 2];
+        centerX += centroid(sourcePositions, vertexIndexes, best, 0);
+        centerY += centroid(sourcePositions, vertexIndexes, best, 1);
+        centerZ += centroid(sourcePositions, vertexIndexes, best, 2);
+        for (var k = 0; k < 3; k++) {
+          var v = vertexIndexes[best * 3 + k];
+          if (vertexStamp[v] != meshlet) {
+            vertexStamp[v] = meshlet;
+            vertexes++;
+          }
+          var id = positionIds[v];
+          for (var a = adjacencyOffsets[id]; a < adjacencyOffsets[id + 1]; a++) {
+            var neighbour = adjacency[a];
+            if (!assigned[neighbour] && queued[neighbour] != meshlet) {
+              queued[neighbour] = meshlet;
+              frontier.add(neighbour);
+            }
+          }
+        }
+      }
+
+      vertexOffsets.add(positions.size() / 3);
+      normalOffsets.add(normals.size() / 3);
+      triangleOffsets.add(written / 3);
+      for (var i = 0; i < size; i++) {
+        var t = cluster[i];
+        for (var k = 0; k < 3; k++) {
+          var v = vertexIndexes[t * 3 + k];
+          if (vertexMapStamp[v] != meshlet) {
+            vertexMapStamp[v] = meshlet;
+            vertexMap[v] = positions.size() / 3;
+            positions.add(
+                sourcePositions[v * 3], sourcePositions[v * 3 + 1], sourcePositions[v * 3 + 2]);
+          }
+          var n = normalIndexes[t * 3 + k];
+          if (normalStamp[n] != meshlet) {
+            normalStamp[n] = meshlet;
+            normalMap[n] = normals.size() / 3;
+            normals.add(sourceNormals[n * 3], sourceNormals[n * 3 + 1], sourceNormals[n * 3 + 2]);
+            if (sourceUvs != null) {
+              uvs.add(sourceUvs[n * 2]);
+              uvs.add(sourceUvs[n * 2 + 1]);
+            }
+          }
+          newVertexIndexes[written] = vertexMap[v];
+          newNormalIndexes[written] = normalMap[n];
+          if (newMaterialIndexes != null) {
+            newMaterialIndexes[written] = materialIndexes[t * 3 + k];
+          }
+          written++;
+        }
+      }
+      addSphere(positions, vertexOffsets.get(meshlet), positions.size() / 3, spheres);
+      addCone(faceNormals, cluster, size, cones);
+      meshlet++;
+    }
+    vertexOffsets.add(positions.size() / 3);
+    normalOffsets.add(normals.size() / 3);
+    triangleOffsets.add(written / 3);
+
+    var meshlets =
+        new Meshlets(
+            vertexOffsets.toArray(),
+            normalOffsets.toArray(),
+            triangleOffsets.toArray(),
+            spheres.toArray(),
+            cones.toArray());
+    var newSurface =
+        surface != null
+            ? surface.withCorners(uvs.toArray(), newNormalIndexes, newMaterialIndexes)
+            : null;
+    return new MeshBuffer(
+        positions.toArray(),
+        normals.toArray(),
+        newVertexIndexes,
+        newNormalIndexes,
+        mesh.bounds(),
+        meshlets,
+        newSurface);
+  }
+
+  private static int nearestUnassigned(
+      MeshBuffer mesh,
+      boolean[] assigned,
+      int[] queued,
+      int meshlet,
+      int seed,
+      float x,
+      float y,
+      float z) {
+    var positions = mesh.positions();
+    var vertexIndexes = mesh.vertexIndexes();
+    var res = -1;
+    var resDistance = Float.MAX_VALUE;
+    var end = Math.min(mesh.triangleCount(), seed + 1 + NEAREST_WINDOW);
+    for (var t = seed + 1; t < end; t++) {
+      if (assigned[t] || queued[t] == meshlet) {
+        continue;
+      }
+      var dx = centroid(positions, vertexIndexes, t, 0) - x;
+      var dy = centroid(positions, vertexIndexes, t, 1) - y;
+      var dz = centroid(positions, vertexIndexes, t, 2) - z;
+      var distance = dx * dx + dy * dy + dz * dz;
+      if (distance < resDistance) {
+        res = t;
+        resDistance = distance;
+      }
+    }
+    return res;
+  }
+
+  private static float centroid(float[] positions, int[] vertexIndexes, int t, int axis) {
+    return (positions[vertexIndexes[t * 3] * 3 + axis]
+            + positions[vertexIndexes[t * 3 + 1] * 3 + axis]
+            + positions[vertexIndexes[t * 3 + 2] * 3 + axis])
+        / 3;
+  }
+
+  private static int newVertexes(int[] vertexIndexes, int[] vertexStamp, int t, int meshlet) {
+    var res = 0;
+    for (var k = 0; k < 3; k++) {
+      if (vertexStamp[vertexIndexes[t * 3 + k]] != meshlet) {
+        res++;
+      }
+    }
+    return res;
+  }
+
+  private static float[] faceNormals(MeshBuffer mesh) {
+    var positions = mesh.positions();
+    var vertexIndexes = mesh.vertexIndexes();
+    var res = new float[mesh.triangleCount() * 3];
+    for (var t = 0; t < mesh.triangleCount(); t++) {
+      var a = vertexIndexes[t * 3] * 3;
+      var b = vertexIndexes[t * 3 + 1] * 3;
+      var c = vertexIndexes[t * 3 + 2] * 3;
+      var abX = positions[b] - positions[a];
+      var abY = positions[b + 1] - positions[a + 1];
+      var abZ = positions[b + 2] - positions[a + 2];
+      var acX = positions[c] - positions[a];
+      var acY = positions[c + 1] - positions[a + 1];
+      var acZ = positions[c + 2] - positions[a + 2];
+      var x = abY * acZ - abZ * acY;
+      var y = abZ * acX - abX * acZ;
+      var z = abX * acY - abY * acX;
+      var length = (float) Math.sqrt(x * x + y * y + z * z);
+      if (length > 0) {
+        res[t * 3] = x / length;
+        res[t * 3 + 1] = y / length;
+        res[t * 3 + 2] = z / length;
+      }
+    }
+    return res;
+  }
+
+  // OBJ exports split vertices along every seam, so clusters grow across shared positions rather
+  // than shared indexes or they stop at the first uv or smoothing-group border
+  static int[] positionIds(float[] positions, int vertexCount) {
+    var table = new int[Integer.highestOneBit(Math.max(vertexCount, 1) * 2) * 2];
+    var mask = table.length - 1;
+    Arrays.fill(table, -1);
+    var ids = new int[vertexCount];
+    for (var v = 0; v < vertexCount; v++) {
+      var x = positions[v * 3];
+      var y = positions[v * 3 + 1];
+      var z = positions[v * 3 + 2];
+      var hash =
+          (Float.floatToIntBits(x) * 73856093)
+              ^ (Float.floatToIntBits(y) * 19349663)
+              ^ (Float.floatToIntBits(z) * 83492791);
+      var slot = (hash ^ (hash >>> 16)) & mask;
+      while (true) {
+        var other = table[slot];
+        if (other < 0) {
+          table[slot] = v;
+          ids[v] = v;
+          break;
+        }
+        if (positions[other * 3] == x
+            && positions[other * 3 + 1] == y
+            && positions[other * 3 + 2] == z) {
+          ids[v] = other;
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+    return ids;
+  }
+
+  static int[] vertexTriangles(int[] vertexIndexes, int[] positionIds, int[] offsets) {
+    for (var index : vertexIndexes) {
+      offsets[positionIds[index] + 1]++;
+    }
+    for (var v = 0; v < offsets.length - 1; v++) {
+      offsets[v + 1] += offsets[v];
+    }
+    var fill = Arrays.copyOf(offsets, offsets.length - 1);
+    var res = new int[vertexIndexes.length];
+    for (var i = 0; i < vertexIndexes.length; i++) {
+      res[fill[positionIds[vertexIndexes[i]]]++] = i / 3;
+    }
+    return res;
+  }
+
+  private static void addSphere(
+      FloatArrayList positions, int from, int to, FloatArrayList spheres) {
+    var minX = Float.MAX_VALUE;
+    var minY = Float.MAX_VALUE;
+    var minZ = Float.MAX_VALUE;
+    var maxX = -Float.MAX_VALUE;
+    var maxY = -Float.MAX_VALUE;
+    var maxZ = -Float.MAX_VALUE;
+    for (var v = from; v < to; v++) {
+      var x = positions.get(v * 3);
+      var y = positions.get(v * 3 + 1);
+      var z = positions.get(v * 3 + 2);
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      minZ = Math.min(minZ, z);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+      maxZ = Math.max(maxZ, z);
+    }
+    var bounds = new MeshBounds(minX, minY, minZ, maxX, maxY, maxZ);
+    var radius = 0f;
+    for (var v = from; v < to; v++) {
+      var dx = positions.get(v * 3) - bounds.centerX();
+      var dy = positions.get(v * 3 + 1) - bounds.centerY();
+      var dz = positions.get(v * 3 + 2) - bounds.centerZ();
+      radius = Math.max(radius, dx * dx + dy * dy + dz * dz);
+    }
+    spheres.add(bounds.centerX(), bounds.centerY(), bounds.centerZ());
+    spheres.add((float) Math.sqrt(radius));
+  }
+
+  private static void addCone(float[] faceNormals, int[] cluster, int size, FloatArrayList cones) {
+    var x = 0f;
+    var y = 0f;
+    var z = 0f;
+    for (var i = 0; i < size; i++) {
+      x += faceNormals[cluster[i] * 3];
+      y += faceNormals[cluster[i] * 3 + 1];
+      z += faceNormals[cluster[i] * 3 + 2];
+    }
+    var length = (float) Math.sqrt(x * x + y * y + z * z);
+    if (length == 0) {
+      cones.add(0, 0, 0);
+      cones.add(1);
+      return;
+    }
+    x /= length;
+    y /= length;
+    z /= length;
+
+    var minDot = 1f;
+    for (var i = 0; i < size; i++) {
+      var t = cluster[i] * 3;
+      if (faceNormals[t] != 0 || faceNormals[t + 1] != 0 || faceNormals[t + 2] != 0) {
+        var dot = faceNormals[t] * x + faceNormals[t + 1] * y + faceNormals[t + 2] * z;
+        minDot = Math.min(minDot, dot);
+      }
+    }
+    cones.add(x, y, z);
+    cones.add(minDot <= MIN_CONE_DOT ? 1 : (float) Math.sqrt(1 - minDot * minDot));
+  }
+}
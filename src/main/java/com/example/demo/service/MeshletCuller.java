@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.Meshlets;
+import com.example.demo.model.TriangleBuffer;
+import com.example.demo.service.FrameProfiler.Counter;
+
+final class MeshletCuller {
+
+  private static final int PLANES = 6;
+  private static final double[] NONE = new double[4];
+
+  private final double[] planes = new double[PLANES * 4];
+  // the columns of the matrix the planes come from, kept so that setting them allocates nothing
+  private final double[] columnX = new double[4];
+  private final double[] columnY = new double[4];
+  private final double[] columnZ = new double[4];
+  private final double[] columnW = new double[4];
+
+  // the planes come straight from the model-view-projection matrix and the eye is moved into
+  // model space, so neither the spheres nor the cones are transformed per meshlet
+  void cull(
+      Meshlets meshlets,
+      Matrix4x4 matrix,
+      double eyeX,
+      double eyeY,
+      double eyeZ,
+      TriangleBuffer res) {
+    setPlanes(matrix);
+    var spheres = meshlets.spheres();
+    var cones = meshlets.cones();
+    var triangleOffsets = meshlets.triangleOffsets();
+    var count = meshlets.count();
+    var frustumCulled = 0;
+    var coneCulled = 0;
+    var frustumTriangles = 0;
+    var coneTriangles = 0;
+
+    for (var m = 0; m < count; m++) {
+      var x = spheres[m * 4];
+      var y = spheres[m * 4 + 1];
+      var z = spheres[m * 4 + 2];
+      var radius = spheres[m * 4 + 3];
+      if (isOutside(x, y, z, radius)) {
+        frustumCulled++;
+        frustumTriangles += triangleOffsets[m + 1] - triangleOffsets[m];
+        continue;
+      }
+
+      var dx = x - eyeX;
+      var dy = y - eyeY;
+      var dz = z - eyeZ;
+      var distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+      var along = dx * cones[m * 4] + dy * cones[m * 4 + 1] + dz * cones[m * 4 + 2];
+      if (along >= cones[m * 4 + 3] * distance + radius) {
+        coneCulled++;
+        coneTriangles += triangleOffsets[m + 1] - triangleOffsets[m];
+        continue;
+      }
+      res.addVisibleMeshlet(m, count);
+    }
+
+    FrameProfiler.add(Counter.MESHLETS_FRUSTUM_CULLED, frustumCulled);
+    FrameProfiler.add(Counter.MESHLETS_CONE_CULLED, coneCulled);
+    FrameProfiler.add(Counter.TRIANGLES_FRUSTUM_CULLED, frustumTriangles);
+    FrameProfiler.add(Counter.TRIANGLES_BACKFACE_CULLED, coneTriangles);
+  }
+
+  /** Tests one sphere against the frustum, for culling whole instances before their meshlets. */
+  boolean isVisible(Matrix4x4 matrix, double x, double y, double z, double radius) {
+    setPlanes(matrix);
+    return !isOutside(x, y, z, radius);
+  }
+
+  private boolean isOutside(double x, double y, double z, double radius) {
+    for (var p = 0; p < planes.length; p += 4) {
+      if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void setPlanes(Matrix4x4 m) {
+    setColumn(columnX, m.getM11(), m.getM21(), m.getM31(), m.getM41());
+    setColumn(columnY, m.getM12(), m.getM22(), m.getM32(), m.getM42());
+    setColumn(columnZ, m.getM13(), m.getM23(), m.getM33(), m.getM43());
+    setColumn(columnW, m.getM14(), m.getM24(), m.getM34(), m.getM44());
+    setPlane(0, columnW, columnX, 1);
+    setPlane(1, columnW, columnX, -1);
+    setPlane(2, columnW, columnY, 1);
+    setPlane(3, columnW, columnY, -1);
+    setPlane(4, NONE, columnZ, 1);
+    setPlane(5, columnW, columnZ, -1);
+  }
+
+  private static void setColumn(double[] column, double a, double b, double c, double d) {
+    column[0] = a;
+    column[1] = b;
+    column[2] = c;
+    column[3] = d;
+  }
+
+  private void setPlane(int plane, double[] base, double[] column, double sign) {
+    var a = base[0] + sign * column[0];
+    var b = base[1] + sign * column[1];
+    var c = base[2] + sign * column[2];
+    var d = base[3] + sign * column[3];
+    var length = Math.sqrt(a * a + b * b + c * c);
+    planes[plane * 4] = a / length;
+    planes[plane * 4 + 1] = b / length;
+    planes[plane * 4 + 2] = c / length;
+    planes[plane * 4 + 3] = d / length;
+  }
+}
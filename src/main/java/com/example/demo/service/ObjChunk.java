@@ -0,0 +1,277 @@
+package com.example.demo.service;
+
+import com.example.demo.util.FloatArrayList;
+import com.example.demo.util.IntArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class ObjChunk {
+
+  private static final double[] POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  final FloatArrayList positions = new FloatArrayList();
+  final FloatArrayList normals = new FloatArrayList();
+  final FloatArrayList uvs = new FloatArrayList();
+  final IntArrayList vertexIndexes = new IntArrayList();
+  final IntArrayList normalIndexes = new IntArrayList();
+  final IntArrayList uvIndexes = new IntArrayList();
+  final IntArrayList relativeVertexSlots = new IntArrayList(16);
+  final IntArrayList relativeNormalSlots = new IntArrayList(16);
+  final IntArrayList relativeUvSlots = new IntArrayList(16);
+
+  // usemtl can sit in any chunk, the merge carries the current material across chunk borders
+  final List<String> materialLibraries = new ArrayList<>();
+  final List<String> materialNames = new ArrayList<>();
+  final IntArrayList materialStarts = new IntArrayList(16);
+
+  private final ByteBuffer buffer;
+  private final int limit;
+  private int position;
+
+  private int[] cornerVertexes = new int[8];
+  private int[] cornerNormals = new int[8];
+  private int[] cornerUvs = new int[8];
+  private boolean[] cornerVertexRelative = new boolean[8];
+  private boolean[] cornerNormalRelative = new boolean[8];
+  private boolean[] cornerUvRelative = new boolean[8];
+
+  ObjChunk(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.limit = buffer.limit();
+  }
+
+  ObjChunk parse() {
+    while (position < limit) {
+      skipBlanks();
+      if (position >= limit) {
+        break;
+      }
+      var first = buffer.get(position);
+      var second = position + 1 < limit ? buffer.get(position + 1) : (byte) '\n';
+      if (first == 'v' && isBlank(second)) {
+        position++;
+        positions.add(parseFloat(), parseFloat(), parseFloat());
+      } else if (first == 'v' && second == 'n') {
+        position += 2;
+        normals.add(parseFloat(), parseFloat(), parseFloat());
+      } else if (first == 'v' && second == 't') {
+        position += 2;
+        uvs.add(parseFloat());
+        uvs.add(parseFloat());
+      } else if (first == 'f' && isBlank(second)) {
+        position++;
+        parseFace();
+      } else if (isKeyword("usemtl")) {
+        materialStarts.add(vertexIndexes.size());
+        materialNames.add(parseRest());
+      } else if (isKeyword("mtllib")) {
+        materialLibraries.add(parseRest());
+      }
+      skipLine();
+    }
+    return this;
+  }
+
+  private void parseFace() {
+    var corners = 0;
+    while (true) {
+      skipBlanks();
+      if (position >= limit || isLineEnd(buffer.get(position))) {
+        break;
+      }
+      if (corners == cornerVertexes.length) {
+        growCorners();
+      }
+
+      var vertex = parseInt();
+      cornerVertexRelative[corners] = vertex < 0;
+      cornerVertexes[corners] = vertex < 0 ? positions.size() / 3 + vertex : vertex - 1;
+
+      var normal = 0;
+      var uv = 0;
+      if (position < limit && buffer.get(position) == '/') {
+        position++;
+        if (position < limit && buffer.get(position) != '/') {
+          uv = parseInt();
+        }
+        if (position < limit && buffer.get(position) == '/') {
+          position++;
+          normal = parseInt();
+        }
+      }
+      skipToken();
+      cornerNormalRelative[corners] = normal < 0;
+      cornerNormals[corners] = normal < 0 ? normals.size() / 3 + normal : normal - 1;
+      cornerUvRelative[corners] = uv < 0;
+      cornerUvs[corners] = uv < 0 ? uvs.size() / 2 + uv : uv - 1;
+      corners++;
+    }
+
+    for (var i = 0; i < corners - 2; i++) {
+      addCorner(0);
+      addCorner(i + 1);
+      addCorner(i + 2);
+    }
+  }
+
+  private void addCorner(int corner) {
+    if (cornerVertexRelative[corner]) {
+      relativeVertexSlots.add(vertexIndexes.size());
+    }
+    if (cornerNormalRelative[corner]) {
+      relativeNormalSlots.add(normalIndexes.size());
+    }
+    if (cornerUvRelative[corner]) {
+      relativeUvSlots.add(uvIndexes.size());
+    }
+    vertexIndexes.add(cornerVertexes[corner]);
+    normalIndexes.add(cornerNormals[corner]);
+    uvIndexes.add(cornerUvs[corner]);
+  }
+
+  private void growCorners() {
+    var size = cornerVertexes.length * 2;
+    cornerVertexes = Arrays.copyOf(cornerVertexes, size);
+    cornerNormals = Arrays.copyOf(cornerNormals, size);
+    cornerUvs = Arrays.copyOf(cornerUvs, size);
+    cornerVertexRelative = Arrays.copyOf(cornerVertexRelative, size);
+    cornerNormalRelative = Arrays.copyOf(cornerNormalRelative, size);
+    cornerUvRelative = Arrays.copyOf(cornerUvRelative, size);
+  }
+
+  private int parseInt() {
+    var negative = false;
+    if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+      negative = buffer.get(position) == '-';
+      position++;
+    }
+    var value = 0;
+    while (position < limit) {
+      var c = buffer.get(position);
+      if (c < '0' || c > '9') {
+        break;
+      }
+      value = value * 10 + (c - '0');
+      position++;
+    }
+    return negative ? -value : value;
+  }
+
+  private float parseFloat() {
+    skipBlanks();
+    var negative = false;
+    if (position < limit) {
+      var c = buffer.get(position);
+      if (c == '-' || c == '+') {
+        negative = c == '-';
+        position++;
+      }
+    }
+
+    var mantissa = 0L;
+    var digits = 0;
+    var exponent = 0;
+    var fraction = false;
+    while (position < limit) {
+      var c = buffer.get(position);
+      if (c >= '0' && c <= '9') {
+        if (digits < 18) {
+          mantissa = mantissa * 10 + (c - '0');
+          if (mantissa != 0) {
+            digits++;
+          }
+          if (fraction) {
+            exponent--;
+          }
+        } else if (!fraction) {
+          exponent++;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+      position++;
+    }
+
+    if (position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+      position++;
+      exponent += parseInt();
+    }
+
+    double value = mantissa;
+    if (exponent < 0) {
+      value = -exponent < POW10.length ? value / POW10[-exponent] : value * Math.pow(10, exponent);
+    } else if (exponent > 0) {
+      value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+    }
+    return (float) (negative ? -value : value);
+  }
+
+  private boolean isKeyword(String keyword) {
+    var end = position + keyword.length();
+    if (end >= limit || !isBlank(buffer.get(end))) {
+      return false;
+    }
+    for (var i = 0; i < keyword.length(); i++) {
+      if (buffer.get(position + i) != keyword.charAt(i)) {
+        return false;
+      }
+    }
+    position = end;
+    return true;
+  }
+
+  // the trimmed remainder of the line, names may contain blanks
+  private String parseRest() {
+    skipBlanks();
+    var start = position;
+    var end = start;
+    while (position < limit && !isLineEnd(buffer.get(position))) {
+      if (!isBlank(buffer.get(position))) {
+        end = position + 1;
+      }
+      position++;
+    }
+    var bytes = new byte[end - start];
+    buffer.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void skipBlanks() {
+    while (position < limit && isBlank(buffer.get(position))) {
+      position++;
+    }
+  }
+
+  private void skipToken() {
+    while (position < limit) {
+      var c = buffer.get(position);
+      if (isBlank(c) || isLineEnd(c)) {
+        break;
+      }
+      position++;
+    }
+  }
+
+  private void skipLine() {
+    while (position < limit && buffer.get(position) != '\n') {
+      position++;
+    }
+    position++;
+  }
+
+  private static boolean isBlank(byte c) {
+    return c == ' ' || c == '\t';
+  }
+
+  private static boolean isLineEnd(byte c) {
+    return c == '\n' || c == '\r';
+  }
+}
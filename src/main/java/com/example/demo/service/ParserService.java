@@ -1,62 +1,200 @@
 package com.example.demo.service;
 
-import com.example.demo.model.Result;
-import com.example.demo.model.Triangle;
-import com.example.demo.model.TriangleIndexes;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import com.example.demo.model.MeshBounds;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.MeshSurface;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.stream.IntStream;
 
 public class ParserService {
 
-    public static Result parse(List<String> content) {
-        var vertexes = new ArrayList<Vector3D>();
-        var normals = new ArrayList<Vector3D>();
-        var triangles = new ArrayList<Triangle>();
-
-        for (var line : content) {
-            var words = line.split(" +");
-            if (words.length == 0) continue;
-            switch (words[0]) {
-                case "v" -> {
-                    var x = Float.parseFloat(words[1]);
-                    var y = Float.parseFloat(words[2]);
-                    var z = Float.parseFloat(words[3]);
-                    vertexes.add(new Vector3D(x, y, z));
-                }
-                case "vn" -> {
-                    var x = Float.parseFloat(words[1]);
-                    var y = Float.parseFloat(words[2]);
-                    var z = Float.parseFloat(words[3]);
-                    normals.add(new Vector3D(x, y, z));
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 64 << 20;
+
+    public static MeshBuffer parse(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var size = channel.size();
+            var boundaries = splitAtLines(channel, size);
+
+            var chunks = IntStream.range(0, boundaries.length - 1)
+                    .parallel()
+                    .mapToObj(i -> parseChunk(channel, boundaries[i], boundaries[i + 1]))
+                    .toArray(ObjChunk[]::new);
+            return merge(chunks, path);
+        }
+    }
+
+    private static long[] splitAtLines(FileChannel channel, long size) throws IOException {
+        var parallelism = Runtime.getRuntime().availableProcessors();
+        var chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4L)));
+
+        var boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        var probe = ByteBuffer.allocate(4096);
+        var start = chunkSize;
+        while (start < size) {
+            var end = findLineEnd(channel, start, size, probe);
+            if (end >= size) {
+                break;
+            }
+            boundaries.add(end);
+            start = end + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long findLineEnd(FileChannel channel, long from, long size, ByteBuffer probe)
+            throws IOException {
+        var position = from;
+        while (position < size) {
+            probe.clear();
+            var read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (var i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
                 }
-                case "f" -> {
-                    var argsIndexes = Arrays.stream(words, 1, words.length).toList();
-
-                    for (var i = 0; i < argsIndexes.size() - 2; ++i) {
-                        var indexes = argsIndexes.get(0).split("/");
-                        var triangleIndexes =  new TriangleIndexes[3];
-
-                        triangleIndexes[0] = new TriangleIndexes(
-                                Integer.parseInt(indexes[0]) - 1,
-                                Integer.parseInt(indexes[2]) - 1
-                        );
-
-                        for (int j = 1; j < 3; ++j) {
-                            indexes = argsIndexes.get((j + i) % argsIndexes.size()).split("/");
-                            triangleIndexes[j] = new TriangleIndexes(
-                                    Integer.parseInt(indexes[0]) - 1,
-                                    Integer.parseInt(indexes[2]) - 1
-                            );
-                        }
-
-                        triangles.add(new Triangle(triangleIndexes));
-                    }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static ObjChunk parseChunk(FileChannel channel, long from, long to) {
+        try {
+            return new ObjChunk(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from)).parse();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to map OBJ chunk at " + from, e);
+        }
+    }
+
+    private static MeshBuffer merge(ObjChunk[] chunks, Path path) {
+        var positionsOffsets = new int[chunks.length + 1];
+        var normalsOffsets = new int[chunks.length + 1];
+        var uvsOffsets = new int[chunks.length + 1];
+        var indexesOffsets = new int[chunks.length + 1];
+        for (var i = 0; i < chunks.length; i++) {
+            positionsOffsets[i + 1] = positionsOffsets[i] + chunks[i].positions.size();
+            normalsOffsets[i + 1] = normalsOffsets[i] + chunks[i].normals.size();
+            uvsOffsets[i + 1] = uvsOffsets[i] + chunks[i].uvs.size();
+            indexesOffsets[i + 1] = indexesOffsets[i] + chunks[i].vertexIndexes.size();
+        }
+
+        var positions = new float[positionsOffsets[chunks.length]];
+        var normals = new float[normalsOffsets[chunks.length]];
+        var uvs = new float[uvsOffsets[chunks.length]];
+        var vertexIndexes = new int[indexesOffsets[chunks.length]];
+        var normalIndexes = new int[indexesOffsets[chunks.length]];
+        var uvIndexes = new int[indexesOffsets[chunks.length]];
+
+        IntStream.range(0, chunks.length).parallel().forEach(i -> {
+            var chunk = chunks[i];
+            var indexesOffset = indexesOffsets[i];
+            chunk.positions.copyTo(positions, positionsOffsets[i]);
+            chunk.normals.copyTo(normals, normalsOffsets[i]);
+            chunk.uvs.copyTo(uvs, uvsOffsets[i]);
+            chunk.vertexIndexes.copyTo(vertexIndexes, indexesOffset);
+            chunk.normalIndexes.copyTo(normalIndexes, indexesOffset);
+            chunk.uvIndexes.copyTo(uvIndexes, indexesOffset);
+            for (var j = 0; j < chunk.relativeVertexSlots.size(); j++) {
+                vertexIndexes[indexesOffset + chunk.relativeVertexSlots.get(j)] += positionsOffsets[i] / 3;
+            }
+            for (var j = 0; j < chunk.relativeNormalSlots.size(); j++) {
+                normalIndexes[indexesOffset + chunk.relativeNormalSlots.get(j)] += normalsOffsets[i] / 3;
+            }
+            for (var j = 0; j < chunk.relativeUvSlots.size(); j++) {
+                uvIndexes[indexesOffset + chunk.relativeUvSlots.get(j)] += uvsOffsets[i] / 2;
+            }
+        });
+
+        var fullNormals = addFaceNormals(positions, normals, vertexIndexes, normalIndexes);
+        var surface = uvs.length == 0 ? null : mergeSurface(chunks, indexesOffsets, uvs, uvIndexes, path);
+        return new MeshBuffer(
+                positions, fullNormals, vertexIndexes, normalIndexes, MeshBounds.of(positions), null, surface);
+    }
+
+    /** Numbers the materials in order of first use and gives every corner the one active at its face. */
+    private static MeshSurface mergeSurface(
+            ObjChunk[] chunks, int[] indexesOffsets, float[] uvs, int[] uvIndexes, Path path) {
+        var libraries = new LinkedHashSet<String>();
+        var ids = new LinkedHashMap<String, Integer>();
+        var materialIndexes = new int[uvIndexes.length];
+        var current = -1;
+        var corner = 0;
+        for (var i = 0; i < chunks.length; i++) {
+            var chunk = chunks[i];
+            libraries.addAll(chunk.materialLibraries);
+            for (var j = 0; j < chunk.materialNames.size(); j++) {
+                var start = indexesOffsets[i] + chunk.materialStarts.get(j);
+                Arrays.fill(materialIndexes, corner, start, current);
+                corner = start;
+                current = ids.computeIfAbsent(chunk.materialNames.get(j), name -> ids.size());
+            }
+        }
+        Arrays.fill(materialIndexes, corner, materialIndexes.length, current);
+
+        var files = MaterialService.resolveLibraries(path, libraries);
+        var materials = MaterialService.load(files, ids.keySet());
+        return new MeshSurface(uvs, uvIndexes, materialIndexes, materials, files);
+    }
+
+    private static float[] addFaceNormals(
+            float[] positions, float[] normals, int[] vertexIndexes, int[] normalIndexes) {
+        var missing = 0;
+        for (var t = 0; t < vertexIndexes.length; t += 3) {
+            if (normalIndexes[t] < 0 || normalIndexes[t + 1] < 0 || normalIndexes[t + 2] < 0) {
+                missing++;
+            }
+        }
+        if (missing == 0) {
+            return normals;
+        }
+
+        var res = Arrays.copyOf(normals, normals.length + missing * 3);
+        var normal = normals.length / 3;
+        for (var t = 0; t < vertexIndexes.length; t += 3) {
+            if (normalIndexes[t] >= 0 && normalIndexes[t + 1] >= 0 && normalIndexes[t + 2] >= 0) {
+                continue;
+            }
+            var a = vertexIndexes[t] * 3;
+            var b = vertexIndexes[t + 1] * 3;
+            var c = vertexIndexes[t + 2] * 3;
+            var abX = positions[b] - positions[a];
+            var abY = positions[b + 1] - positions[a + 1];
+            var abZ = positions[b + 2] - positions[a + 2];
+            var acX = positions[c] - positions[a];
+            var acY = positions[c + 1] - positions[a + 1];
+            var acZ = positions[c + 2] - positions[a + 2];
+            var x = abY * acZ - abZ * acY;
+            var y = abZ * acX - abX * acZ;
+            var z = abX * acY - abY * acX;
+            var length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length == 0) {
+                length = 1;
+            }
+
+            res[normal * 3] = x / length;
+            res[normal * 3 + 1] = y / length;
+            res[normal * 3 + 2] = z / length;
+            for (var i = t; i < t + 3; i++) {
+                if (normalIndexes[i] < 0) {
+                    normalIndexes[i] = normal;
                 }
             }
+            normal++;
         }
-        return new Result(vertexes, normals, triangles);
+        return res;
     }
 }
@@ -0,0 +1,113 @@
+package com.example.demo.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("com.example.demo.RenderFrame")
+@Label("Render Frame")
+@Category("Renderer")
+@Description("Stage timings and raster counters of one rendered frame")
+class RenderFrameEvent extends jdk.jfr.Event {
+
+  @Label("Frame")
+  long frame;
+
+  @Label("Transform")
+  @Timespan
+  long transform;
+
+  @Label("Shadow Map")
+  @Timespan
+  long shadow;
+
+  @Label("Bin")
+  @Timespan
+  long bin;
+
+  @Label("Setup (CPU)")
+  @Timespan
+  long setup;
+
+  @Label("Raster")
+  @Timespan
+  long raster;
+
+  @Label("Shade (CPU)")
+  @Timespan
+  long shade;
+
+  @Label("Resolve")
+  @Timespan
+  long resolve;
+
+  @Label("Present")
+  @Timespan
+  long present;
+
+  @Label("LOD Level")
+  long lodLevel;
+
+  @Label("Instances Drawn")
+  long instancesDrawn;
+
+  @Label("Instances Culled")
+  long instancesCulled;
+
+  @Label("Meshlets Frustum Culled")
+  long meshletsFrustumCulled;
+
+  @Label("Meshlets Cone Culled")
+  long meshletsConeCulled;
+
+  @Label("Triangles Submitted")
+  long trianglesSubmitted;
+
+  @Label("Triangles Frustum Culled")
+  long trianglesFrustumCulled;
+
+  @Label("Triangles Backface Culled")
+  long trianglesBackfaceCulled;
+
+  @Label("Triangles Clipped")
+  long trianglesClipped;
+
+  @Label("Triangles Rasterized")
+  long trianglesRasterized;
+
+  @Label("Pixels Z-Tested")
+  long pixelsTested;
+
+  @Label("Pixels Shaded")
+  long pixelsShaded;
+
+  @Label("Pixels Overdrawn")
+  long pixelsOverdrawn;
+
+  void fill(FrameProfiler.FrameStats stats) {
+    frame = stats.frame();
+    transform = stats.nanos(FrameProfiler.Stage.TRANSFORM);
+    shadow = stats.nanos(FrameProfiler.Stage.SHADOW);
+    bin = stats.nanos(FrameProfiler.Stage.BIN);
+    setup = stats.nanos(FrameProfiler.Stage.SETUP);
+    raster = stats.nanos(FrameProfiler.Stage.RASTER);
+    shade = stats.nanos(FrameProfiler.Stage.SHADE);
+    resolve = stats.nanos(FrameProfiler.Stage.RESOLVE);
+    present = stats.nanos(FrameProfiler.Stage.PRESENT);
+    lodLevel = stats.count(FrameProfiler.Counter.LOD_LEVEL);
+    instancesDrawn = stats.count(FrameProfiler.Counter.INSTANCES_DRAWN);
+    instancesCulled = stats.count(FrameProfiler.Counter.INSTANCES_CULLED);
+    meshletsFrustumCulled = stats.count(FrameProfiler.Counter.MESHLETS_FRUSTUM_CULLED);
+    meshletsConeCulled = stats.count(FrameProfiler.Counter.MESHLETS_CONE_CULLED);
+    trianglesSubmitted = stats.count(FrameProfiler.Counter.TRIANGLES_SUBMITTED);
+    trianglesFrustumCulled = stats.count(FrameProfiler.Counter.TRIANGLES_FRUSTUM_CULLED);
+    trianglesBackfaceCulled = stats.count(FrameProfiler.Counter.TRIANGLES_BACKFACE_CULLED);
+    trianglesClipped = stats.count(FrameProfiler.Counter.TRIANGLES_CLIPPED);
+    trianglesRasterized = stats.count(FrameProfiler.Counter.TRIANGLES_RASTERIZED);
+    pixelsTested = stats.count(FrameProfiler.Counter.PIXELS_TESTED);
+    pixelsShaded = stats.count(FrameProfiler.Counter.PIXELS_SHADED);
+    pixelsOverdrawn = stats.count(FrameProfiler.Counter.PIXELS_OVERDRAWN);
+  }
+}
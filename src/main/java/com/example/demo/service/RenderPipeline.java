@@ -0,0 +1,330 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Bgra32Bitmap;
+import com.example.demo.model.DepthBuffer;
+import com.example.demo.model.GBuffer;
+import com.example.demo.model.ImageInfo;
+import com.example.demo.model.MeshBounds;
+import com.example.demo.model.MeshLods;
+import com.example.demo.model.MultisampleBuffer;
+import com.example.demo.model.Scene;
+import com.example.demo.model.SceneInstance;
+import com.example.demo.model.ShadowMap;
+import com.example.demo.model.TileBins;
+import com.example.demo.model.TriangleBuffer;
+import com.example.demo.model.Vector4D;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * Draws a {@link Scene} frame after frame. The instances share one TriangleBuffer, the depth
+ * buffer and the bitmap; each keeps its own {@link TransformCache} and level of detail.
+ */
+public class RenderPipeline {
+
+  public static final Vector3D LIGHT_DIRECTION = new Vector3D(10, 0, 10);
+  public static final int SHADOW_MAP_SIZE = 2048;
+
+  private Scene scene;
+  private final int width;
+  private final int height;
+  private final TriangleBuffer triangles = new TriangleBuffer();
+  private final DepthBuffer depthBuffer;
+  private final Bgra32Bitmap bitmap;
+  private final TileBins tileBins;
+  private final List<InstanceState> states = new ArrayList<>();
+  private int sceneVersion = -1;
+  private GBuffer gBuffer;
+  private MultisampleBuffer multisample;
+  private ShadowMap shadowMap;
+  private double[] shadowSpheres = new double[0];
+  private final Vector4D shadowCenter = new Vector4D();
+  // the view direction of a cache stays the same object until the camera turns
+  private Vector3D lightingView;
+  private SpanShader.Lighting lightingOfView;
+  private boolean gouraud;
+  private boolean fixedPoint;
+
+  // the front buffer shows the cached poses, unless a setting or the scene changed since
+  private boolean settingsChanged = true;
+  // the shadow map is redrawn when an instance or the pose moves, shading settings keep it
+  private boolean shadowsChanged = true;
+  // whose vertexes the shared TriangleBuffer holds
+  private InstanceState transformed;
+
+  private static final class InstanceState {
+    private final SceneInstance instance;
+    private TransformCache transforms = new TransformCache();
+    private int level = -1;
+    private boolean visible;
+
+    private InstanceState(SceneInstance instance) {
+      this.instance = instance;
+    }
+  }
+
+  public RenderPipeline(MeshLods lods, int width, int height) {
+    this(Scene.of(lods), width, height);
+  }
+
+  public RenderPipeline(Scene scene, int width, int height) {
+    this.scene = scene;
+    this.width = width;
+    this.height = height;
+    this.depthBuffer = new DepthBuffer(width, height);
+    this.bitmap = new Bgra32Bitmap(width, height);
+    this.tileBins = new TileBins(width, height, DrawerService.TILE_SIZE);
+  }
+
+  public Bgra32Bitmap getBitmap() {
+    return bitmap;
+  }
+
+  public Scene getScene() {
+    return scene;
+  }
+
+  public void setScene(Scene scene) {
+    if (scene != this.scene) {
+      this.scene = scene;
+      states.clear();
+      sceneVersion = -1;
+      transformed = null;
+      shadowsChanged = true;
+    }
+  }
+
+  /** Drops every cached result, the next {@link #render} does the whole frame again. */
+  public void invalidate() {
+    for (var state : states) {
+      state.transforms = new TransformCache();
+      state.level = -1;
+    }
+    transformed = null;
+    shadowsChanged = true;
+  }
+
+  // keeps the caches of instances that are still in the scene, in scene order
+  private boolean syncInstances() {
+    if (scene.getVersion() == sceneVersion) {
+      return false;
+    }
+    var previous = new IdentityHashMap<SceneInstance, InstanceState>();
+    for (var state : states) {
+      previous.put(state.instance, state);
+    }
+    states.clear();
+    for (var instance : scene.getInstances()) {
+      states.add(previous.computeIfAbsent(instance, InstanceState::new));
+    }
+    sceneVersion = scene.getVersion();
+    shadowsChanged = true;
+    return true;
+  }
+
+  public boolean isDeferred() {
+    return gBuffer != null;
+  }
+
+  /** Deferred frames shade each visible pixel once instead of every fragment that passes depth. */
+  public void setDeferred(boolean deferred) {
+    if (deferred != isDeferred()) {
+      gBuffer = deferred ? new GBuffer(width, height) : null;
+      settingsChanged = true;
+    }
+  }
+
+  public boolean isGouraud() {
+    return gouraud;
+  }
+
+  /** Gouraud frames light each vertex once and interpolate colors, a cheap preview mode. */
+  public void setGouraud(boolean gouraud) {
+    settingsChanged |= gouraud != this.gouraud;
+    this.gouraud = gouraud;
+  }
+
+  public boolean isFixedPoint() {
+    return fixedPoint;
+  }
+
+  /**
+   * Fixed-point frames rasterize with integer edge functions and a top-left fill rule, so edges
+   * shared by two triangles are neither drawn twice nor left open. Multisampled frames have their
+   * own edge-function raster and ignore it.
+   */
+  public void setFixedPoint(boolean fixedPoint) {
+    settingsChanged |= fixedPoint != this.fixedPoint;
+    this.fixedPoint = fixedPoint;
+  }
+
+  /** Samples per pixel, 1 when multisampling is off. */
+  public int getSamples() {
+    return multisample == null ? 1 : multisample.getSamples();
+  }
+
+  /**
+   * Multisampled frames test coverage and depth at 4 or 8 points per pixel but shade each pixel
+   * once per triangle, 1 turns it off. They shade forward and ignore {@link #setDeferred}.
+   */
+  public void setSamples(int samples) {
+    if (samples != getSamples()) {
+      multisample =
+          samples == 1
+              ? null
+              : new MultisampleBuffer(width, height, samples, DrawerService.TILE_SIZE);
+      settingsChanged = true;
+    }
+  }
+
+  public boolean isShadows() {
+    return shadowMap != null;
+  }
+
+  /**
+   * Shadowed frames first render the depth of every instance as seen from {@link
+   * #LIGHT_DIRECTION} and take away the diffuse and specular light of pixels behind it.
+   */
+  public void setShadows(boolean shadows) {
+    if (shadows != isShadows()) {
+      shadowMap = shadows ? new ShadowMap(SHADOW_MAP_SIZE) : null;
+      settingsChanged = true;
+      shadowsChanged = true;
+    }
+  }
+
+  /**
+   * Renders the pose into the back buffer and swaps. When neither the pose, an instance nor a
+   * setting changed since the last call nothing is redrawn and the previous frame is returned as
+   * it is. Instances whose bounds fall outside the frustum are skipped before any vertex work.
+   */
+  public Bgra32Bitmap render(ImageInfo info) {
+    var transformStart = FrameProfiler.start();
+    var changed = syncInstances() | settingsChanged;
+    // indexed loops over the states, a frame does not allocate an iterator for them
+    for (var i = 0; i < states.size(); i++) {
+      var state = states.get(i);
+      if (state.transforms.update(info, state.instance, width, height) || state.level < 0) {
+        state.visible = VertexService.isVisible(state.transforms, state.instance.getLods());
+        state.level = VertexService.selectLod(state.transforms, state.instance.getLods(), height);
+        changed = true;
+        shadowsChanged = true;
+        if (state == transformed) {
+          transformed = null;
+        }
+      }
+      if (state.visible) {
+        FrameProfiler.add(FrameProfiler.Counter.LOD_LEVEL, state.level);
+      }
+    }
+    FrameProfiler.stop(FrameProfiler.Stage.TRANSFORM, transformStart);
+    if (!changed) {
+      return bitmap;
+    }
+
+    if (shadowMap != null && !states.isEmpty()) {
+      if (shadowsChanged) {
+        renderShadows();
+      }
+      shadowMap.setCamera(states.get(0).transforms.getScreenToWorld());
+    }
+    if (multisample != null) {
+      DrawerService.clear(bitmap, multisample);
+    } else {
+      DrawerService.clear(bitmap, depthBuffer);
+    }
+    SpanShader.Lighting lighting = null;
+    for (var i = 0; i < states.size(); i++) {
+      var state = states.get(i);
+      if (!state.visible) {
+        FrameProfiler.add(FrameProfiler.Counter.INSTANCES_CULLED, 1);
+        continue;
+      }
+      FrameProfiler.add(FrameProfiler.Counter.INSTANCES_DRAWN, 1);
+      var transforms = state.transforms;
+      var mesh = state.instance.getLods().level(state.level);
+      // the triangles stay valid while only shading settings change on a one-instance scene
+      if (state != transformed) {
+        var geometryStart = FrameProfiler.start();
+        VertexService.convertVertexes(transforms, mesh, triangles);
+        VertexService.transformNormals(mesh, transforms, triangles);
+        VertexService.assembleTriangles(mesh, triangles);
+        FrameProfiler.stop(FrameProfiler.Stage.TRANSFORM, geometryStart);
+        transformed = state;
+      }
+
+      var viewDirection = transforms.getViewDirection();
+      if (gouraud) {
+        var shadeStart = FrameProfiler.start();
+        VertexService.shadeVertexes(mesh, triangles, LIGHT_DIRECTION, viewDirection);
+        FrameProfiler.stop(FrameProfiler.Stage.SHADE, shadeStart);
+      } else {
+        triangles.setVertexColors(false);
+      }
+      if (lighting == null) {
+        lighting = lighting(viewDirection);
+      }
+      if (multisample != null) {
+        DrawerService.rasterTiledMultisample(triangles, multisample, tileBins, shadowMap, lighting);
+      } else if (fixedPoint) {
+        DrawerService.rasterTiledFixedPoint(
+            triangles, bitmap, depthBuffer, tileBins, gBuffer, shadowMap, lighting);
+      } else {
+        DrawerService.rasterTiled(
+            triangles, bitmap, depthBuffer, tileBins, gBuffer, shadowMap, lighting);
+      }
+    }
+    if (multisample != null) {
+      DrawerService.resolveMultisample(multisample, bitmap);
+    } else if (lighting != null && !gouraud) {
+      // Gouraud frames already wrote their final colors
+      DrawerService.resolveDeferred(bitmap, depthBuffer, gBuffer, shadowMap, lighting);
+    }
+    bitmap.swap();
+    settingsChanged = false;
+    return bitmap;
+  }
+
+  private SpanShader.Lighting lighting(Vector3D viewDirection) {
+    if (!viewDirection.equals(lightingView)) {
+      lightingOfView = SpanShader.Lighting.of(LIGHT_DIRECTION, viewDirection);
+      lightingView = viewDirection;
+    }
+    return lightingOfView;
+  }
+
+  // every instance casts, in view or not, at the level it is drawn with so it does not shadow
+  // itself where the levels differ
+  private void renderShadows() {
+    var shadowStart = FrameProfiler.start();
+    if (shadowSpheres.length < states.size() * 4) {
+      shadowSpheres = new double[states.size() * 4];
+    }
+    for (var i = 0; i < states.size(); i++) {
+      var transforms = states.get(i).transforms;
+      var base = states.get(i).instance.getLods().base();
+      var bounds = base.bounds() != null ? base.bounds() : MeshBounds.of(base.positions());
+      Vector4D.transformInto(
+          bounds.centerX(),
+          bounds.centerY(),
+          bounds.centerZ(),
+          transforms.getModel(),
+          shadowCenter);
+      shadowSpheres[i * 4] = shadowCenter.getX();
+      shadowSpheres[i * 4 + 1] = shadowCenter.getY();
+      shadowSpheres[i * 4 + 2] = shadowCenter.getZ();
+      shadowSpheres[i * 4 + 3] = bounds.radius() * transforms.getModelScale();
+    }
+    shadowMap.fit(LIGHT_DIRECTION, shadowSpheres, states.size());
+    shadowMap.clear();
+    for (var i = 0; i < states.size(); i++) {
+      var state = states.get(i);
+      ShadowService.render(
+          shadowMap, state.instance.getLods().level(state.level), state.transforms.getModel());
+    }
+    shadowsChanged = false;
+    FrameProfiler.stop(FrameProfiler.Stage.SHADOW, shadowStart);
+  }
+}
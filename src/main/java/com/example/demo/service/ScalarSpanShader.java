@@ -0,0 +1,18 @@
+package com.example.demo.service;
+
+final class ScalarSpanShader extends SpanShader {
+
+  static final ScalarSpanShader INSTANCE = new ScalarSpanShader();
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public void shade(Lighting lighting, float[] nx, float[] ny, float[] nz, int count, int[] dst) {
+    for (var i = 0; i < count; i++) {
+      dst[i] = shade(lighting, nx[i], ny[i], nz[i]);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.service;
+
+final class ScalarVertexTransformer extends VertexTransformer {
+
+  static final ScalarVertexTransformer INSTANCE = new ScalarVertexTransformer();
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public void project(
+      Transform transform,
+      float[] positions,
+      int first,
+      int count,
+      float[] clip,
+      int[] outcodes,
+      float[] vertexes) {
+    for (var i = first; i < first + count; i++) {
+      project(transform, positions, i, clip, outcodes, vertexes);
+    }
+  }
+
+  @Override
+  public void rotate(Transform transform, float[] normals, int first, int count, float[] dst) {
+    for (var i = first; i < first + count; i++) {
+      rotate(transform, normals, i, dst);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.ShadowMap;
+import java.util.stream.IntStream;
+
+/**
+ * Renders shadow maps with a raster that only writes depth. There is no triangle setup beyond
+ * three edge functions and a depth plane, no attributes, no shading and nothing to allocate, so a
+ * triangle costs a fraction of what {@link DrawerService} spends on it.
+ */
+public class ShadowService {
+
+  // below this many triangles one thread rasterizes the whole map, above it every task walks all
+  // triangles but only writes its own band of rows, so no two tasks touch the same texel
+  private static final int PARALLEL_TRIANGLES = 1 << 12;
+  private static final int BAND_ROWS = 64;
+
+  /** Adds the triangles of {@code mesh}, placed in the world by {@code model}, to the map. */
+  public static void render(ShadowMap map, MeshBuffer mesh, Matrix4x4 model) {
+    var vertexes = map.getVertexes(mesh.vertexCount());
+    map.toLight(model).transformArray(mesh.positions(), vertexes, mesh.vertexCount());
+
+    var size = map.getSize();
+    var depth = map.getDepth();
+    var indexes = mesh.vertexIndexes();
+    var triangles = mesh.triangleCount();
+    if (triangles < PARALLEL_TRIANGLES) {
+      rasterDepth(vertexes, indexes, triangles, depth, size, 0, size);
+      return;
+    }
+    IntStream.range(0, (size + BAND_ROWS - 1) / BAND_ROWS)
+        .parallel()
+        .forEach(
+            band ->
+                rasterDepth(
+                    vertexes,
+                    indexes,
+                    triangles,
+                    depth,
+                    size,
+                    band * BAND_ROWS,
+                    Math.min(size, (band + 1) * BAND_ROWS)));
+  }
+
+  /**
+   * Keeps the nearest depth of {@code triangleCount} triangles in {@code depth}, a row-major
+   * {@code width} x {@code height} buffer. Vertexes are four floats each with x and y in pixels
+   * and z the depth; both windings are drawn and pixel centres sit at +0.5.
+   */
+  public static void rasterDepth(
+      float[] vertexes, int[] indexes, int triangleCount, float[] depth, int width, int height) {
+    rasterDepth(vertexes, indexes, triangleCount, depth, width, 0, height);
+  }
+
+  private static void rasterDepth(
+      float[] vertexes,
+      int[] indexes,
+      int triangleCount,
+      float[] depth,
+      int width,
+      int minY,
+      int maxY) {
+    for (var t = 0; t < triangleCount; t++) {
+      var a = indexes[t * 3] * 4;
+      var b = indexes[t * 3 + 1] * 4;
+      var c = indexes[t * 3 + 2] * 4;
+      var x0 = vertexes[a];
+      var y0 = vertexes[a + 1];
+      var x1 = vertexes[b];
+      var y1 = vertexes[b + 1];
+      var x2 = vertexes[c];
+      var y2 = vertexes[c + 1];
+
+      var fromY = Math.max(minY, (int) Math.ceil(Math.min(y0, Math.min(y1, y2)) - 0.5f));
+      var toY = Math.min(maxY - 1, (int) Math.floor(Math.max(y0, Math.max(y1, y2)) - 0.5f));
+      var fromX = Math.max(0, (int) Math.ceil(Math.min(x0, Math.min(x1, x2)) - 0.5f));
+      var toX = Math.min(width - 1, (int) Math.floor(Math.max(x0, Math.max(x1, x2)) - 0.5f));
+      if (fromX > toX || fromY > toY) {
+        continue;
+      }
+
+      var area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+      if (area == 0) {
+        continue;
+      }
+      // one winding for both sides: swapping two corners flips the sign of every edge
+      if (area < 0) {
+        var swap = b;
+        b = c;
+        c = swap;
+        x1 = vertexes[b];
+        y1 = vertexes[b + 1];
+        x2 = vertexes[c];
+        y2 = vertexes[c + 1];
+        area = -area;
+      }
+      var z0 = vertexes[a + 2];
+      var dz1 = vertexes[b + 2] - z0;
+      var dz2 = vertexes[c + 2] - z0;
+      var depthDx = (dz1 * (y2 - y0) - dz2 * (y1 - y0)) / area;
+      var depthDy = (dz2 * (x1 - x0) - dz1 * (x2 - x0)) / area;
+
+      // edge functions at the first pixel centre, positive inside, and their steps
+      var px = fromX + 0.5f;
+      var py = fromY + 0.5f;
+      var stepX0 = y1 - y2;
+      var stepX1 = y2 - y0;
+      var stepX2 = y0 - y1;
+      var stepY0 = x2 - x1;
+      var stepY1 = x0 - x2;
+      var stepY2 = x1 - x0;
+      var row0 = stepY0 * (py - y1) + stepX0 * (px - x1);
+      var row1 = stepY1 * (py - y2) + stepX1 * (px - x2);
+      var row2 = stepY2 * (py - y0) + stepX2 * (px - x0);
+      var rowZ = z0 + depthDx * (px - x0) + depthDy * (py - y0);
+
+      var last = toX - fromX;
+      for (var y = fromY; y <= toY; y++) {
+        // each edge bounds the row on one side, so the covered span comes out of three divisions
+        // and the inner loop only touches covered texels
+        var from = Math.max(spanFrom(row0, stepX0), spanFrom(row1, stepX1));
+        from = Math.max(0, Math.max(from, spanFrom(row2, stepX2)));
+        var to = Math.min(spanTo(row0, stepX0), spanTo(row1, stepX1));
+        to = Math.min(last, Math.min(to, spanTo(row2, stepX2)));
+        if (from <= to) {
+          var z = rowZ + from * depthDx;
+          var end = y * width + fromX + to;
+          for (var i = y * width + fromX + from; i <= end; i++) {
+            if (z < depth[i]) {
+              depth[i] = z;
+            }
+            z += depthDx;
+          }
+        }
+        row0 += stepY0;
+        row1 += stepY1;
+        row2 += stepY2;
+        rowZ += depthDy;
+      }
+    }
+  }
+
+  // first step k where edge + k * step >= 0
+  private static int spanFrom(float edge, float step) {
+    if (step > 0) {
+      return (int) Math.ceil(-edge / step);
+    }
+    return edge >= 0 ? 0 : Integer.MAX_VALUE;
+  }
+
+  // last step k where edge + k * step >= 0, an edge that never rises again is empty in spanFrom
+  private static int spanTo(float edge, float step) {
+    return step < 0 ? (int) Math.floor(edge / -step) : Integer.MAX_VALUE;
+  }
+}
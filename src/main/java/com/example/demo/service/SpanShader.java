@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * Phong shading of many pixels at once, the batched form of {@link DrawerService#getPointColor}.
+ * Normals come in as structure-of-arrays lanes so the vector kernel can load them directly, and
+ * the result is packed ARGB. Results stay within one step per channel of getPointColor, the
+ * kernels work in float instead of double.
+ */
+public abstract class SpanShader {
+
+  private static final SpanShader INSTANCE =
+      VectorSupport.load(SpanShader.class, "VectorSpanShader", ScalarSpanShader.INSTANCE);
+
+  /** Per-frame lighting terms, folded so the kernels only multiply and add per pixel. */
+  public record Lighting(
+      float lightX,
+      float lightY,
+      float lightZ,
+      float inverseLightLengthSquared,
+      float viewX,
+      float viewY,
+      float viewZ,
+      float viewDotLight,
+      float ambientRed,
+      float ambientGreen,
+      float ambientBlue,
+      float diffuseRed,
+      float diffuseGreen,
+      float diffuseBlue,
+      float specularRed,
+      float specularGreen,
+      float specularBlue) {
+
+    public static Lighting of(Vector3D lightDirection, Vector3D viewDirection) {
+      var lightLength = lightDirection.getNorm();
+      return new Lighting(
+          (float) lightDirection.getX(),
+          (float) lightDirection.getY(),
+          (float) lightDirection.getZ(),
+          (float) (1 / (lightLength * lightLength)),
+          (float) viewDirection.getX(),
+          (float) viewDirection.getY(),
+          (float) viewDirection.getZ(),
+          (float) viewDirection.dotProduct(lightDirection),
+          (float) (DrawerService.AMB.getX() * DrawerService.AMBIENT_WEIGHT),
+          (float) (DrawerService.AMB.getY() * DrawerService.AMBIENT_WEIGHT),
+          (float) (DrawerService.AMB.getZ() * DrawerService.AMBIENT_WEIGHT),
+          (float) (DrawerService.DIF.getX() * DrawerService.DIFFUSE_WEIGHT),
+          (float) (DrawerService.DIF.getY() * DrawerService.DIFFUSE_WEIGHT),
+          (float) (DrawerService.DIF.getZ() * DrawerService.DIFFUSE_WEIGHT),
+          (float) DrawerService.SPEC.getX(),
+          (float) DrawerService.SPEC.getY(),
+          (float) DrawerService.SPEC.getZ());
+    }
+
+    /** Channel 0, 1 or 2 of an ARGB pixel from the top: red, green, blue. */
+    float ambient(int channel) {
+      return channel == 0 ? ambientRed : channel == 1 ? ambientGreen : ambientBlue;
+    }
+
+    float diffuse(int channel) {
+      return channel == 0 ? diffuseRed : channel == 1 ? diffuseGreen : diffuseBlue;
+    }
+
+    float specular(int channel) {
+      return channel == 0 ? specularRed : channel == 1 ? specularGreen : specularBlue;
+    }
+  }
+
+  /** The vector kernel when the JVM runs with --add-modules jdk.incubator.vector. */
+  public static SpanShader get() {
+    return INSTANCE;
+  }
+
+  public static SpanShader scalar() {
+    return ScalarSpanShader.INSTANCE;
+  }
+
+  public abstract String getName();
+
+  /** Shades {@code count} pixels whose normals are in the first lanes of nx, ny and nz. */
+  public abstract void shade(
+      Lighting lighting, float[] nx, float[] ny, float[] nz, int count, int[] dst);
+
+  static int shade(Lighting lighting, float nx, float ny, float nz) {
+    var length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+    nx /= length;
+    ny /= length;
+    nz /= length;
+
+    var lightDotNormal = lighting.lightX() * nx + lighting.lightY() * ny + lighting.lightZ() * nz;
+    var diffuse = Math.max(0, lightDotNormal * lighting.inverseLightLengthSquared());
+    // view . (light - 2 (light . n) n) with view . light folded into the per-frame terms
+    var specular =
+        Math.max(
+            0,
+            lighting.viewDotLight()
+                - 2
+                    * lightDotNormal
+                    * (lighting.viewX() * nx + lighting.viewY() * ny + lighting.viewZ() * nz));
+    var squared = specular * specular;
+    var specularPower = squared * squared;
+
+    var red =
+        lighting.ambientRed()
+            + lighting.diffuseRed() * diffuse
+            + lighting.specularRed() * specularPower;
+    var green =
+        lighting.ambientGreen()
+            + lighting.diffuseGreen() * diffuse
+            + lighting.specularGreen() * specularPower;
+    var blue =
+        lighting.ambientBlue()
+            + lighting.diffuseBlue() * diffuse
+            + lighting.specularBlue() * specularPower;
+    return (255 << 24)
+        | ((int) Math.max(0, Math.min(red, 255)) << 16)
+        | ((int) Math.max(0, Math.min(green, 255)) << 8)
+        | (int) Math.max(0, Math.min(blue, 255));
+  }
+}
@@ -0,0 +1,202 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ImageInfo;
+import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.SceneInstance;
+import com.example.demo.model.TriangleBuffer;
+import com.example.demo.model.Vector4D;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * The matrices a frame is transformed with, kept across frames. The projection and viewport are
+ * rebuilt when the resolution changes, the rest when the {@link ImageInfo} version does or, in a
+ * scene, the version of the instance. A scene keeps one cache per instance. The getters hand out
+ * the cache's own objects, which the next update overwrites in place.
+ */
+public class TransformCache {
+
+  private double width = -1;
+  private double height = -1;
+  private Matrix4x4 projection;
+  private Matrix4x4 viewport;
+
+  private ImageInfo info;
+  private int version;
+  private int rotationVersion;
+  private SceneInstance instance;
+  private int instanceVersion;
+  // counts rebuilds of the rotation, versions of two different ImageInfos can coincide
+  private int rotations;
+  private final Matrix4x4 model = new Matrix4x4();
+  private double modelScale;
+  private final Matrix4x4 matrix = new Matrix4x4();
+  private final Matrix4x4 screenToWorld = new Matrix4x4();
+  private VertexTransformer.Transform projectTransform;
+  private VertexTransformer.Transform rotateTransform;
+  private final Vector4D eye = new Vector4D();
+  private final Vector4D modelEye = new Vector4D();
+  private Vector3D viewDirection;
+
+  // the matrices are rebuilt in place, a pose change allocates nothing
+  private final Matrix4x4 rotation = new Matrix4x4();
+  private final Matrix4x4 inverseModel = new Matrix4x4();
+  private final Matrix4x4 viewProjection = new Matrix4x4();
+  private final Matrix4x4 scratch = new Matrix4x4();
+
+  // what the rotated normals in the TriangleBuffer were computed from
+  private MeshBuffer normalsMesh;
+  private float[] normalsTarget;
+  private TriangleBuffer normalsBuffer;
+  private int normalsRotation;
+
+  /** Brings the matrices up to date, returns false when they already were. */
+  public boolean update(ImageInfo info, double width, double height) {
+    return update(info, null, width, height);
+  }
+
+  /** Same for one instance of a scene, whose matrix is applied before the pose of the frame. */
+  public boolean update(ImageInfo info, SceneInstance instance, double width, double height) {
+    var resized = width != this.width || height != this.height;
+    if (resized) {
+      this.width = width;
+      this.height = height;
+      projection = VertexService.createProjection(width, height);
+      viewport = VertexService.createViewport(width, height);
+    }
+
+    var placed =
+        instance != this.instance
+            || instance != null && instance.getVersion() != instanceVersion;
+    var posed = info != this.info || info.getVersion() != version;
+    if (placed || info != this.info || info.getRotationVersion() != rotationVersion) {
+      VertexService.createRotationMatrix(info, scratch, rotation);
+      if (instance != null) {
+        instance.getModel().multiplyInto(rotation, rotation);
+      }
+      rotateTransform =
+          rotateTransform == null
+              ? VertexTransformer.Transform.of(rotation)
+              : rotateTransform.set(rotation);
+      rotationVersion = info.getRotationVersion();
+      rotations++;
+    }
+    var moved = placed || posed;
+    if (moved) {
+      VertexService.convertToOrthogonal(info.getCameraPosition(), info.getCameraTarget(), eye);
+      VertexService.createInverseModelMatrix(info, scratch, inverseModel);
+      VertexService.createModelMatrix(info, scratch, model);
+      if (instance != null) {
+        inverseModel.multiplyInto(instance.getModel().invertAffineInto(scratch), inverseModel);
+        instance.getModel().multiplyInto(model, model);
+        instanceVersion = instance.getVersion();
+      }
+      Vector4D.transformInto(eye.getX(), eye.getY(), eye.getZ(), inverseModel, modelEye);
+      modelScale =
+          Math.sqrt(
+              Math.max(
+                  rowLengthSquared(model.getM11(), model.getM12(), model.getM13()),
+                  Math.max(
+                      rowLengthSquared(model.getM21(), model.getM22(), model.getM23()),
+                      rowLengthSquared(model.getM31(), model.getM32(), model.getM33()))));
+      updateViewDirection(info.getCameraTarget());
+      this.info = info;
+      this.instance = instance;
+      version = info.getVersion();
+    }
+    if (moved || resized) {
+      VertexService.createViewMatrix(info, eye, scratch).multiplyInto(projection, viewProjection);
+      model.multiplyInto(viewProjection, matrix);
+      viewProjection.multiplyInto(viewport, scratch).invertInto(screenToWorld);
+      projectTransform =
+          projectTransform == null
+              ? VertexTransformer.Transform.of(matrix, viewport)
+              : projectTransform.set(matrix, viewport);
+    }
+    return moved || resized;
+  }
+
+  // a Vector3D is immutable, so only a camera that really turned gets a new one
+  private void updateViewDirection(Vector3D target) {
+    var x = target.getX() - eye.getX();
+    var y = target.getY() - eye.getY();
+    var z = target.getZ() - eye.getZ();
+    var scale = 1 / Math.sqrt(x * x + y * y + z * z);
+    x *= scale;
+    y *= scale;
+    z *= scale;
+    if (viewDirection == null
+        || x != viewDirection.getX()
+        || y != viewDirection.getY()
+        || z != viewDirection.getZ()) {
+      viewDirection = new Vector3D(x, y, z);
+    }
+  }
+
+  private static double rowLengthSquared(double x, double y, double z) {
+    return x * x + y * y + z * z;
+  }
+
+  /** The camera position in world space. */
+  Vector4D getEye() {
+    return eye;
+  }
+
+  /** Mesh space to world space, including the instance matrix. */
+  public Matrix4x4 getModel() {
+    return model;
+  }
+
+  /** The largest stretch of the model matrix, what a bounding radius grows by in world space. */
+  public double getModelScale() {
+    return modelScale;
+  }
+
+  /** Model-view-projection, row-vector. */
+  public Matrix4x4 getMatrix() {
+    return matrix;
+  }
+
+  /** Viewport coordinates with their depth back to world space, projective so divide by w. */
+  public Matrix4x4 getScreenToWorld() {
+    return screenToWorld;
+  }
+
+  public Matrix4x4 getViewport() {
+    return viewport;
+  }
+
+  public VertexTransformer.Transform getProjectTransform() {
+    return projectTransform;
+  }
+
+  public VertexTransformer.Transform getRotateTransform() {
+    return rotateTransform;
+  }
+
+  /** The camera position in model space, for meshlet cone culling. */
+  public Vector4D getModelEye() {
+    return modelEye;
+  }
+
+  public Vector3D getViewDirection() {
+    return viewDirection;
+  }
+
+  // instances share one TriangleBuffer, so the buffer has to remember which cache wrote it last
+  boolean hasNormals(MeshBuffer mesh, TriangleBuffer buffer) {
+    return buffer.getNormalsSource() == this
+        && normalsBuffer == buffer
+        && normalsMesh == mesh
+        && normalsTarget == buffer.getNormals()
+        && normalsRotation == rotations;
+  }
+
+  void setNormals(MeshBuffer mesh, TriangleBuffer buffer) {
+    buffer.setNormalsSource(this);
+    normalsBuffer = buffer;
+    normalsMesh = mesh;
+    normalsTarget = buffer.getNormals();
+    normalsRotation = rotations;
+  }
+}
@@ -0,0 +1,195 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.TriangleBuffer;
+
+final class TriangleClipper {
+
+  static final int OUT_LEFT = 1;
+  static final int OUT_RIGHT = 1 << 1;
+  static final int OUT_BOTTOM = 1 << 2;
+  static final int OUT_TOP = 1 << 3;
+  static final int OUT_NEAR = 1 << 4;
+  static final int OUT_FAR = 1 << 5;
+  static final int GUARD_LEFT = 1 << 6;
+  static final int GUARD_RIGHT = 1 << 7;
+  static final int GUARD_BOTTOM = 1 << 8;
+  static final int GUARD_TOP = 1 << 9;
+
+  // only the near plane and the guard band are clipped geometrically, anything crossing the
+  // viewport edges inside the guard band is left to the rasterizer's scissor
+  static final int CLIP_PLANES = OUT_NEAR | GUARD_LEFT | GUARD_RIGHT | GUARD_BOTTOM | GUARD_TOP;
+
+  // in NDC units, keeps projected coordinates far away from int overflow in the rasterizer
+  private static final float GUARD_BAND = 8;
+
+  // clip xyzw, normal xyz, uv
+  private static final int STRIDE = 9;
+  private static final int MAX_VERTICES = 3 + Integer.bitCount(CLIP_PLANES);
+
+  private float[] input = new float[MAX_VERTICES * STRIDE];
+  private float[] output = new float[MAX_VERTICES * STRIDE];
+  private int[] inputSources = new int[MAX_VERTICES * 2];
+  private int[] outputSources = new int[MAX_VERTICES * 2];
+  private final int[] vertexes = new int[MAX_VERTICES];
+  private final int[] normals = new int[MAX_VERTICES];
+
+  static int outcode(float x, float y, float z, float w) {
+    var code = 0;
+    if (x < -w) {
+      code |= OUT_LEFT;
+    }
+    if (x > w) {
+      code |= OUT_RIGHT;
+    }
+    if (y < -w) {
+      code |= OUT_BOTTOM;
+    }
+    if (y > w) {
+      code |= OUT_TOP;
+    }
+    if (z < 0) {
+      code |= OUT_NEAR;
+    }
+    if (z > w) {
+      code |= OUT_FAR;
+    }
+
+    var guard = GUARD_BAND * w;
+    if (x < -guard) {
+      code |= GUARD_LEFT;
+    }
+    if (x > guard) {
+      code |= GUARD_RIGHT;
+    }
+    if (y < -guard) {
+      code |= GUARD_BOTTOM;
+    }
+    if (y > guard) {
+      code |= GUARD_TOP;
+    }
+    return code;
+  }
+
+  void clip(
+      TriangleBuffer triangles,
+      int i0,
+      int i1,
+      int i2,
+      int n0,
+      int n1,
+      int n2,
+      int material,
+      int planes) {
+    load(triangles, 0, i0, n0);
+    load(triangles, 1, i1, n1);
+    load(triangles, 2, i2, n2);
+
+    var count = 3;
+    for (var remaining = planes; remaining != 0; remaining &= remaining - 1) {
+      count = clipAgainst(Integer.lowestOneBit(remaining), count);
+      if (count < 3) {
+        return;
+      }
+    }
+
+    var viewport = triangles.getViewport();
+    for (var i = 0; i < count; i++) {
+      var offset = i * STRIDE;
+      vertexes[i] = inputSources[i * 2];
+      if (vertexes[i] < 0) {
+        vertexes[i] = project(triangles, viewport, offset);
+      }
+      normals[i] = inputSources[i * 2 + 1];
+      if (normals[i] < 0) {
+        normals[i] =
+            triangles.addNormal(input[offset + 4], input[offset + 5], input[offset + 6]);
+        triangles.setUv(normals[i], input[offset + 7], input[offset + 8]);
+      }
+    }
+    for (var i = 1; i < count - 1; i++) {
+      triangles.addTriangle(
+          vertexes[0],
+          vertexes[i],
+          vertexes[i + 1],
+          normals[0],
+          normals[i],
+          normals[i + 1],
+          material);
+    }
+  }
+
+  private void load(TriangleBuffer triangles, int slot, int vertex, int normal) {
+    var clip = triangles.getClip();
+    var normalValues = triangles.getNormals();
+    var offset = slot * STRIDE;
+    System.arraycopy(clip, vertex * 4, input, offset, 4);
+    System.arraycopy(normalValues, normal * 3, input, offset + 4, 3);
+    System.arraycopy(triangles.getUvs(), normal * 2, input, offset + 7, 2);
+    inputSources[slot * 2] = vertex;
+    inputSources[slot * 2 + 1] = normal;
+  }
+
+  private int clipAgainst(int plane, int count) {
+    var result = 0;
+    for (var i = 0; i < count; i++) {
+      var current = i * STRIDE;
+      var next = ((i + 1) % count) * STRIDE;
+      var currentDistance = distance(plane, input, current);
+      var nextDistance = distance(plane, input, next);
+
+      if (currentDistance >= 0) {
+        System.arraycopy(input, current, output, result * STRIDE, STRIDE);
+        outputSources[result * 2] = inputSources[i * 2];
+        outputSources[result * 2 + 1] = inputSources[i * 2 + 1];
+        result++;
+      }
+      if ((currentDistance >= 0) != (nextDistance >= 0)) {
+        var t = currentDistance / (currentDistance - nextDistance);
+        var offset = result * STRIDE;
+        for (var k = 0; k < STRIDE; k++) {
+          output[offset + k] = input[current + k] + (input[next + k] - input[current + k]) * t;
+        }
+        outputSources[result * 2] = -1;
+        outputSources[result * 2 + 1] = -1;
+        result++;
+      }
+    }
+
+    var swap = input;
+    input = output;
+    output = swap;
+    var swapSources = inputSources;
+    inputSources = outputSources;
+    outputSources = swapSources;
+    return result;
+  }
+
+  private static float distance(int plane, float[] vertex, int offset) {
+    var x = vertex[offset];
+    var y = vertex[offset + 1];
+    var w = vertex[offset + 3];
+    return switch (plane) {
+      case OUT_NEAR -> vertex[offset + 2];
+      case GUARD_LEFT -> x + GUARD_BAND * w;
+      case GUARD_RIGHT -> GUARD_BAND * w - x;
+      case GUARD_BOTTOM -> y + GUARD_BAND * w;
+      case GUARD_TOP -> GUARD_BAND * w - y;
+      default -> throw new IllegalArgumentException("not a clip plane: " + plane);
+    };
+  }
+
+  private int project(TriangleBuffer triangles, Matrix4x4 viewport, int offset) {
+    var w = input[offset + 3];
+    double x = input[offset] / w;
+    double y = input[offset + 1] / w;
+    double z = input[offset + 2] / w;
+    var screenX =
+        x * viewport.getM11() + y * viewport.getM21() + z * viewport.getM31() + viewport.getM41();
+    var screenY =
+        x * viewport.getM12() + y * viewport.getM22() + z * viewport.getM32() + viewport.getM42();
+    var screenZ =
+        x * viewport.getM13() + y * viewport.getM23() + z * viewport.getM33() + viewport.getM43();
+    return triangles.addVertex((float) screenX, (float) screenY, (float) screenZ, (float) (1 / w));
+  }
+}
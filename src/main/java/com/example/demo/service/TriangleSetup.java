@@ -0,0 +1,246 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Texture;
+
+final class TriangleSetup {
+
+  private final double[] edgeA = new double[3];
+  private final double[] edgeB = new double[3];
+  private final double[] edgeC = new double[3];
+  private double area;
+
+  private final Plane depth = new Plane();
+  private final Plane normalX = new Plane();
+  private final Plane normalY = new Plane();
+  private final Plane normalZ = new Plane();
+  private final Plane red = new Plane();
+  private final Plane green = new Plane();
+  private final Plane blue = new Plane();
+  private boolean colors;
+  // u / w, v / w and 1 / w are affine in screen space, u and v themselves are not
+  private final Plane textureU = new Plane();
+  private final Plane textureV = new Plane();
+  private final Plane inverseW = new Plane();
+  private Texture texture;
+  private int level;
+  private final double[] cornerInverseW = new double[3];
+  private double centroidX;
+  private double centroidY;
+
+  private double z;
+  private double nx;
+  private double ny;
+  private double nz;
+  private double r;
+  private double g;
+  private double b;
+  private double u;
+  private double v;
+  private double q;
+
+  boolean setup(
+      float[] vertexes, int i0, int i1, int i2, float[] normals, int n0, int n1, int n2) {
+    if (!setup(vertexes, i0, i1, i2)) {
+      return false;
+    }
+    colors = false;
+    normalX.set(normals[n0 * 3], normals[n1 * 3], normals[n2 * 3]);
+    normalY.set(normals[n0 * 3 + 1], normals[n1 * 3 + 1], normals[n2 * 3 + 1]);
+    normalZ.set(normals[n0 * 3 + 2], normals[n1 * 3 + 2], normals[n2 * 3 + 2]);
+    return true;
+  }
+
+  /** Gouraud variant, interpolates the lit argb colors of the corners instead of normals. */
+  boolean setup(float[] vertexes, int i0, int i1, int i2, int[] argb, int c0, int c1, int c2) {
+    if (!setup(vertexes, i0, i1, i2)) {
+      return false;
+    }
+    colors = true;
+    red.set((argb[c0] >> 16) & 0xFF, (argb[c1] >> 16) & 0xFF, (argb[c2] >> 16) & 0xFF);
+    green.set((argb[c0] >> 8) & 0xFF, (argb[c1] >> 8) & 0xFF, (argb[c2] >> 8) & 0xFF);
+    blue.set(argb[c0] & 0xFF, argb[c1] & 0xFF, argb[c2] & 0xFF);
+    return true;
+  }
+
+  private boolean setup(float[] vertexes, int i0, int i1, int i2) {
+    var x0 = vertexes[i0 * 4];
+    var y0 = vertexes[i0 * 4 + 1];
+    var x1 = vertexes[i1 * 4];
+    var y1 = vertexes[i1 * 4 + 1];
+    var x2 = vertexes[i2 * 4];
+    var y2 = vertexes[i2 * 4 + 1];
+
+    setEdge(0, x1, y1, x2, y2);
+    setEdge(1, x2, y2, x0, y0);
+    setEdge(2, x0, y0, x1, y1);
+    area = edgeA[0] * x0 + edgeB[0] * y0 + edgeC[0];
+    if (area == 0) {
+      return false;
+    }
+
+    depth.set(vertexes[i0 * 4 + 2], vertexes[i1 * 4 + 2], vertexes[i2 * 4 + 2]);
+    cornerInverseW[0] = vertexes[i0 * 4 + 3];
+    cornerInverseW[1] = vertexes[i1 * 4 + 3];
+    cornerInverseW[2] = vertexes[i2 * 4 + 3];
+    centroidX = (x0 + x1 + x2) / 3.0;
+    centroidY = (y0 + y1 + y2) / 3.0;
+    texture = null;
+    return true;
+  }
+
+  /**
+   * Adds texture coordinates to a triangle that is set up, a null {@code texture} leaves it
+   * untextured. They are perspective correct: u / w, v / w and 1 / w are interpolated and divided
+   * per pixel, with 1 / w from the fourth float of the vertexes. The mip level is picked once for
+   * the whole triangle, from the derivatives at its centroid.
+   */
+  void setTexture(Texture texture, float[] uvs, int n0, int n1, int n2) {
+    this.texture = texture;
+    if (texture == null) {
+      return;
+    }
+    var q0 = cornerInverseW[0];
+    var q1 = cornerInverseW[1];
+    var q2 = cornerInverseW[2];
+    inverseW.set(q0, q1, q2);
+    textureU.set(uvs[n0 * 2] * q0, uvs[n1 * 2] * q1, uvs[n2 * 2] * q2);
+    textureV.set(uvs[n0 * 2 + 1] * q0, uvs[n1 * 2 + 1] * q1, uvs[n2 * 2 + 1] * q2);
+
+    // d(u / q) = (du - u dq) / q for the interpolated u / w and q = 1 / w
+    var q = inverseW.at(centroidX, centroidY);
+    var u = textureU.at(centroidX, centroidY) / q;
+    var v = textureV.at(centroidX, centroidY) / q;
+    level =
+        texture.selectLevel(
+            (textureU.dx - u * inverseW.dx) / q,
+            (textureV.dx - v * inverseW.dx) / q,
+            (textureU.dy - u * inverseW.dy) / q,
+            (textureV.dy - v * inverseW.dy) / q);
+  }
+
+  private void setEdge(int edge, double fromX, double fromY, double toX, double toY) {
+    edgeA[edge] = fromY - toY;
+    edgeB[edge] = toX - fromX;
+    edgeC[edge] = fromX * toY - toX * fromY;
+  }
+
+  /** Attributes at (x, y), integer pixel corners for the scanline raster, sample points for MSAA. */
+  void moveTo(double x, double y) {
+    z = depth.at(x, y);
+    if (colors) {
+      r = red.at(x, y);
+      g = green.at(x, y);
+      b = blue.at(x, y);
+    } else {
+      nx = normalX.at(x, y);
+      ny = normalY.at(x, y);
+      nz = normalZ.at(x, y);
+    }
+    if (texture != null) {
+      u = textureU.at(x, y);
+      v = textureV.at(x, y);
+      q = inverseW.at(x, y);
+    }
+  }
+
+  void stepX() {
+    z += depth.dx;
+    if (colors) {
+      r += red.dx;
+      g += green.dx;
+      b += blue.dx;
+    } else {
+      nx += normalX.dx;
+      ny += normalY.dx;
+      nz += normalZ.dx;
+    }
+    if (texture != null) {
+      u += textureU.dx;
+      v += textureV.dx;
+      q += inverseW.dx;
+    }
+  }
+
+  /** Edge function {@code edge} at (x, y), the same sign as {@link #getArea} inside the triangle. */
+  double edgeAt(int edge, double x, double y) {
+    return edgeA[edge] * x + edgeB[edge] * y + edgeC[edge];
+  }
+
+  double getEdgeA(int edge) {
+    return edgeA[edge];
+  }
+
+  double getEdgeB(int edge) {
+    return edgeB[edge];
+  }
+
+  /** Twice the signed screen area, its sign gives the winding. */
+  double getArea() {
+    return area;
+  }
+
+  double getDepthDx() {
+    return depth.dx;
+  }
+
+  double getDepthDy() {
+    return depth.dy;
+  }
+
+  double getZ() {
+    return z;
+  }
+
+  double getNx() {
+    return nx;
+  }
+
+  double getNy() {
+    return ny;
+  }
+
+  double getNz() {
+    return nz;
+  }
+
+  boolean hasTexture() {
+    return texture != null;
+  }
+
+  /** Filtered texel at the current position, opaque white without a texture. */
+  int getTexel() {
+    if (texture == null) {
+      return 0xFFFFFFFF;
+    }
+    var w = 1 / q;
+    return texture.sample(level, (float) (u * w), (float) (v * w));
+  }
+
+  boolean hasColors() {
+    return colors;
+  }
+
+  int getArgb() {
+    // pixel centres just outside the triangle extrapolate slightly past the corner colors
+    return (255 << 24)
+        | ((int) Math.max(0, Math.min(r, 255)) << 16)
+        | ((int) Math.max(0, Math.min(g, 255)) << 8)
+        | (int) Math.max(0, Math.min(b, 255));
+  }
+
+  private final class Plane {
+    private double dx;
+    private double dy;
+    private double c;
+
+    private void set(double a0, double a1, double a2) {
+      dx = (a0 * edgeA[0] + a1 * edgeA[1] + a2 * edgeA[2]) / area;
+      dy = (a0 * edgeB[0] + a1 * edgeB[1] + a2 * edgeB[2]) / area;
+      c = (a0 * edgeC[0] + a1 * edgeC[1] + a2 * edgeC[2]) / area;
+    }
+
+    private double at(double x, double y) {
+      return dx * x + dy * y + c;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** 8 lanes on AVX2, 16 on AVX-512, whatever the CPU runs widest. */
+final class VectorSpanShader extends SpanShader {
+
+  private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INTS =
+      VectorSpecies.of(int.class, FLOATS.vectorShape());
+  private static final float MAGIC = 1 << 23;
+
+  @Override
+  public String getName() {
+    return "vector" + FLOATS.length();
+  }
+
+  @Override
+  public void shade(Lighting lighting, float[] nx, float[] ny, float[] nz, int count, int[] dst) {
+    var i = 0;
+    for (var upper = FLOATS.loopBound(count); i < upper; i += FLOATS.length()) {
+      var x = FloatVector.fromArray(FLOATS, nx, i);
+      var y = FloatVector.fromArray(FLOATS, ny, i);
+      var z = FloatVector.fromArray(FLOATS, nz, i);
+      var length = x.mul(x).add(y.mul(y)).add(z.mul(z)).sqrt();
+      x = x.div(length);
+      y = y.div(length);
+      z = z.div(length);
+
+      var lightDotNormal =
+          x.mul(lighting.lightX()).add(y.mul(lighting.lightY())).add(z.mul(lighting.lightZ()));
+      var diffuse = lightDotNormal.mul(lighting.inverseLightLengthSquared()).max(0f);
+      var viewDotNormal =
+          x.mul(lighting.viewX()).add(y.mul(lighting.viewY())).add(z.mul(lighting.viewZ()));
+      var specular =
+          lightDotNormal.mul(-2f).mul(viewDotNormal).add(lighting.viewDotLight()).max(0f);
+      var squared = specular.mul(specular);
+      var specularPower = squared.mul(squared);
+
+      // a round per channel, C2 parses the body once where three copies passed its inlining
+      // cutoff, and a vector handed to a call that is not inlined gets boxed on the heap. The pixel
+      // is packed in dst, a vector carried from round to round loses its exact class and boxes
+      IntVector.broadcast(INTS, 255).intoArray(dst, i);
+      for (var channel = 0; channel < 3; channel++) {
+        var value =
+            diffuse
+                .mul(lighting.diffuse(channel))
+                .add(specularPower.mul(lighting.specular(channel)))
+                .add(lighting.ambient(channel))
+                .min(255f)
+                .max(0f);
+        // JDK 17 has no intrinsic for an F2I conversion and would box every vector. Adding 2^23
+        // rounds to an integer in the low bits, a lane that rounded up steps back to truncate
+        var rounded = value.add(MAGIC).sub(MAGIC);
+        var truncated = rounded.blend(rounded.sub(1f), rounded.compare(VectorOperators.GT, value));
+        IntVector.fromArray(INTS, dst, i)
+            .lanewise(VectorOperators.LSHL, 8)
+            .or(truncated.add(MAGIC).reinterpretAsInts().and(0xff))
+            .intoArray(dst, i);
+      }
+    }
+    for (; i < count; i++) {
+      dst[i] = shade(lighting, nx[i], ny[i], nz[i]);
+    }
+  }
+}
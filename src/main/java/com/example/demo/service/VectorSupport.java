@@ -0,0 +1,30 @@
+package com.example.demo.service;
+
+/** Finds the Vector API kernels, which only exist when the JVM runs with the incubator module. */
+final class VectorSupport {
+
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+  private static final boolean AVAILABLE =
+      ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()
+          && !Boolean.getBoolean("render.scalar");
+
+  private VectorSupport() {}
+
+  /** A new instance of the named class of this package, or {@code fallback} without the module. */
+  static <T> T load(Class<T> type, String simpleName, T fallback) {
+    if (!AVAILABLE) {
+      return fallback;
+    }
+    try {
+      // only touched by name, so the class never links when the module is missing
+      return type.cast(
+          Class.forName(VectorSupport.class.getPackageName() + "." + simpleName)
+              .getDeclaredConstructor()
+              .newInstance());
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // an incubator module that changed its API is no reason to stop rendering
+      return fallback;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * One vertex per four-lane vector: its x, y and z are broadcast, after which the row-vector
+ * transform is three fused multiply-adds and the clip coordinates are stored as they are. Wider
+ * vectors would need a lane shuffle per component, which costs more than it saves on JDK 17.
+ */
+final class VectorVertexTransformer extends VertexTransformer {
+
+  private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_128;
+
+  @Override
+  public String getName() {
+    return "vector" + SPECIES.length();
+  }
+
+  @Override
+  public void project(
+      Transform transform,
+      float[] positions,
+      int first,
+      int count,
+      float[] clip,
+      int[] outcodes,
+      float[] vertexes) {
+    var rows = transform.rows();
+    var row0 = FloatVector.fromArray(SPECIES, rows, 0);
+    var row1 = FloatVector.fromArray(SPECIES, rows, MAX_LANES);
+    var row2 = FloatVector.fromArray(SPECIES, rows, MAX_LANES * 2);
+    var row3 = FloatVector.fromArray(SPECIES, rows, MAX_LANES * 3);
+    var scale = FloatVector.fromArray(SPECIES, transform.viewportScale(), 0);
+    var offset = FloatVector.fromArray(SPECIES, transform.viewportOffset(), 0);
+
+    for (int i = first, s = first * 3, o = first * 4; i < first + count; i++, s += 3, o += 4) {
+      var c = row0.fma(FloatVector.broadcast(SPECIES, positions[s]), row3);
+      c = row1.fma(FloatVector.broadcast(SPECIES, positions[s + 1]), c);
+      c = row2.fma(FloatVector.broadcast(SPECIES, positions[s + 2]), c);
+      c.intoArray(clip, o);
+      // reading the stored lanes back is cheaper than extracting them from the register
+      var w = clip[o + 3];
+      outcodes[i] = TriangleClipper.outcode(clip[o], clip[o + 1], clip[o + 2], w);
+      // not c.div(w): the overloads taking a float share one type profile with the span shader's
+      // wider vectors, and C2 boxes the vectors of whichever kernel sees the second type there
+      var projected = c.lanewise(VectorOperators.DIV, FloatVector.broadcast(SPECIES, w));
+      projected.fma(scale, offset).intoArray(vertexes, o);
+      vertexes[o + 3] = 1 / w;
+    }
+  }
+
+  @Override
+  public void rotate(Transform transform, float[] normals, int first, int count, float[] dst) {
+    var rows = transform.rows();
+    var row0 = FloatVector.fromArray(SPECIES, rows, 0);
+    var row1 = FloatVector.fromArray(SPECIES, rows, MAX_LANES);
+    var row2 = FloatVector.fromArray(SPECIES, rows, MAX_LANES * 2);
+
+    // a four-lane store spills into the x of the next normal, which that normal then overwrites,
+    // so only the last normal of the range is left to the scalar path
+    var i = first;
+    for (var o = first * 3; i < first + count - 1; i++, o += 3) {
+      var n = row0.lanewise(VectorOperators.MUL, FloatVector.broadcast(SPECIES, normals[o]));
+      n = row1.fma(FloatVector.broadcast(SPECIES, normals[o + 1]), n);
+      n = row2.fma(FloatVector.broadcast(SPECIES, normals[o + 2]), n);
+      n.intoArray(dst, o);
+    }
+    for (; i < first + count; i++) {
+      rotate(transform, normals, i, dst);
+    }
+  }
+}
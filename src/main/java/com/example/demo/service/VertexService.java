@@ -2,16 +2,32 @@ package com.example.demo.service;
 
 import com.example.demo.model.ImageInfo;
 import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.MeshBuffer;
+import com.example.demo.model.MeshLods;
+import com.example.demo.model.TriangleBuffer;
 import com.example.demo.model.Vector4D;
+import com.example.demo.service.FrameProfiler.Counter;
+import java.util.stream.IntStream;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 
-import java.util.List;
-
 public class VertexService {
     private static final float FOV = (float) (Math.PI / 8.0d);
     private static final float NEAR_PLANE_DISTANCE = 0.1f;
     private static final float FAR_PLANE_DISTANCE = 100;
 
+    private static final double MODEL_SCALE = 0.4d;
+
+    // a level is only used while its front-facing triangles still average this many pixels
+    private static final double MIN_TRIANGLE_PIXELS = 4;
+
+    // below this many vertexes a fork costs more than the transform it saves, above it the work is
+    // split into chunks of roughly CHUNK_VERTEXES for the common fork-join pool
+    private static final int PARALLEL_VERTEXES = 1 << 15;
+    private static final int CHUNK_VERTEXES = 1 << 12;
+
+    private static final WorkerLocal<TriangleClipper> CLIPPER = new WorkerLocal<>(TriangleClipper::new);
+    private static final WorkerLocal<MeshletCuller> CULLER = new WorkerLocal<>(MeshletCuller::new);
+
     public static Vector3D convertToOrthogonal(Vector3D v, Vector3D rotationPoint) {
         var r = v.getX();
         var phi = v.getY();
@@ -23,42 +39,292 @@ public class VertexService {
         return vv.add(rotationPoint);
     }
 
-    public static void convertVertexes(ImageInfo info, double gridWidth, double gridHeight, Vector4D[] res) {
-        float xMin = 0;
-        float yMin = 0;
-        float minDepth = 0;
-        float maxDepth = 1;
+    /** Same into res with w = 1, for a cache that keeps the eye across frames. */
+    static Vector4D convertToOrthogonal(Vector3D v, Vector3D rotationPoint, Vector4D res) {
+        var r = v.getX();
+        var phi = v.getY();
+        var zenith = v.getZ();
+
+        return res.set(r * Math.cos(zenith) * Math.sin(phi) + rotationPoint.getX(),
+                r * Math.sin(zenith) + rotationPoint.getY(),
+                -r * Math.cos(zenith) * Math.cos(phi) + rotationPoint.getZ(), 1);
+    }
 
-        var transformationMatrix = Matrix4x4.createTranslation(info.getPositionX(), info.getPositionY(), info.getPositionZ());
-        var rotationMatrix = Matrix4x4.createRotationX(info.getRotationX())
-                .multiply(Matrix4x4.createRotationY(info.getRotationY()));
-        var scaleMatrix = Matrix4x4.createScale(0.4d, 0.4d, 0.4d);
+    /** Transforms the mesh with the matrices of the cache, which the caller brought up to date. */
+    public static void convertVertexes(TransformCache transforms, MeshBuffer mesh, TriangleBuffer res) {
+        res.reset(mesh.vertexCount(), mesh.normalCount());
+        res.setViewport(transforms.getViewport());
 
-        var orthogonal = convertToOrthogonal(info.getCameraPosition(), info.getCameraTarget());
-        var viewMatrix = Matrix4x4.createView(orthogonal,
-                info.getCameraTarget(), info.getCamUp());
-        var projectionMatrix = Matrix4x4.createProjection(FOV, gridWidth / gridHeight, NEAR_PLANE_DISTANCE,
-                FAR_PLANE_DISTANCE);
-        var viewPortMatrix = Matrix4x4.createViewPort(xMin, yMin, gridWidth ,gridHeight, minDepth, maxDepth);
+        var transform = transforms.getProjectTransform();
+        RangeAction project = (first, count) -> VertexTransformer.get().project(transform, mesh.positions(), first,
+                count, res.getClip(), res.getOutcodes(), res.getVertexes());
 
-        var matrix = scaleMatrix.multiply(rotationMatrix)
-                .multiply(transformationMatrix)
-                .multiply(viewMatrix)
-                .multiply(projectionMatrix);
-        Vector4D result;
-        for (int i = 0; i < info.getVertexes().size(); i++) {
-            result = Vector4D.transform(info.getVertexes().get(i), matrix);
-            result = result.divide(Vector4D.createFromValue(result.getW()));
-            res[i] = Vector4D.transform(result, viewPortMatrix);
+        var meshlets = mesh.meshlets();
+        if (meshlets == null) {
+            forEachChunk(mesh.vertexCount(), project);
+            return;
         }
+
+        var eye = transforms.getModelEye();
+        CULLER.get().cull(meshlets, transforms.getMatrix(), eye.getX(), eye.getY(), eye.getZ(), res);
+        forEachVisibleMeshlet(meshlets.vertexOffsets(), res, project);
+    }
+
+    /**
+     * Picks the finest level of detail whose triangles stay MIN_TRIANGLE_PIXELS large, judged by the
+     * projected bounding sphere of the base mesh with half of the triangles facing away.
+     */
+    public static int selectLod(ImageInfo info, MeshLods lods, double gridHeight) {
+        var eye = convertToOrthogonal(info.getCameraPosition(), info.getCameraTarget());
+        return selectLod(createModelMatrix(info), MODEL_SCALE, eye.getX(), eye.getY(), eye.getZ(), lods, gridHeight);
+    }
+
+    /** Same for one instance of a scene, with the model matrix, its scale and the eye from the cache. */
+    public static int selectLod(TransformCache transforms, MeshLods lods, double gridHeight) {
+        var eye = transforms.getEye();
+        return selectLod(transforms.getModel(), transforms.getModelScale(), eye.getX(), eye.getY(), eye.getZ(), lods,
+                gridHeight);
     }
 
-    public static void transformNormals(List<Vector3D> normals, ImageInfo info, Vector3D[] res) {
-        var rotationMatrix = Matrix4x4.createRotationX(info.getRotationX())
-                .multiply(Matrix4x4.createRotationY(info.getRotationY()));
-        for (int i = 0; i < normals.size(); i++) {
-            var vec = Vector4D.transform(normals.get(i), rotationMatrix);
-            res[i] = new Vector3D(vec.getX(), vec.getY(), vec.getZ());
+    private static int selectLod(Matrix4x4 model, double modelScale, double eyeX, double eyeY, double eyeZ,
+                                 MeshLods lods, double gridHeight) {
+        if (lods.count() == 1) {
+            return 0;
         }
+        var bounds = lods.base().bounds();
+        var x = bounds.centerX();
+        var y = bounds.centerY();
+        var z = bounds.centerZ();
+        var dx = x * model.getM11() + y * model.getM21() + z * model.getM31() + model.getM41() - eyeX;
+        var dy = x * model.getM12() + y * model.getM22() + z * model.getM32() + model.getM42() - eyeY;
+        var dz = x * model.getM13() + y * model.getM23() + z * model.getM33() + model.getM43() - eyeZ;
+        var distance = dx * dx + dy * dy + dz * dz;
+        var radius = bounds.radius() * modelScale;
+        if (distance <= radius * radius) {
+            return 0;
+        }
+
+        var pixelRadius = radius / Math.sqrt(distance - radius * radius) / Math.tan(FOV / 2) * gridHeight / 2;
+        var frontPixels = Math.PI * pixelRadius * pixelRadius;
+        for (var level = 0; level < lods.count() - 1; level++) {
+            if (frontPixels / (lods.level(level).triangleCount() / 2d) >= MIN_TRIANGLE_PIXELS) {
+                return level;
+            }
+        }
+        return lods.count() - 1;
+    }
+
+    /** Whether the bounding sphere of the base mesh reaches into the view frustum of the instance. */
+    public static boolean isVisible(TransformCache transforms, MeshLods lods) {
+        var bounds = lods.base().bounds();
+        return bounds == null || CULLER.get().isVisible(transforms.getMatrix(), bounds.centerX(), bounds.centerY(),
+                bounds.centerZ(), bounds.radius());
+    }
+
+    static Matrix4x4 createModelMatrix(ImageInfo info) {
+        return createModelMatrix(info, new Matrix4x4(), new Matrix4x4());
+    }
+
+    /** Same into res, the scratch matrix holds the factors. The Into variants below work alike. */
+    static Matrix4x4 createModelMatrix(ImageInfo info, Matrix4x4 scratch, Matrix4x4 res) {
+        createRotationMatrix(info, scratch, res);
+        scratch.setScale(MODEL_SCALE, MODEL_SCALE, MODEL_SCALE).multiplyInto(res, res);
+        return res.multiplyInto(scratch.setTranslation(info.getPositionX(), info.getPositionY(), info.getPositionZ()),
+                res);
+    }
+
+    static Matrix4x4 createInverseModelMatrix(ImageInfo info, Matrix4x4 scratch, Matrix4x4 res) {
+        res.setTranslation(-info.getPositionX(), -info.getPositionY(), -info.getPositionZ());
+        res.multiplyInto(scratch.setRotationY(-info.getRotationY()), res);
+        res.multiplyInto(scratch.setRotationX(-info.getRotationX()), res);
+        return res.multiplyInto(scratch.setScale(1 / MODEL_SCALE, 1 / MODEL_SCALE, 1 / MODEL_SCALE), res);
+    }
+
+    static Matrix4x4 createRotationMatrix(ImageInfo info) {
+        return createRotationMatrix(info, new Matrix4x4(), new Matrix4x4());
+    }
+
+    static Matrix4x4 createRotationMatrix(ImageInfo info, Matrix4x4 scratch, Matrix4x4 res) {
+        return res.setRotationX(info.getRotationX()).multiplyInto(scratch.setRotationY(info.getRotationY()), res);
+    }
+
+    /** The view matrix from the eye {@link #convertToOrthogonal(Vector3D, Vector3D, Vector4D)} wrote. */
+    static Matrix4x4 createViewMatrix(ImageInfo info, Vector4D eye, Matrix4x4 res) {
+        return res.setView(eye.getX(), eye.getY(), eye.getZ(), info.getCameraTarget(), info.getCamUp());
+    }
+
+    static Matrix4x4 createProjection(double gridWidth, double gridHeight) {
+        return Matrix4x4.createProjection(FOV, gridWidth / gridHeight, NEAR_PLANE_DISTANCE, FAR_PLANE_DISTANCE);
+    }
+
+    static Matrix4x4 createViewport(double gridWidth, double gridHeight) {
+        return Matrix4x4.createViewPort(0, 0, gridWidth, gridHeight, 0, 1);
+    }
+
+    @FunctionalInterface
+    private interface RangeAction {
+        void run(int first, int count);
+    }
+
+    private static void forEachChunk(int count, RangeAction action) {
+        if (count < PARALLEL_VERTEXES) {
+            action.run(0, count);
+            return;
+        }
+        IntStream.range(0, (count + CHUNK_VERTEXES - 1) / CHUNK_VERTEXES)
+                .parallel()
+                .forEach(chunk -> {
+                    var first = chunk * CHUNK_VERTEXES;
+                    action.run(first, Math.min(CHUNK_VERTEXES, count - first));
+                });
+    }
+
+    /** Runs the action on the ranges of the visible meshlets, in parallel groups when they are large. */
+    private static void forEachVisibleMeshlet(int[] offsets, TriangleBuffer res, RangeAction action) {
+        var visible = res.getVisibleMeshlets();
+        var visibleCount = res.getVisibleMeshletCount();
+        var total = 0;
+        for (var i = 0; i < visibleCount; i++) {
+            total += offsets[visible[i] + 1] - offsets[visible[i]];
+        }
+        if (total < PARALLEL_VERTEXES) {
+            forEachVisibleMeshlet(offsets, visible, 0, visibleCount, action);
+            return;
+        }
+        var groupSize = Math.max(1, (int) ((long) visibleCount * CHUNK_VERTEXES / total));
+        IntStream.range(0, (visibleCount + groupSize - 1) / groupSize)
+                .parallel()
+                .forEach(group -> forEachVisibleMeshlet(offsets, visible, group * groupSize,
+                        Math.min(visibleCount, (group + 1) * groupSize), action));
+    }
+
+    private static void forEachVisibleMeshlet(int[] offsets, int[] visible, int from, int to, RangeAction action) {
+        for (var i = from; i < to; i++) {
+            var m = visible[i];
+            action.run(offsets[m], offsets[m + 1] - offsets[m]);
+        }
+    }
+
+    public static void transformNormals(MeshBuffer mesh, ImageInfo info, TriangleBuffer res) {
+        var transform = VertexTransformer.Transform.of(createRotationMatrix(info));
+        RangeAction rotate = (first, count) -> {
+            VertexTransformer.get().rotate(transform, mesh.normals(), first, count, res.getNormals());
+            copyUvs(mesh, res, first, count);
+        };
+
+        var meshlets = mesh.meshlets();
+        if (meshlets == null) {
+            forEachChunk(mesh.normalCount(), rotate);
+            return;
+        }
+        forEachVisibleMeshlet(meshlets.normalOffsets(), res, rotate);
+    }
+
+    /**
+     * Cached variant: rotates every normal of the mesh, visible or not, and only when the rotation, the mesh or the
+     * buffer changed since the last call. Camera moves and translations then cost no normal work at all.
+     */
+    public static void transformNormals(MeshBuffer mesh, TransformCache transforms, TriangleBuffer res) {
+        if (transforms.hasNormals(mesh, res)) {
+            return;
+        }
+        var transform = transforms.getRotateTransform();
+        forEachChunk(mesh.normalCount(), (first, count) -> {
+            VertexTransformer.get().rotate(transform, mesh.normals(), first, count, res.getNormals());
+            copyUvs(mesh, res, first, count);
+        });
+        transforms.setNormals(mesh, res);
+    }
+
+    // texture coordinates share the normal slots, so they travel with the normals into the buffer
+    private static void copyUvs(MeshBuffer mesh, TriangleBuffer res, int first, int count) {
+        var surface = mesh.surface();
+        if (surface != null) {
+            System.arraycopy(surface.uvs(), first * 2, res.getUvs(), first * 2, count * 2);
+        }
+    }
+
+    /**
+     * Gouraud lighting: evaluates the shading model once per welded vertex instead of per pixel,
+     * including the vertexes the clipper appended. Must run after {@link #assembleTriangles}.
+     */
+    public static void shadeVertexes(MeshBuffer mesh, TriangleBuffer res, Vector3D lightDirection,
+                                     Vector3D viewDirection) {
+        var meshlets = mesh.meshlets();
+        if (meshlets == null) {
+            shadeNormals(res, lightDirection, viewDirection, 0, mesh.normalCount());
+        } else {
+            var normalOffsets = meshlets.normalOffsets();
+            var visible = res.getVisibleMeshlets();
+            for (var i = 0; i < res.getVisibleMeshletCount(); i++) {
+                var m = visible[i];
+                shadeNormals(res, lightDirection, viewDirection, normalOffsets[m], normalOffsets[m + 1]);
+            }
+        }
+        shadeNormals(res, lightDirection, viewDirection, mesh.normalCount(), res.getNormalCount());
+        res.setVertexColors(true);
+    }
+
+    private static void shadeNormals(TriangleBuffer res, Vector3D lightDirection, Vector3D viewDirection,
+                                     int from, int to) {
+        var normals = res.getNormals();
+        var colors = res.getColors();
+        for (var n = from; n < to; n++) {
+            colors[n] = DrawerService.getPointColor(normals[n * 3], normals[n * 3 + 1], normals[n * 3 + 2],
+                    lightDirection, viewDirection);
+        }
+    }
+
+    public static void assembleTriangles(MeshBuffer mesh, TriangleBuffer res) {
+        FrameProfiler.add(Counter.TRIANGLES_SUBMITTED, mesh.triangleCount());
+        var surface = mesh.surface();
+        res.setMaterials(surface != null ? surface.materials() : null);
+        var meshlets = mesh.meshlets();
+        if (meshlets == null) {
+            assembleTriangles(mesh, res, 0, mesh.triangleCount());
+            return;
+        }
+
+        var triangleOffsets = meshlets.triangleOffsets();
+        var visible = res.getVisibleMeshlets();
+        for (var i = 0; i < res.getVisibleMeshletCount(); i++) {
+            var m = visible[i];
+            assembleTriangles(mesh, res, triangleOffsets[m], triangleOffsets[m + 1]);
+        }
+    }
+
+    private static void assembleTriangles(MeshBuffer mesh, TriangleBuffer res, int from, int to) {
+        var vertexIndexes = mesh.vertexIndexes();
+        var normalIndexes = mesh.normalIndexes();
+        var materialIndexes = mesh.surface() != null ? mesh.surface().materialIndexes() : null;
+        var outcodes = res.getOutcodes();
+        var culled = 0;
+        var clipped = 0;
+
+        for (int t = from, o = from * 3; t < to; t++, o += 3) {
+            var i0 = vertexIndexes[o];
+            var i1 = vertexIndexes[o + 1];
+            var i2 = vertexIndexes[o + 2];
+            var c0 = outcodes[i0];
+            var c1 = outcodes[i1];
+            var c2 = outcodes[i2];
+            if ((c0 & c1 & c2) != 0) {
+                culled++;
+                continue;
+            }
+
+            var material = materialIndexes != null ? materialIndexes[o] : -1;
+            var planes = (c0 | c1 | c2) & TriangleClipper.CLIP_PLANES;
+            if (planes == 0) {
+                res.addTriangle(i0, i1, i2, normalIndexes[o], normalIndexes[o + 1], normalIndexes[o + 2], material);
+            } else {
+                clipped++;
+                CLIPPER.get().clip(res, i0, i1, i2, normalIndexes[o], normalIndexes[o + 1], normalIndexes[o + 2],
+                        material, planes);
+            }
+        }
+
+        FrameProfiler.add(Counter.TRIANGLES_FRUSTUM_CULLED, culled);
+        FrameProfiler.add(Counter.TRIANGLES_CLIPPED, clipped);
     }
 }
@@ -0,0 +1,125 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Matrix4x4;
+
+/**
+ * Batch vertex transform over flat float arrays. {@link #project} fuses the model-view-projection
+ * transform, the clip outcodes, the perspective divide and the viewport into one pass, so every
+ * position is read once and no intermediate vector is allocated.
+ */
+public abstract class VertexTransformer {
+
+  // widest lane count the kernels load rows for, 512 bit
+  static final int MAX_LANES = 16;
+
+  private static final VertexTransformer INSTANCE =
+      VectorSupport.load(
+          VertexTransformer.class, "VectorVertexTransformer", ScalarVertexTransformer.INSTANCE);
+
+  /**
+   * A row-vector matrix in float, each row repeated to {@link #MAX_LANES} lanes so a kernel of
+   * any width loads it without a shuffle. The viewport is reduced to a scale and an offset per
+   * axis, which is all {@link Matrix4x4#createViewPort} produces.
+   */
+  public record Transform(float[] rows, float[] viewportScale, float[] viewportOffset) {
+
+    public static Transform of(Matrix4x4 matrix) {
+      return new Transform(new float[4 * MAX_LANES], null, null).set(matrix);
+    }
+
+    public static Transform of(Matrix4x4 matrix, Matrix4x4 viewport) {
+      return new Transform(new float[4 * MAX_LANES], new float[MAX_LANES], new float[MAX_LANES])
+          .set(matrix, viewport);
+    }
+
+    /** Overwrites the rows in place, for a cache that keeps its transform across frames. */
+    public Transform set(Matrix4x4 m) {
+      repeat(rows, 0, m.getM11(), m.getM12(), m.getM13(), m.getM14());
+      repeat(rows, MAX_LANES, m.getM21(), m.getM22(), m.getM23(), m.getM24());
+      repeat(rows, 2 * MAX_LANES, m.getM31(), m.getM32(), m.getM33(), m.getM34());
+      repeat(rows, 3 * MAX_LANES, m.getM41(), m.getM42(), m.getM43(), m.getM44());
+      return this;
+    }
+
+    /** Same with the viewport, for a transform made by {@link #of(Matrix4x4, Matrix4x4)}. */
+    public Transform set(Matrix4x4 matrix, Matrix4x4 viewport) {
+      repeat(viewportScale, 0, viewport.getM11(), viewport.getM22(), viewport.getM33(), 0);
+      repeat(viewportOffset, 0, viewport.getM41(), viewport.getM42(), viewport.getM43(), 1);
+      return set(matrix);
+    }
+
+    float m(int row, int column) {
+      return rows[row * MAX_LANES + column];
+    }
+
+    private static void repeat(float[] lanes, int offset, double a, double b, double c, double d) {
+      for (var i = offset; i < offset + MAX_LANES; i += 4) {
+        lanes[i] = (float) a;
+        lanes[i + 1] = (float) b;
+        lanes[i + 2] = (float) c;
+        lanes[i + 3] = (float) d;
+      }
+    }
+  }
+
+  /** The vector kernel when the JVM runs with --add-modules jdk.incubator.vector. */
+  public static VertexTransformer get() {
+    return INSTANCE;
+  }
+
+  public static VertexTransformer scalar() {
+    return ScalarVertexTransformer.INSTANCE;
+  }
+
+  public abstract String getName();
+
+  /**
+   * Transforms positions {@code [first, first + count)} of xyz triples into clip space, writes
+   * their outcodes and their viewport coordinates followed by 1 / w, which perspective-correct
+   * texturing interpolates. The outputs hold four floats per vertex, indexed like the input.
+   */
+  public abstract void project(
+      Transform transform,
+      float[] positions,
+      int first,
+      int count,
+      float[] clip,
+      int[] outcodes,
+      float[] vertexes);
+
+  /** Rotates normals {@code [first, first + count)} by the upper 3x3 of the transform. */
+  public abstract void rotate(Transform transform, float[] normals, int first, int count,
+      float[] dst);
+
+  static void project(
+      Transform t, float[] positions, int i, float[] clip, int[] outcodes, float[] vertexes) {
+    var s = i * 3;
+    var o = i * 4;
+    var x = positions[s];
+    var y = positions[s + 1];
+    var z = positions[s + 2];
+    var cx = x * t.m(0, 0) + y * t.m(1, 0) + z * t.m(2, 0) + t.m(3, 0);
+    var cy = x * t.m(0, 1) + y * t.m(1, 1) + z * t.m(2, 1) + t.m(3, 1);
+    var cz = x * t.m(0, 2) + y * t.m(1, 2) + z * t.m(2, 2) + t.m(3, 2);
+    var cw = x * t.m(0, 3) + y * t.m(1, 3) + z * t.m(2, 3) + t.m(3, 3);
+    clip[o] = cx;
+    clip[o + 1] = cy;
+    clip[o + 2] = cz;
+    clip[o + 3] = cw;
+    outcodes[i] = TriangleClipper.outcode(cx, cy, cz, cw);
+    vertexes[o] = cx / cw * t.viewportScale()[0] + t.viewportOffset()[0];
+    vertexes[o + 1] = cy / cw * t.viewportScale()[1] + t.viewportOffset()[1];
+    vertexes[o + 2] = cz / cw * t.viewportScale()[2] + t.viewportOffset()[2];
+    vertexes[o + 3] = 1 / cw;
+  }
+
+  static void rotate(Transform t, float[] normals, int i, float[] dst) {
+    var o = i * 3;
+    var x = normals[o];
+    var y = normals[o + 1];
+    var z = normals[o + 2];
+    dst[o] = x * t.m(0, 0) + y * t.m(1, 0) + z * t.m(2, 0);
+    dst[o + 1] = x * t.m(0, 1) + y * t.m(1, 1) + z * t.m(2, 1);
+    dst[o + 2] = x * t.m(0, 2) + y * t.m(1, 2) + z * t.m(2, 2);
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+/**
+ * A value per thread for scratch used inside parallel streams. The common pool starts its workers
+ * as innocuous threads on JDK 17, which erase their ThreadLocals after every top-level task, so a
+ * ThreadLocal would build its scratch again for every task a worker takes. Common-pool workers
+ * get a slot by their pool index instead, which no two live workers share; other threads keep a
+ * ThreadLocal.
+ */
+final class WorkerLocal<T> {
+
+  private final Supplier<? extends T> initial;
+  private final ThreadLocal<T> others;
+  // copied on write, a worker reads its own slot without a lock
+  private volatile Object[] workers = new Object[0];
+
+  WorkerLocal(Supplier<? extends T> initial) {
+    this.initial = initial;
+    this.others = ThreadLocal.withInitial(initial);
+  }
+
+  @SuppressWarnings("unchecked")
+  T get() {
+    var thread = Thread.currentThread();
+    if (!(thread instanceof ForkJoinWorkerThread)
+        || ((ForkJoinWorkerThread) thread).getPool() != ForkJoinPool.commonPool()) {
+      return others.get();
+    }
+    var index = ((ForkJoinWorkerThread) thread).getPoolIndex();
+    var values = workers;
+    if (index < values.length && values[index] != null) {
+      return (T) values[index];
+    }
+    return create(index);
+  }
+
+  private synchronized T create(int index) {
+    var values = Arrays.copyOf(workers, Math.max(workers.length, index + 1));
+    var value = initial.get();
+    values[index] = value;
+    workers = values;
+    return value;
+  }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.util;
+
+import java.util.Arrays;
+
+public class FloatArrayList {
+
+  private float[] data;
+  private int size;
+
+  public FloatArrayList() {
+    this(1024);
+  }
+
+  public FloatArrayList(int capacity) {
+    data = new float[Math.max(capacity, 16)];
+  }
+
+  public void add(float value) {
+    if (size == data.length) {
+      data = Arrays.copyOf(data, data.length * 2);
+    }
+    data[size++] = value;
+  }
+
+  public void add(float x, float y, float z) {
+    if (size + 3 > data.length) {
+      data = Arrays.copyOf(data, data.length * 2);
+    }
+    data[size] = x;
+    data[size + 1] = y;
+    data[size + 2] = z;
+    size += 3;
+  }
+
+  public float get(int index) {
+    return data[index];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void copyTo(float[] dst, int offset) {
+    System.arraycopy(data, 0, dst, offset, size);
+  }
+
+  public float[] toArray() {
+    return Arrays.copyOf(data, size);
+  }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.util;
+
+import java.util.Arrays;
+
+public class IntArrayList {
+
+  private int[] data;
+  private int size;
+
+  public IntArrayList() {
+    this(1024);
+  }
+
+  public IntArrayList(int capacity) {
+    data = new int[Math.max(capacity, 16)];
+  }
+
+  public void add(int value) {
+    if (size == data.length) {
+      data = Arrays.copyOf(data, data.length * 2);
+    }
+    data[size++] = value;
+  }
+
+  public int get(int index) {
+    return data[index];
+  }
+
+  public void set(int index, int value) {
+    data[index] = value;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void copyTo(int[] dst, int offset) {
+    System.arraycopy(data, 0, dst, offset, size);
+  }
+
+  public int[] toArray() {
+    return Arrays.copyOf(data, size);
+  }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+public class PngWriter {
+
+  private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+  public static void write(Path path, int[] argb, int width, int height) throws IOException {
+    var pixels = new ByteArrayOutputStream(width * height * 2);
+    var deflater = new Deflater(Deflater.BEST_SPEED);
+    try (var out = new DeflaterOutputStream(pixels, deflater, 1 << 16)) {
+      var row = new byte[1 + width * 4];
+      for (var y = 0; y < height; y++) {
+        for (int x = 0, i = 1; x < width; x++, i += 4) {
+          var color = argb[y * width + x];
+          row[i] = (byte) (color >> 16);
+          row[i + 1] = (byte) (color >> 8);
+          row[i + 2] = (byte) color;
+          row[i + 3] = (byte) (color >>> 24);
+        }
+        out.write(row);
+      }
+    } finally {
+      deflater.end();
+    }
+
+    try (var out = new DataOutputStream(Files.newOutputStream(path))) {
+      out.write(SIGNATURE);
+
+      var header = new ByteArrayOutputStream(13);
+      var headerData = new DataOutputStream(header);
+      headerData.writeInt(width);
+      headerData.writeInt(height);
+      headerData.writeByte(8);
+      headerData.writeByte(6);
+      headerData.writeByte(0);
+      headerData.writeByte(0);
+      headerData.writeByte(0);
+      writeChunk(out, "IHDR", header.toByteArray());
+      writeChunk(out, "IDAT", pixels.toByteArray());
+      writeChunk(out, "IEND", new byte[0]);
+    }
+  }
+
+  private static void writeChunk(DataOutputStream out, String type, byte[] data)
+      throws IOException {
+    var typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+    var crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data);
+    out.writeInt(data.length);
+    out.write(typeBytes);
+    out.write(data);
+    out.writeInt((int) crc.getValue());
+  }
+}
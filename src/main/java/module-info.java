@@ -1,10 +1,14 @@
 module com.example.demo {
-    requires javafx.controls;
-    requires javafx.fxml;
-    requires lombok;
+    // only the viewer needs JavaFX, RenderCli starts without it; the launcher adds the modules
+    requires static javafx.controls;
+    requires static javafx.fxml;
+    requires static lombok;
     requires commons.math3;
+    requires jdk.jfr;
+    requires java.desktop;
+    requires static jdk.incubator.vector;
 
 
     opens com.example.demo to javafx.fxml;
     exports com.example.demo;
-}
\ No newline at end of file
+}
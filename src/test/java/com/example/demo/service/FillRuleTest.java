@@ -0,0 +1,196 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.model.Bgra32Bitmap;
+import com.example.demo.model.DepthBuffer;
+import com.example.demo.model.MultisampleBuffer;
+import com.example.demo.model.TileBins;
+import com.example.demo.model.TriangleBuffer;
+import java.util.Random;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.junit.jupiter.api.Test;
+
+/** The top-left rule of the fixed-point raster, triangles sharing an edge never share a pixel. */
+class FillRuleTest {
+
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 400;
+
+  @Test
+  void gridCoversEveryPixelOnce() {
+    for (var seed = 0; seed < 8; seed++) {
+      // the outer border lies on pixel corners, so the grid owns exactly the centres inside it
+      assertCoveredOnce(grid(new Random(seed)), 600 * 360);
+    }
+  }
+
+  @Test
+  void multisampledGridDoesNotDependOnOrder() {
+    for (var samples : new int[] {4, 8}) {
+      for (var seed = 0; seed < 4; seed++) {
+        // every triangle has a color of its own, a sample owned by two would show the later one
+        var triangles = grid(new Random(seed));
+        triangles.setVertexColors(true);
+        var reversed = reversed(triangles);
+        reversed.setVertexColors(true);
+        assertArrayEquals(
+            drawMultisampled(triangles, samples),
+            drawMultisampled(reversed, samples),
+            samples + " samples, seed " + seed);
+      }
+    }
+  }
+
+  @Test
+  void fanAroundPixelCentreCoversEveryPixelOnce() {
+    var triangles = new TriangleBuffer();
+    triangles.reset(0, 0);
+    var centre = triangles.addVertex(320.5f, 200.5f, 0.5f, 1);
+    var spokes = 37;
+    var rim = new int[spokes];
+    for (var i = 0; i < spokes; i++) {
+      var angle = 2 * Math.PI * i / spokes;
+      rim[i] =
+          triangles.addVertex(
+              (float) (320.5 + 150 * Math.cos(angle)),
+              (float) (200.5 + 150 * Math.sin(angle)),
+              0.5f,
+              1);
+    }
+    var random = new Random(37);
+    for (var i = 0; i < spokes; i++) {
+      addFront(triangles, centre, rim[i], rim[(i + 1) % spokes], random);
+    }
+
+    var depthBuffer = assertCoveredOnce(triangles, -1);
+    for (var y = 100; y < 300; y++) {
+      for (var x = 220; x < 420; x++) {
+        var dx = x + 0.5 - 320.5;
+        var dy = y + 0.5 - 200.5;
+        if (dx * dx + dy * dy < 140 * 140) {
+          assertTrue(depthBuffer.get(x, y) != DepthBuffer.FAR, "hole at " + x + "," + y);
+        }
+      }
+    }
+  }
+
+  /** A jittered grid of two triangles per cell, each with a normal and flat color of its own. */
+  private static TriangleBuffer grid(Random random) {
+    var triangles = new TriangleBuffer();
+    triangles.reset(0, 0);
+    var columns = 23;
+    var rows = 17;
+    var ids = new int[rows + 1][columns + 1];
+    for (var j = 0; j <= rows; j++) {
+      for (var i = 0; i <= columns; i++) {
+        var x = 20 + i * 600f / columns;
+        var y = 20 + j * 360f / rows;
+        // the border stays on pixel corners, inner corners move and some snap onto the ties
+        var snap = random.nextInt(3) == 0;
+        if (i > 0 && i < columns) {
+          x += random.nextFloat() * 10 - 5;
+          if (snap) {
+            x = Math.round(x) + (random.nextBoolean() ? 0.5f : 0);
+          }
+        }
+        if (j > 0 && j < rows) {
+          y += random.nextFloat() * 10 - 5;
+          if (snap) {
+            y = Math.round(y) + (random.nextBoolean() ? 0.5f : 0);
+          }
+        }
+        ids[j][i] = triangles.addVertex(x, y, 0.5f, 1);
+      }
+    }
+    for (var j = 0; j < rows; j++) {
+      for (var i = 0; i < columns; i++) {
+        addFront(triangles, ids[j][i], ids[j + 1][i], ids[j][i + 1], random);
+        addFront(triangles, ids[j][i + 1], ids[j + 1][i], ids[j + 1][i + 1], random);
+      }
+    }
+    return triangles;
+  }
+
+  private static TriangleBuffer reversed(TriangleBuffer triangles) {
+    var res = new TriangleBuffer();
+    res.reset(0, 0);
+    var vertexes = triangles.getVertexes();
+    for (var v = 0; v < triangles.getVertexCount(); v++) {
+      res.addVertex(vertexes[v * 4], vertexes[v * 4 + 1], vertexes[v * 4 + 2], vertexes[v * 4 + 3]);
+    }
+    var normals = triangles.getNormals();
+    for (var n = 0; n < triangles.getNormalCount(); n++) {
+      res.addNormal(normals[n * 3], normals[n * 3 + 1], normals[n * 3 + 2]);
+      res.getColors()[n] = triangles.getColors()[n];
+    }
+    var vertexIndexes = triangles.getVertexIndexes();
+    var normalIndexes = triangles.getNormalIndexes();
+    for (var t = triangles.getTriangleCount() - 1; t >= 0; t--) {
+      res.addTriangle(
+          vertexIndexes[t * 3],
+          vertexIndexes[t * 3 + 1],
+          vertexIndexes[t * 3 + 2],
+          normalIndexes[t * 3],
+          normalIndexes[t * 3 + 1],
+          normalIndexes[t * 3 + 2]);
+    }
+    return res;
+  }
+
+  private static int[] drawMultisampled(TriangleBuffer triangles, int sampleCount) {
+    var bitmap = new Bgra32Bitmap(WIDTH, HEIGHT);
+    var samples = new MultisampleBuffer(WIDTH, HEIGHT, sampleCount, DrawerService.TILE_SIZE);
+    var bins = new TileBins(WIDTH, HEIGHT, DrawerService.TILE_SIZE);
+    DrawerService.drawModelMultisample(
+        triangles, bitmap, samples, bins, RenderPipeline.LIGHT_DIRECTION, new Vector3D(0, 0, 1));
+    bitmap.swap();
+    return bitmap.getFrontBuffer();
+  }
+
+  /** Draws the triangles and checks no pixel was tested twice, and the area when it is known. */
+  private static DepthBuffer assertCoveredOnce(TriangleBuffer triangles, int area) {
+    assertTrue(FrameProfiler.ENABLED, "needs -Drender.profile=true");
+    var bitmap = new Bgra32Bitmap(WIDTH, HEIGHT);
+    var depthBuffer = new DepthBuffer(WIDTH, HEIGHT);
+    var bins = new TileBins(WIDTH, HEIGHT, DrawerService.TILE_SIZE);
+
+    FrameProfiler.beginFrame();
+    var light = RenderPipeline.LIGHT_DIRECTION;
+    DrawerService.drawModelTiledFixedPoint(
+        triangles, bitmap, depthBuffer, bins, light, new Vector3D(0, 0, 1));
+    var stats = FrameProfiler.endFrame();
+
+    var covered = 0;
+    for (var y = 0; y < HEIGHT; y++) {
+      for (var x = 0; x < WIDTH; x++) {
+        if (depthBuffer.get(x, y) != DepthBuffer.FAR) {
+          covered++;
+        }
+      }
+    }
+    assertEquals(0, stats.count(FrameProfiler.Counter.PIXELS_OVERDRAWN));
+    assertEquals(covered, stats.count(FrameProfiler.Counter.PIXELS_TESTED));
+    if (area >= 0) {
+      assertEquals(area, covered);
+    }
+    return depthBuffer;
+  }
+
+  /** Adds the triangle wound to face the camera, so back-face culling keeps it. */
+  private static void addFront(TriangleBuffer triangles, int a, int b, int c, Random random) {
+    var normal = triangles.addNormal(0, 0, -1);
+    triangles.getColors()[normal] = 0xff000000 | random.nextInt(1 << 24);
+    var v = triangles.getVertexes();
+    var area =
+        (v[b * 4] - v[a * 4]) * (v[c * 4 + 1] - v[a * 4 + 1])
+            - (v[b * 4 + 1] - v[a * 4 + 1]) * (v[c * 4] - v[a * 4]);
+    if (area > 0) {
+      triangles.addTriangle(a, c, b, normal, normal, normal);
+    } else {
+      triangles.addTriangle(a, b, c, normal, normal, normal);
+    }
+  }
+}
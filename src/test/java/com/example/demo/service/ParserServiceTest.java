@@ -0,0 +1,198 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.util.FloatArrayList;
+import com.example.demo.util.IntArrayList;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** The chunked OBJ parser against arrays written down while the file was generated. */
+class ParserServiceTest {
+
+  // a few minimum-size chunks, so blocks and their back references straddle chunk borders
+  private static final int BLOCKS = 12_000;
+
+  @TempDir Path folder;
+
+  @Test
+  void floatForms() {
+    var chunk = parse("v 1.5e3 -2.5E-2 +.5\nv 7 -0.125e+1 3.\nvt 1e0 25E-2\nvn -1 0 2.5e-1\n");
+    assertArrayEquals(new float[] {1500, -0.025f, 0.5f, 7, -1.25f, 3}, chunk.positions.toArray());
+    assertArrayEquals(new float[] {1, 0.25f}, chunk.uvs.toArray());
+    assertArrayEquals(new float[] {-1, 0, 0.25f}, chunk.normals.toArray());
+  }
+
+  @Test
+  void faceForms() {
+    var chunk =
+        parse(
+            "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nvt 0 0\nvt 1 0\nvt 1 1\nvn 0 0 1\n"
+                + "f 1//1 2//1 3//1\r\n"
+                + "f -4/-3/-1 -2/-1/-1 -1/1/1\n"
+                + "f 1/1 2/2 3/3 4/1\n");
+    assertArrayEquals(
+        new int[] {0, 1, 2, 0, 2, 3, 0, 1, 2, 0, 2, 3}, chunk.vertexIndexes.toArray());
+    assertArrayEquals(
+        new int[] {0, 0, 0, 0, 0, 0, -1, -1, -1, -1, -1, -1}, chunk.normalIndexes.toArray());
+    assertArrayEquals(new int[] {-1, -1, -1, 0, 2, 0, 0, 1, 2, 0, 2, 0}, chunk.uvIndexes.toArray());
+  }
+
+  @Test
+  void chunkedParseMatchesGeneratedFile() throws IOException {
+    var random = new Random(7);
+    var text = new StringBuilder();
+    var positions = new FloatArrayList();
+    var normals = new FloatArrayList();
+    var uvs = new FloatArrayList();
+    var vertexIndexes = new IntArrayList();
+    var normalIndexes = new IntArrayList();
+    var uvIndexes = new IntArrayList();
+
+    for (var b = 0; b < BLOCKS; b++) {
+      // CRLF, comments and blank lines in some blocks, plain LF in the others
+      var end = b % 3 == 0 ? "\r\n" : "\n";
+      if (b % 5 == 0) {
+        text.append("# block ").append(b).append(end).append(end);
+      }
+      for (var i = 0; i < 4; i++) {
+        text.append('v');
+        for (var axis = 0; axis < 3; axis++) {
+          // quarters are exact in binary, so every written form parses to the same float
+          var value = BigDecimal.valueOf(random.nextInt(8001) - 4000).divide(BigDecimal.valueOf(4));
+          text.append(' ').append(format(value, random));
+          positions.add(value.floatValue());
+        }
+        text.append(end);
+      }
+      var normal = BigDecimal.valueOf(random.nextInt(9) - 4).divide(BigDecimal.valueOf(4));
+      text.append("vn 0 ").append(format(normal, random)).append(" 1").append(end);
+      normals.add(0, normal.floatValue(), 1);
+      for (var i = 0; i < 4; i++) {
+        var u = BigDecimal.valueOf(random.nextInt(65)).divide(BigDecimal.valueOf(64));
+        var v = BigDecimal.valueOf(random.nextInt(65)).divide(BigDecimal.valueOf(64));
+        text.append("vt ").append(format(u, random)).append(' ').append(format(v, random));
+        text.append(end);
+        uvs.add(u.floatValue());
+        uvs.add(v.floatValue());
+      }
+
+      var first = 4 * b;
+      text.append("f -4//-1 -3//-1 -2//-1").append(end);
+      addTriangle(vertexIndexes, first, first + 1, first + 2);
+      addTriangle(normalIndexes, b, b, b);
+      addTriangle(uvIndexes, -1, -1, -1);
+
+      text.append("f -4/-4/-1 -2/-2/-1 -1/-1/-1").append(end);
+      addTriangle(vertexIndexes, first, first + 2, first + 3);
+      addTriangle(normalIndexes, b, b, b);
+      addTriangle(uvIndexes, first, first + 2, first + 3);
+
+      if (b > 0) {
+        // absolute and relative corners reaching into the block before, maybe the chunk before
+        var q = first - 2;
+        text.append('f');
+        for (var i = 1; i <= 4; i++) {
+          text.append(' ').append(q + i).append('/').append(q + i);
+        }
+        text.append(end);
+        addTriangle(vertexIndexes, q, q + 1, q + 2);
+        addTriangle(vertexIndexes, q, q + 2, q + 3);
+        addTriangle(uvIndexes, q, q + 1, q + 2);
+        addTriangle(uvIndexes, q, q + 2, q + 3);
+        addTriangle(normalIndexes, -1, -1, -1);
+        addTriangle(normalIndexes, -1, -1, -1);
+
+        text.append("f -6 -5 -1").append(end);
+        addTriangle(vertexIndexes, first - 2, first - 1, first + 3);
+        addTriangle(normalIndexes, -1, -1, -1);
+        addTriangle(uvIndexes, -1, -1, -1);
+      }
+    }
+
+    var obj = folder.resolve("generated.obj");
+    Files.writeString(obj, text, StandardCharsets.US_ASCII);
+    assertTrue(Files.size(obj) > 2 * ParserService.MIN_CHUNK_SIZE, "too small to be split");
+
+    var mesh = ParserService.parse(obj);
+    assertArrayEquals(positions.toArray(), mesh.positions());
+    assertArrayEquals(vertexIndexes.toArray(), mesh.vertexIndexes());
+    assertArrayEquals(uvs.toArray(), mesh.surface().uvs());
+    assertArrayEquals(uvIndexes.toArray(), mesh.surface().uvIndexes());
+
+    // faces without normals get a face normal each, appended after the file's own
+    var parsedNormals = mesh.normals();
+    var expectedNormals = normals.toArray();
+    assertArrayEquals(expectedNormals, Arrays.copyOf(parsedNormals, expectedNormals.length));
+    var generated = expectedNormals.length / 3;
+    var expectedNormalIndexes = normalIndexes.toArray();
+    for (var t = 0; t < expectedNormalIndexes.length; t += 3) {
+      if (expectedNormalIndexes[t] >= 0) {
+        continue;
+      }
+      for (var i = t; i < t + 3; i++) {
+        expectedNormalIndexes[i] = generated;
+      }
+      assertFaceNormal(mesh.positions(), mesh.vertexIndexes(), t, parsedNormals, generated);
+      generated++;
+    }
+    assertEquals(generated * 3, parsedNormals.length);
+    assertArrayEquals(expectedNormalIndexes, mesh.normalIndexes());
+  }
+
+  private static ObjChunk parse(String text) {
+    return new ObjChunk(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII))).parse();
+  }
+
+  /** The value as plain decimal or in scientific form, with a leading plus now and then. */
+  private static String format(BigDecimal value, Random random) {
+    var sign = value.signum() > 0 && random.nextBoolean() ? "+" : "";
+    if (random.nextBoolean()) {
+      return sign + value.toPlainString();
+    }
+    var exponent = random.nextInt(7) - 3;
+    var marker = random.nextBoolean() ? "e" : "E";
+    var exponentSign = exponent >= 0 && random.nextBoolean() ? "+" : "";
+    return sign
+        + value.movePointLeft(exponent).toPlainString()
+        + marker
+        + exponentSign
+        + exponent;
+  }
+
+  private static void addTriangle(IntArrayList list, int a, int b, int c) {
+    list.add(a);
+    list.add(b);
+    list.add(c);
+  }
+
+  private static void assertFaceNormal(
+      float[] positions, int[] vertexIndexes, int t, float[] normals, int normal) {
+    var a = vertexIndexes[t] * 3;
+    var b = vertexIndexes[t + 1] * 3;
+    var c = vertexIndexes[t + 2] * 3;
+    double abX = positions[b] - positions[a];
+    double abY = positions[b + 1] - positions[a + 1];
+    double abZ = positions[b + 2] - positions[a + 2];
+    double acX = positions[c] - positions[a];
+    double acY = positions[c + 1] - positions[a + 1];
+    double acZ = positions[c + 2] - positions[a + 2];
+    var x = abY * acZ - abZ * acY;
+    var y = abZ * acX - abX * acZ;
+    var z = abX * acY - abY * acX;
+    var length = Math.sqrt(x * x + y * y + z * z);
+    var n = normal * 3;
+    var dot = (x * normals[n] + y * normals[n + 1] + z * normals[n + 2]) / length;
+    assertEquals(1, dot, 1e-5, "face normal of triangle " + t / 3);
+  }
+}
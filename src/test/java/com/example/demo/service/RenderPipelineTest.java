@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.example.demo.model.ImageInfo;
+import com.example.demo.model.Matrix4x4;
+import com.example.demo.model.MeshLods;
+import com.example.demo.model.Scene;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/** What {@link RenderPipeline} keeps between frames must never show in the picture. */
+class RenderPipelineTest {
+
+  private static final int WIDTH = 240;
+  private static final int HEIGHT = 160;
+  private static final int[] SAMPLES = {1, 4, 8};
+
+  private static MeshLods lods;
+
+  @BeforeAll
+  static void loadMesh() throws IOException {
+    // straight from the OBJ, a test run should not leave a cache file next to it
+    var obj = Paths.get("src/main/resources/com/example/demo/azelow.obj");
+    lods = MeshSimplifier.buildLods(MeshWelder.weld(ParserService.parse(obj)));
+  }
+
+  // each sample count runs the whole edit sequence, a toggle now and then would hardly reach them
+  @ParameterizedTest
+  @ValueSource(ints = {1, 4, 8})
+  void incrementalFramesMatchFullRenders(int samples) {
+    var random = new Random(20);
+    var scene = Scene.grid(lods, 4);
+    var info = ImageInfo.createDefault();
+    var pipeline = new RenderPipeline(scene, WIDTH, HEIGHT);
+    pipeline.setSamples(samples);
+    pipeline.render(info);
+
+    for (var edit = 0; edit < 60; edit++) {
+      applyRandomEdit(random, info, scene, pipeline);
+
+      var incremental = pipeline.render(info).getFrontBuffer().clone();
+      var full = new RenderPipeline(scene, WIDTH, HEIGHT);
+      full.setDeferred(pipeline.isDeferred());
+      full.setGouraud(pipeline.isGouraud());
+      full.setFixedPoint(pipeline.isFixedPoint());
+      full.setShadows(pipeline.isShadows());
+      full.setSamples(pipeline.getSamples());
+      var expected = full.render(info).getFrontBuffer();
+
+      assertTrue(
+          Arrays.stream(expected).distinct().count() > 1, "edit " + edit + " drew nothing");
+      assertArrayEquals(expected, incremental, "edit " + edit);
+    }
+  }
+
+  private static void applyRandomEdit(
+      Random random, ImageInfo info, Scene scene, RenderPipeline pipeline) {
+    var instances = scene.getInstances();
+    switch (random.nextInt(9)) {
+      case 0 -> info.setRotationX(info.getRotationX() + randomAngle(random));
+      case 1 -> info.setRotationY(info.getRotationY() + randomAngle(random));
+      case 2 -> info.setPositionX(info.getPositionX() + random.nextFloat() - 0.5f);
+      case 3 -> info.setPositionY(info.getPositionY() + random.nextFloat() - 0.5f);
+      case 4 -> {
+        var camera = info.getCameraPosition();
+        info.setCameraPosition(
+            new Vector3D(
+                camera.getX() * (0.8 + random.nextDouble() * 0.4),
+                camera.getY() + randomAngle(random),
+                camera.getZ() + randomAngle(random) / 2));
+      }
+      case 5 -> {
+        var instance = instances.get(random.nextInt(instances.size()));
+        var offset =
+            Matrix4x4.createTranslation(
+                random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5);
+        instance.setModel(instance.getModel().multiply(offset));
+      }
+      case 6 -> {
+        if (instances.size() > 1 && random.nextBoolean()) {
+          scene.remove(instances.get(random.nextInt(instances.size())));
+        } else {
+          var x = random.nextDouble() * 4 - 2;
+          var y = random.nextDouble() * 2 - 1;
+          var z = random.nextDouble() * 4 - 2;
+          scene.add(lods, Matrix4x4.createTranslation(x, y, z));
+        }
+      }
+      case 7 -> {
+        switch (random.nextInt(5)) {
+          case 0 -> pipeline.setDeferred(!pipeline.isDeferred());
+          case 1 -> pipeline.setGouraud(!pipeline.isGouraud());
+          case 2 -> pipeline.setFixedPoint(!pipeline.isFixedPoint());
+          case 3 -> pipeline.setShadows(!pipeline.isShadows());
+          default -> pipeline.setSamples(SAMPLES[random.nextInt(SAMPLES.length)]);
+        }
+      }
+      // a frame where nothing changed must come out the same as well
+      default -> {}
+    }
+  }
+
+  private static float randomAngle(Random random) {
+    return (random.nextFloat() - 0.5f) * 0.6f;
+  }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.junit.jupiter.api.Test;
+
+/** The float kernels against {@link DrawerService#getPointColor}, within one step per channel. */
+class SpanShaderTest {
+
+  // not a multiple of any lane count, so the tail loop runs too
+  private static final int COUNT = 1003;
+
+  @Test
+  void vectorKernelLoads() {
+    assertEquals("scalar", SpanShader.scalar().getName());
+    assertTrue(
+        SpanShader.get() != SpanShader.scalar(), "needs --add-modules jdk.incubator.vector");
+  }
+
+  @Test
+  void kernelsMatchPointColor() {
+    var random = new Random(18);
+    var nx = new float[COUNT];
+    var ny = new float[COUNT];
+    var nz = new float[COUNT];
+    var vector = new int[COUNT];
+    var scalar = new int[COUNT];
+    for (var round = 0; round < 200; round++) {
+      var light = randomDirection(random).scalarMultiply(1 + random.nextDouble() * 19);
+      var view = randomDirection(random);
+      var lighting = SpanShader.Lighting.of(light, view);
+      for (var i = 0; i < COUNT; i++) {
+        // normals straight from interpolation are not unit length
+        var normal = randomDirection(random).scalarMultiply(0.1 + random.nextDouble() * 4);
+        nx[i] = (float) normal.getX();
+        ny[i] = (float) normal.getY();
+        nz[i] = (float) normal.getZ();
+      }
+
+      SpanShader.get().shade(lighting, nx, ny, nz, COUNT, vector);
+      SpanShader.scalar().shade(lighting, nx, ny, nz, COUNT, scalar);
+      for (var i = 0; i < COUNT; i++) {
+        var expected = DrawerService.getPointColor(nx[i], ny[i], nz[i], light, view);
+        assertWithinStep(expected, vector[i], "vector", i);
+        assertWithinStep(expected, scalar[i], "scalar", i);
+      }
+    }
+  }
+
+  private static Vector3D randomDirection(Random random) {
+    while (true) {
+      var x = random.nextDouble() * 2 - 1;
+      var y = random.nextDouble() * 2 - 1;
+      var z = random.nextDouble() * 2 - 1;
+      var v = new Vector3D(x, y, z);
+      var norm = v.getNorm();
+      if (norm > 0.01 && norm <= 1) {
+        return v.scalarMultiply(1 / norm);
+      }
+    }
+  }
+
+  private static void assertWithinStep(int expected, int actual, String kernel, int lane) {
+    assertEquals(expected >>> 24, actual >>> 24, kernel + " alpha at " + lane);
+    for (var shift = 0; shift < 24; shift += 8) {
+      var difference = Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff));
+      assertTrue(
+          difference <= 1,
+          kernel
+              + " at "
+              + lane
+              + ": "
+              + Integer.toHexString(actual)
+              + " instead of "
+              + Integer.toHexString(expected));
+    }
+  }
+}